@@ -3,37 +3,61 @@ package com.boxserver;
 import com.boxserver.commands.BoxServerCommand;
 import com.boxserver.commands.BoxServerTabCompleter;
 import com.boxserver.listeners.BlockListener;
+import com.boxserver.listeners.ChunkListener;
 import com.boxserver.listeners.CombatListener;
 import com.boxserver.listeners.PlayerListener;
+import com.boxserver.managers.BaselineManager;
 import com.boxserver.managers.BlockTracker;
+import com.boxserver.managers.CollisionTeam;
+import com.boxserver.managers.LoadGovernor;
+import com.boxserver.managers.MessageLimiter;
+import com.boxserver.managers.PermissionCache;
 import com.boxserver.managers.RegionManager;
 import com.boxserver.managers.ResetManager;
+import com.boxserver.storage.AsyncFileWriter;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Main plugin class for BoxServer.
  * Manages a cube arena with spawn and PvP regions with specific protection rules.
  */
 public class BoxServer extends JavaPlugin {
+    private AsyncFileWriter fileWriter;
     private RegionManager regionManager;
     private BlockTracker blockTracker;
+    private BaselineManager baselineManager;
     private ResetManager resetManager;
+    private PermissionCache permissionCache;
+    private LoadGovernor loadGovernor;
+    private MessageLimiter messageLimiter;
+    private CollisionTeam collisionTeam;
+    private volatile Settings settings;
 
     @Override
     public void onEnable() {
         // Save default config
         saveDefaultConfig();
+        settings = Settings.load(getConfig());
 
         // Initialize managers
+        fileWriter = new AsyncFileWriter(getLogger());
         regionManager = new RegionManager(this);
         blockTracker = new BlockTracker(this);
+        baselineManager = new BaselineManager(this);
         resetManager = new ResetManager(this);
+        permissionCache = new PermissionCache(this);
+        loadGovernor = new LoadGovernor(this);
+        messageLimiter = new MessageLimiter(this);
+        collisionTeam = new CollisionTeam(this);
 
         // Register event listeners
         getServer().getPluginManager().registerEvents(new BlockListener(this), this);
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
         getServer().getPluginManager().registerEvents(new CombatListener(this), this);
+        getServer().getPluginManager().registerEvents(new ChunkListener(this), this);
 
         // Register commands
         PluginCommand boxServerCommand = getCommand("boxserver");
@@ -49,19 +73,57 @@ public class BoxServer extends JavaPlugin {
     @Override
     public void onDisable() {
         // Save data before shutdown
+        if (collisionTeam != null) {
+            collisionTeam.shutdown();
+        }
         if (regionManager != null) {
+            regionManager.shutdown();
             regionManager.saveRegions();
         }
         if (blockTracker != null) {
             blockTracker.saveData();
         }
+        if (baselineManager != null) {
+            baselineManager.savePendingChunks();
+        }
         if (resetManager != null) {
             resetManager.stopResetTask();
         }
+        // Wait, with a bound, for the final writes queued above
+        if (fileWriter != null) {
+            fileWriter.shutdown(settings.getIoShutdownTimeoutSeconds(), TimeUnit.SECONDS);
+        }
 
         getLogger().info("BoxServer has been disabled!");
     }
 
+    /**
+     * Re-read config.yml from disk and publish a new settings snapshot.
+     */
+    public void reloadSettings() {
+        reloadConfig();
+        refreshSettings();
+    }
+
+    /**
+     * Publish a new settings snapshot from the loaded config, after it was changed in memory.
+     */
+    public void refreshSettings() {
+        settings = Settings.load(getConfig());
+    }
+
+    /**
+     * Get the current settings snapshot. Hold on to the returned object, not to its values,
+     * only for the duration of one operation.
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public AsyncFileWriter getFileWriter() {
+        return fileWriter;
+    }
+
     public RegionManager getRegionManager() {
         return regionManager;
     }
@@ -70,7 +132,27 @@ public class BoxServer extends JavaPlugin {
         return blockTracker;
     }
 
+    public BaselineManager getBaselineManager() {
+        return baselineManager;
+    }
+
     public ResetManager getResetManager() {
         return resetManager;
     }
+
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
+    public LoadGovernor getLoadGovernor() {
+        return loadGovernor;
+    }
+
+    public MessageLimiter getMessageLimiter() {
+        return messageLimiter;
+    }
+
+    public CollisionTeam getCollisionTeam() {
+        return collisionTeam;
+    }
 }
@@ -0,0 +1,267 @@
+package com.boxserver;
+
+import com.boxserver.utils.DenialMessage;
+import com.boxserver.utils.MessageTemplate;
+import com.boxserver.utils.MessageUtil;
+import net.kyori.adventure.text.Component;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Immutable, typed snapshot of config.yml.
+ *
+ * Built once on enable and on each reload, and published by {@link BoxServer} through a single
+ * volatile reference, so event handlers read plain fields and already parsed message components
+ * instead of looking up config paths and deserializing & color codes on every event.
+ * Messages set to an empty string in the config are null, and sending them does nothing.
+ */
+public final class Settings {
+    // Reset schedule and pacing
+    private final int resetIntervalMinutes;
+    private final boolean baselineResetMode;
+    private final double minTickBudgetMillis;
+    private final double maxTickBudgetMillis;
+    private final double headroomFraction;
+    private final boolean resetPhysics;
+    private final int broadcastRadius;
+
+    // Regions
+    private final boolean regionTableEnabled;
+    private final long regionTableMaxColumns;
+    private final boolean watchRegionsFile;
+    private final long permissionCacheTtlSeconds;
+    private final String antiPushTeamName;
+
+    // Load governor
+    private final boolean loadGovernorEnabled;
+    private final double degradedMspt;
+    private final double criticalMspt;
+    private final double loadHysteresisMspt;
+    private final int loadSampleIntervalTicks;
+
+    // Placed-block tracker
+    private final String trackerBackend;
+    private final boolean bitmapTimestamps;
+    private final int flushIntervalSeconds;
+    private final long compactAfterRecords;
+    private final boolean snapshotCompression;
+    private final boolean restoreOriginalStates;
+    private final long ioShutdownTimeoutSeconds;
+
+    // Messages
+    private final Component noBreakMessage;
+    private final Component noPlaceMessage;
+    private final Component noWaterMessage;
+    private final Component noPvpMessage;
+    private final Component noWindChargeMessage;
+    private final Component tooHighMessage;
+    private final Component noPearlMessage;
+    private final MessageTemplate resetWarningMessage;
+    private final Component resetCompleteMessage;
+
+    // Denial message rate limits, indexed by DenialMessage ordinal
+    private final long[] denialWindowMillis;
+    private final int actionBarIntervalTicks;
+
+    private Settings(FileConfiguration config) {
+        this.resetIntervalMinutes = config.getInt("reset-interval-minutes", 10);
+        this.baselineResetMode = config.getString("reset.mode", "tracked").equalsIgnoreCase("baseline");
+        this.minTickBudgetMillis = config.getDouble("reset.min-tick-budget-ms", 1.0);
+        this.maxTickBudgetMillis = config.getDouble("reset.max-tick-budget-ms", 15.0);
+        this.headroomFraction = config.getDouble("reset.headroom-fraction", 0.5);
+        this.resetPhysics = config.getBoolean("reset.physics", true);
+        this.broadcastRadius = config.getInt("reset.broadcast-radius", 32);
+
+        this.regionTableEnabled = config.getBoolean("region-table.enabled", true);
+        this.regionTableMaxColumns = config.getLong("region-table.max-columns", 1048576);
+        this.watchRegionsFile = config.getBoolean("watch-regions-file", true);
+        this.permissionCacheTtlSeconds = Math.max(0, config.getLong("permission-cache.ttl-seconds", 5));
+        this.antiPushTeamName = config.getString("anti-push-team", "boxserver_nopush");
+
+        this.loadGovernorEnabled = config.getBoolean("load-governor.enabled", true);
+        this.degradedMspt = config.getDouble("load-governor.degraded-mspt", 40.0);
+        this.criticalMspt = config.getDouble("load-governor.critical-mspt", 48.0);
+        this.loadHysteresisMspt = Math.max(0, config.getDouble("load-governor.hysteresis-mspt", 5.0));
+        this.loadSampleIntervalTicks = Math.max(1, config.getInt("load-governor.sample-interval-ticks", 20));
+
+        this.trackerBackend = config.getString("tracker.backend", "hash");
+        this.bitmapTimestamps = config.getBoolean("tracker.bitmap-timestamps", true);
+        this.flushIntervalSeconds = Math.max(1, config.getInt("tracker.flush-interval-seconds", 5));
+        this.compactAfterRecords = config.getLong("tracker.compact-after-records", 200000);
+        this.snapshotCompression = config.getBoolean("tracker.snapshot-compression", false);
+        this.restoreOriginalStates = config.getBoolean("tracker.restore-original-states", true);
+        this.ioShutdownTimeoutSeconds = config.getLong("io-shutdown-timeout-seconds", 10);
+
+        this.noBreakMessage = message(config, "no-break", "&cYou cannot break blocks here!");
+        this.noPlaceMessage = message(config, "no-place", "&cYou cannot place blocks here!");
+        this.noWaterMessage = message(config, "no-water", "&cYou cannot place water here!");
+        this.noPvpMessage = message(config, "no-pvp", "&cPvP is disabled in this area!");
+        this.noWindChargeMessage = message(config, "no-windcharge", "&cWind charges are disabled in this area!");
+        this.tooHighMessage = message(config, "too-high", "&cYou cannot place blocks this high!");
+        this.noPearlMessage = message(config, "no-pearl", "&cYou cannot ender pearl into this area!");
+        this.resetWarningMessage = MessageTemplate.parse(
+                config.getString("messages.reset-warning", "&eBlock reset in %time% seconds!"));
+        this.resetCompleteMessage = message(config, "reset-complete", "&aAll placed blocks have been reset!");
+
+        long defaultWindow = config.getLong("message-limits.default-window-ms", 2000);
+        this.denialWindowMillis = new long[DenialMessage.count()];
+        for (DenialMessage message : DenialMessage.all()) {
+            denialWindowMillis[message.ordinal()] = Math.max(0,
+                    config.getLong("message-limits.windows." + message.getKey(), defaultWindow));
+        }
+        this.actionBarIntervalTicks = Math.max(1, config.getInt("message-limits.action-bar-interval-ticks", 10));
+    }
+
+    /**
+     * Read all settings from a loaded config.
+     */
+    public static Settings load(FileConfiguration config) {
+        return new Settings(config);
+    }
+
+    /**
+     * Parse a message, or return null if it is set to an empty string to disable it.
+     */
+    private static Component message(FileConfiguration config, String key, String def) {
+        String message = config.getString("messages." + key, def);
+        return message == null || message.isEmpty() ? null : MessageUtil.colorize(message);
+    }
+
+    public int getResetIntervalMinutes() {
+        return resetIntervalMinutes;
+    }
+
+    /**
+     * Check if reset.mode is "baseline".
+     */
+    public boolean isBaselineResetMode() {
+        return baselineResetMode;
+    }
+
+    public double getMinTickBudgetMillis() {
+        return minTickBudgetMillis;
+    }
+
+    public double getMaxTickBudgetMillis() {
+        return maxTickBudgetMillis;
+    }
+
+    public double getHeadroomFraction() {
+        return headroomFraction;
+    }
+
+    public boolean isResetPhysics() {
+        return resetPhysics;
+    }
+
+    /**
+     * Get the reset broadcast radius in blocks, negative to broadcast to everyone.
+     */
+    public int getBroadcastRadius() {
+        return broadcastRadius;
+    }
+
+    public boolean isRegionTableEnabled() {
+        return regionTableEnabled;
+    }
+
+    public long getRegionTableMaxColumns() {
+        return regionTableMaxColumns;
+    }
+
+    public boolean isWatchRegionsFile() {
+        return watchRegionsFile;
+    }
+
+    public long getPermissionCacheTtlSeconds() {
+        return permissionCacheTtlSeconds;
+    }
+
+    public String getAntiPushTeamName() {
+        return antiPushTeamName;
+    }
+
+    public boolean isLoadGovernorEnabled() {
+        return loadGovernorEnabled;
+    }
+
+    public double getDegradedMspt() {
+        return degradedMspt;
+    }
+
+    public double getCriticalMspt() {
+        return criticalMspt;
+    }
+
+    public double getLoadHysteresisMspt() {
+        return loadHysteresisMspt;
+    }
+
+    public int getLoadSampleIntervalTicks() {
+        return loadSampleIntervalTicks;
+    }
+
+    public String getTrackerBackend() {
+        return trackerBackend;
+    }
+
+    public boolean isBitmapTimestamps() {
+        return bitmapTimestamps;
+    }
+
+    public int getFlushIntervalSeconds() {
+        return flushIntervalSeconds;
+    }
+
+    public long getCompactAfterRecords() {
+        return compactAfterRecords;
+    }
+
+    public boolean isSnapshotCompression() {
+        return snapshotCompression;
+    }
+
+    public boolean isRestoreOriginalStates() {
+        return restoreOriginalStates;
+    }
+
+    public long getIoShutdownTimeoutSeconds() {
+        return ioShutdownTimeoutSeconds;
+    }
+
+    /**
+     * Get the reset warning, with a %time% placeholder for the seconds left.
+     */
+    public MessageTemplate getResetWarningMessage() {
+        return resetWarningMessage;
+    }
+
+    public Component getResetCompleteMessage() {
+        return resetCompleteMessage;
+    }
+
+    /**
+     * Get the parsed text of a denial message.
+     */
+    public Component getDenialMessage(DenialMessage message) {
+        return switch (message) {
+            case NO_BREAK -> noBreakMessage;
+            case NO_PLACE -> noPlaceMessage;
+            case NO_WATER -> noWaterMessage;
+            case NO_PVP -> noPvpMessage;
+            case NO_WINDCHARGE -> noWindChargeMessage;
+            case TOO_HIGH -> tooHighMessage;
+            case NO_PEARL -> noPearlMessage;
+        };
+    }
+
+    /**
+     * Get how long repeats of a denial message are kept out of chat, 0 to never limit it.
+     */
+    public long getDenialWindowMillis(DenialMessage message) {
+        return denialWindowMillis[message.ordinal()];
+    }
+
+    public int getActionBarIntervalTicks() {
+        return actionBarIntervalTicks;
+    }
+}
@@ -1,23 +1,40 @@
 package com.boxserver.commands;
 
 import com.boxserver.BoxServer;
+import com.boxserver.managers.ResetJob;
+import com.boxserver.models.CuboidUnionShape;
+import com.boxserver.models.PolygonShape;
 import com.boxserver.models.Region;
+import com.boxserver.models.RegionFlag;
+import com.boxserver.models.RegionShape;
 import com.boxserver.models.RegionType;
+import com.boxserver.storage.BaselineSnapshot;
 import com.boxserver.utils.MessageUtil;
+import com.boxserver.utils.WorldRegistry;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Main command handler for the BoxServer plugin.
  */
 public class BoxServerCommand implements CommandExecutor {
+    // The benchmark runs four passes of this many lookups within one tick; keep it well under a tick
+    private static final int MAX_BENCH_ITERATIONS = 100_000;
+
     private final BoxServer plugin;
 
     public BoxServerCommand(BoxServer plugin) {
@@ -36,9 +53,11 @@ public class BoxServerCommand implements CommandExecutor {
         return switch (subCommand) {
             case "region" -> handleRegionCommand(sender, Arrays.copyOfRange(args, 1, args.length));
             case "blocks" -> handleBlocksCommand(sender, Arrays.copyOfRange(args, 1, args.length));
-            case "reload" -> handleReloadCommand(sender);
+            case "reload" -> handleReloadCommand(sender, Arrays.copyOfRange(args, 1, args.length));
             case "reset" -> handleResetCommand(sender, Arrays.copyOfRange(args, 1, args.length));
             case "setresettime" -> handleSetResetTimeCommand(sender, Arrays.copyOfRange(args, 1, args.length));
+            case "status" -> handleStatusCommand(sender);
+            case "bench" -> handleBenchCommand(sender, Arrays.copyOfRange(args, 1, args.length));
             default -> {
                 sendHelp(sender);
                 yield true;
@@ -48,11 +67,13 @@ public class BoxServerCommand implements CommandExecutor {
 
     private void sendHelp(CommandSender sender) {
         MessageUtil.send(sender, "&6=== BoxServer Commands ===");
-        MessageUtil.send(sender, "&e/boxserver region <create|delete|pos1|pos2|list|info|priority>");
+        MessageUtil.send(sender, "&e/boxserver region <create|delete|pos1|pos2|point|addbox|list|info|priority|flag|baseline>");
         MessageUtil.send(sender, "&e/boxserver blocks <add|remove|list|clear>");
-        MessageUtil.send(sender, "&e/boxserver reload &7- Reload configuration");
+        MessageUtil.send(sender, "&e/boxserver reload [all] &7- Reload configuration and regions");
         MessageUtil.send(sender, "&e/boxserver reset <region> &7- Reset placed blocks");
         MessageUtil.send(sender, "&e/boxserver setresettime <minutes> &7- Set reset interval");
+        MessageUtil.send(sender, "&e/boxserver status &7- Show tracker and reset status");
+        MessageUtil.send(sender, "&e/boxserver bench [iterations] &7- Measure region lookup cost");
     }
 
     private boolean handleRegionCommand(CommandSender sender, String[] args) {
@@ -62,7 +83,7 @@ public class BoxServerCommand implements CommandExecutor {
         }
 
         if (args.length == 0) {
-            MessageUtil.send(sender, "&eUsage: /boxserver region <create|delete|pos1|pos2|list|info|priority>");
+            MessageUtil.send(sender, "&eUsage: /boxserver region <create|delete|pos1|pos2|point|addbox|list|info|priority|flag|baseline>");
             return true;
         }
 
@@ -73,9 +94,13 @@ public class BoxServerCommand implements CommandExecutor {
             case "delete" -> handleRegionDelete(sender, Arrays.copyOfRange(args, 1, args.length));
             case "pos1" -> handlePos1(sender);
             case "pos2" -> handlePos2(sender);
+            case "point" -> handlePoint(sender);
+            case "addbox" -> handleAddBox(sender);
             case "list" -> handleRegionList(sender);
             case "info" -> handleRegionInfo(sender, Arrays.copyOfRange(args, 1, args.length));
             case "priority" -> handleRegionPriority(sender, Arrays.copyOfRange(args, 1, args.length));
+            case "flag" -> handleRegionFlag(sender, Arrays.copyOfRange(args, 1, args.length));
+            case "baseline" -> handleRegionBaseline(sender, Arrays.copyOfRange(args, 1, args.length));
             default -> {
                 MessageUtil.send(sender, "&cUnknown region command: " + action);
                 yield true;
@@ -90,7 +115,7 @@ public class BoxServerCommand implements CommandExecutor {
         }
 
         if (args.length < 2) {
-            MessageUtil.send(sender, "&eUsage: /boxserver region create <name> <type>");
+            MessageUtil.send(sender, "&eUsage: /boxserver region create <name> <type> [cuboid|polygon|union] [minY maxY]");
             MessageUtil.send(sender, "&eTypes: spawn, pvp, protected, boundary");
             return true;
         }
@@ -107,20 +132,58 @@ public class BoxServerCommand implements CommandExecutor {
             return true;
         }
 
-        if (!plugin.getRegionManager().hasCompleteSelection(player.getUniqueId())) {
-            MessageUtil.send(sender, "&cYou must set both pos1 and pos2 first!");
+        if (plugin.getRegionManager().getRegion(name) != null) {
+            MessageUtil.send(sender, "&cA region with that name already exists!");
             return true;
         }
 
-        Location pos1 = plugin.getRegionManager().getPos1(player.getUniqueId());
-        Location pos2 = plugin.getRegionManager().getPos2(player.getUniqueId());
+        String shape = args.length >= 3 ? args[2].toLowerCase() : "cuboid";
+        boolean success;
+        switch (shape) {
+            case "cuboid" -> {
+                if (!plugin.getRegionManager().hasCompleteSelection(player.getUniqueId())) {
+                    MessageUtil.send(sender, "&cYou must set both pos1 and pos2 first!");
+                    return true;
+                }
 
-        if (plugin.getRegionManager().getRegion(name) != null) {
-            MessageUtil.send(sender, "&cA region with that name already exists!");
-            return true;
+                Location pos1 = plugin.getRegionManager().getPos1(player.getUniqueId());
+                Location pos2 = plugin.getRegionManager().getPos2(player.getUniqueId());
+                success = plugin.getRegionManager().createRegion(name, pos1.getWorld().getUID(), type, pos1, pos2);
+            }
+            case "polygon" -> {
+                RegionShape polygon = createPolygon(player, Arrays.copyOfRange(args, 3, args.length));
+                if (polygon == null) {
+                    return true;
+                }
+                World world = plugin.getRegionManager().getSelectionPoints(player.getUniqueId()).get(0).getWorld();
+                success = plugin.getRegionManager().createRegion(name, world.getUID(), type, polygon);
+            }
+            case "union" -> {
+                List<Location[]> cuboids = plugin.getRegionManager().getSelectionCuboids(player.getUniqueId());
+                if (cuboids.isEmpty()) {
+                    MessageUtil.send(sender, "&cAdd cuboids with pos1, pos2 and /boxserver region addbox first!");
+                    return true;
+                }
+
+                World world = cuboids.get(0)[0].getWorld();
+                List<int[]> corners = new ArrayList<>();
+                for (Location[] cuboid : cuboids) {
+                    if (!world.equals(cuboid[0].getWorld())) {
+                        MessageUtil.send(sender, "&cAll cuboids must be in the same world!");
+                        return true;
+                    }
+                    corners.add(new int[] {cuboid[0].getBlockX(), cuboid[0].getBlockY(), cuboid[0].getBlockZ(),
+                            cuboid[1].getBlockX(), cuboid[1].getBlockY(), cuboid[1].getBlockZ()});
+                }
+                success = plugin.getRegionManager().createRegion(name, world.getUID(), type, new CuboidUnionShape(corners));
+            }
+            default -> {
+                MessageUtil.send(sender, "&cInvalid shape: " + shape);
+                MessageUtil.send(sender, "&eValid shapes: cuboid, polygon, union");
+                return true;
+            }
         }
 
-        boolean success = plugin.getRegionManager().createRegion(name, pos1.getWorld().getUID(), type, pos1, pos2);
         if (success) {
             MessageUtil.send(sender, "&aRegion '" + name + "' created successfully!");
             plugin.getRegionManager().clearSelection(player.getUniqueId());
@@ -131,6 +194,52 @@ public class BoxServerCommand implements CommandExecutor {
         return true;
     }
 
+    /**
+     * Build a polygon from a player's selected points, with the Y range from the arguments
+     * or else from the points. Sends the player an error and returns null if it is invalid.
+     */
+    private RegionShape createPolygon(Player player, String[] args) {
+        List<Location> points = plugin.getRegionManager().getSelectionPoints(player.getUniqueId());
+        if (points.size() < 3) {
+            MessageUtil.send(player, "&cSelect at least 3 points with /boxserver region point first!");
+            return null;
+        }
+
+        World world = points.get(0).getWorld();
+        int[] xs = new int[points.size()];
+        int[] zs = new int[points.size()];
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < points.size(); i++) {
+            Location point = points.get(i);
+            if (world == null || !world.equals(point.getWorld())) {
+                MessageUtil.send(player, "&cAll points must be in the same world!");
+                return null;
+            }
+            xs[i] = point.getBlockX();
+            zs[i] = point.getBlockZ();
+            minY = Math.min(minY, point.getBlockY());
+            maxY = Math.max(maxY, point.getBlockY());
+        }
+
+        if (args.length >= 2) {
+            try {
+                minY = Integer.parseInt(args[0]);
+                maxY = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                MessageUtil.send(player, "&cminY and maxY must be numbers!");
+                return null;
+            }
+        }
+
+        try {
+            return new PolygonShape(xs, zs, minY, maxY);
+        } catch (IllegalArgumentException e) {
+            MessageUtil.send(player, "&c" + e.getMessage() + "!");
+            return null;
+        }
+    }
+
     private boolean handleRegionDelete(CommandSender sender, String[] args) {
         if (args.length < 1) {
             MessageUtil.send(sender, "&eUsage: /boxserver region delete <name>");
@@ -141,6 +250,7 @@ public class BoxServerCommand implements CommandExecutor {
         boolean success = plugin.getRegionManager().deleteRegion(name);
         
         if (success) {
+            plugin.getBaselineManager().delete(name);
             MessageUtil.send(sender, "&aRegion '" + name + "' deleted successfully!");
         } else {
             MessageUtil.send(sender, "&cRegion '" + name + "' not found!");
@@ -173,6 +283,36 @@ public class BoxServerCommand implements CommandExecutor {
         return true;
     }
 
+    private boolean handlePoint(CommandSender sender) {
+        if (!(sender instanceof Player player)) {
+            MessageUtil.send(sender, "&cThis command can only be used by players!");
+            return true;
+        }
+
+        Location location = player.getLocation();
+        int count = plugin.getRegionManager().addSelectionPoint(player.getUniqueId(), location);
+        MessageUtil.send(sender, "&aPolygon point " + count + " set to " + formatLocation(location));
+        return true;
+    }
+
+    private boolean handleAddBox(CommandSender sender) {
+        if (!(sender instanceof Player player)) {
+            MessageUtil.send(sender, "&cThis command can only be used by players!");
+            return true;
+        }
+
+        if (!plugin.getRegionManager().hasCompleteSelection(player.getUniqueId())) {
+            MessageUtil.send(sender, "&cYou must set both pos1 and pos2 first!");
+            return true;
+        }
+
+        Location pos1 = plugin.getRegionManager().getPos1(player.getUniqueId());
+        Location pos2 = plugin.getRegionManager().getPos2(player.getUniqueId());
+        int count = plugin.getRegionManager().addSelectionCuboid(player.getUniqueId(), pos1, pos2);
+        MessageUtil.send(sender, "&aAdded cuboid " + count + " from " + formatLocation(pos1) + " to " + formatLocation(pos2));
+        return true;
+    }
+
     private boolean handleRegionList(CommandSender sender) {
         var regions = plugin.getRegionManager().getAllRegions();
         
@@ -206,7 +346,23 @@ public class BoxServerCommand implements CommandExecutor {
         MessageUtil.send(sender, "&6=== Region: " + region.getName() + " ===");
         MessageUtil.send(sender, "&eType: &f" + region.getType());
         MessageUtil.send(sender, "&ePriority: &f" + region.getPriority());
+        RegionShape shape = region.getShape();
+        if (shape instanceof PolygonShape polygon) {
+            MessageUtil.send(sender, "&eShape: &fpolygon (" + polygon.getPointCount() + " points)");
+        } else if (shape instanceof CuboidUnionShape union) {
+            MessageUtil.send(sender, "&eShape: &funion (" + union.getCuboidCount() + " cuboids)");
+        } else {
+            MessageUtil.send(sender, "&eShape: &fcuboid");
+        }
         MessageUtil.send(sender, "&ePvP Enabled: &f" + region.isPvpEnabled());
+        List<String> allowed = new ArrayList<>();
+        for (RegionFlag flag : RegionFlag.values()) {
+            if (region.allows(flag)) {
+                allowed.add(flag.getKey());
+            }
+        }
+        MessageUtil.send(sender, "&eFlags: &f" + (allowed.isEmpty() ? "none" : String.join(", ", allowed)));
+        MessageUtil.send(sender, "&eOccupancy: &f" + plugin.getRegionManager().getOccupantCount(region) + " players");
         MessageUtil.send(sender, "&eBounds: &f(" + region.getMinX() + ", " + region.getMinY() + ", " + region.getMinZ() + 
                 ") to (" + region.getMaxX() + ", " + region.getMaxY() + ", " + region.getMaxZ() + ")");
         
@@ -214,6 +370,14 @@ public class BoxServerCommand implements CommandExecutor {
             MessageUtil.send(sender, "&eWhitelisted Blocks: &f" + region.getWhitelistedBlocks().size() + " blocks");
         }
 
+        BaselineSnapshot baseline = plugin.getBaselineManager().getBaseline(region);
+        if (baseline != null) {
+            MessageUtil.send(sender, "&eBaseline: &f" + baseline.getSections().size() + " sections ("
+                    + baseline.getCompressedBytes() / 1024 + " KB)");
+        } else if (plugin.getBaselineManager().hasOutdatedBaseline(region)) {
+            MessageUtil.send(sender, "&eBaseline: &coutdated, the region changed since it was captured");
+        }
+
         return true;
     }
 
@@ -238,13 +402,70 @@ public class BoxServerCommand implements CommandExecutor {
             return true;
         }
 
-        region.setPriority(priority);
-        plugin.getRegionManager().saveRegions();
+        plugin.getRegionManager().setRegionPriority(region, priority);
         MessageUtil.send(sender, "&aPriority for region '" + name + "' set to " + priority);
 
         return true;
     }
 
+    private boolean handleRegionFlag(CommandSender sender, String[] args) {
+        if (args.length < 3) {
+            MessageUtil.send(sender, "&eUsage: /boxserver region flag <name> <flag> <true|false>");
+            return true;
+        }
+
+        String name = args[0];
+        Region region = plugin.getRegionManager().getRegion(name);
+        if (region == null) {
+            MessageUtil.send(sender, "&cRegion '" + name + "' not found!");
+            return true;
+        }
+
+        RegionFlag flag = RegionFlag.fromKey(args[1]);
+        if (flag == null) {
+            List<String> keys = new ArrayList<>();
+            for (RegionFlag value : RegionFlag.values()) {
+                keys.add(value.getKey());
+            }
+            MessageUtil.send(sender, "&cUnknown flag! Flags: " + String.join(", ", keys));
+            return true;
+        }
+
+        String value = args[2].toLowerCase();
+        if (!value.equals("true") && !value.equals("false")) {
+            MessageUtil.send(sender, "&cValue must be true or false!");
+            return true;
+        }
+
+        boolean allowed = Boolean.parseBoolean(value);
+        plugin.getRegionManager().setRegionFlag(region, flag, allowed);
+        MessageUtil.send(sender, "&aFlag " + flag.getKey() + " for region '" + name + "' set to " + allowed);
+
+        return true;
+    }
+
+    private boolean handleRegionBaseline(CommandSender sender, String[] args) {
+        if (args.length < 1) {
+            MessageUtil.send(sender, "&eUsage: /boxserver region baseline <name>");
+            return true;
+        }
+
+        String name = args[0];
+        Region region = plugin.getRegionManager().getRegion(name);
+        if (region == null) {
+            MessageUtil.send(sender, "&cRegion '" + name + "' not found!");
+            return true;
+        }
+
+        if (!plugin.getBaselineManager().capture(region, sender)) {
+            MessageUtil.send(sender, "&cThe world of region '" + name + "' is not loaded!");
+            return true;
+        }
+
+        MessageUtil.send(sender, "&eCapturing baseline of region '" + name + "'...");
+        return true;
+    }
+
     private boolean handleBlocksCommand(CommandSender sender, String[] args) {
         if (!sender.hasPermission("boxserver.command.blocks")) {
             MessageUtil.send(sender, "&cYou don't have permission to use this command!");
@@ -293,8 +514,7 @@ public class BoxServerCommand implements CommandExecutor {
             return true;
         }
 
-        region.addWhitelistedBlock(material);
-        plugin.getRegionManager().saveRegions();
+        plugin.getRegionManager().updateRegion(region, changed -> changed.addWhitelistedBlock(material));
         MessageUtil.send(sender, "&aAdded " + material.name() + " to whitelist for region '" + regionName + "'");
 
         return true;
@@ -323,8 +543,7 @@ public class BoxServerCommand implements CommandExecutor {
             return true;
         }
 
-        region.removeWhitelistedBlock(material);
-        plugin.getRegionManager().saveRegions();
+        plugin.getRegionManager().updateRegion(region, changed -> changed.removeWhitelistedBlock(material));
         MessageUtil.send(sender, "&aRemoved " + material.name() + " from whitelist for region '" + regionName + "'");
 
         return true;
@@ -372,23 +591,32 @@ public class BoxServerCommand implements CommandExecutor {
             return true;
         }
 
-        region.clearWhitelistedBlocks();
-        plugin.getRegionManager().saveRegions();
+        plugin.getRegionManager().updateRegion(region, changed -> changed.clearWhitelistedBlocks());
         MessageUtil.send(sender, "&aCleared all whitelisted blocks for region '" + regionName + "'");
 
         return true;
     }
 
-    private boolean handleReloadCommand(CommandSender sender) {
+    private boolean handleReloadCommand(CommandSender sender, String[] args) {
         if (!sender.hasPermission("boxserver.command.reload")) {
             MessageUtil.send(sender, "&cYou don't have permission to use this command!");
             return true;
         }
 
-        plugin.reloadConfig();
+        // Regions are swapped in once parsed; tracked blocks and the reset timer keep running
+        plugin.reloadSettings();
         plugin.getRegionManager().reload();
-        plugin.getBlockTracker().reload();
-        plugin.getResetManager().reload();
+        plugin.getBaselineManager().loadBaselines();
+        plugin.getPermissionCache().reload();
+        plugin.getMessageLimiter().reload();
+        plugin.getLoadGovernor().reload();
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("all")) {
+            plugin.getBlockTracker().reload();
+            plugin.getResetManager().reload();
+            MessageUtil.send(sender, "&aConfiguration, tracker and reset timer reloaded!");
+            return true;
+        }
 
         MessageUtil.send(sender, "&aConfiguration reloaded!");
         return true;
@@ -413,8 +641,17 @@ public class BoxServerCommand implements CommandExecutor {
             return true;
         }
 
-        int count = plugin.getResetManager().resetRegion(region);
-        MessageUtil.send(sender, "&aReset " + count + " blocks in region '" + regionName + "'");
+        if (!plugin.getResetManager().resetRegion(region, sender)) {
+            MessageUtil.send(sender, "&cA reset is already running, try again when it has finished.");
+            return true;
+        }
+
+        ResetJob job = plugin.getResetManager().getActiveJob();
+        if (job != null) {
+            MessageUtil.send(sender, "&eResetting " + job.getTotalBlocks() + " tracked blocks in region '" + regionName + "'...");
+        } else {
+            MessageUtil.send(sender, "&eComparing region '" + regionName + "' against its baseline...");
+        }
 
         return true;
     }
@@ -449,6 +686,171 @@ public class BoxServerCommand implements CommandExecutor {
         return true;
     }
 
+    private boolean handleStatusCommand(CommandSender sender) {
+        if (!sender.hasPermission("boxserver.command.status")) {
+            MessageUtil.send(sender, "&cYou don't have permission to use this command!");
+            return true;
+        }
+
+        MessageUtil.send(sender, "&6=== BoxServer Status ===");
+        MessageUtil.send(sender, String.format("&eLoad level: &f%s &7(%.1f MSPT, %d changes)",
+                plugin.getLoadGovernor().getLevel(), plugin.getLoadGovernor().getLastMspt(),
+                plugin.getLoadGovernor().getChanges()));
+        MessageUtil.send(sender, "&eTracked blocks: &f" + plugin.getBlockTracker().getTotalTrackedBlocks()
+                + " &7(~" + plugin.getBlockTracker().getEstimatedMemoryBytes() / 1024 + " KB)");
+        MessageUtil.send(sender, "&eOriginal block states: &f" + plugin.getBlockTracker().getOriginalStateCount());
+        MessageUtil.send(sender, "&eChunks with a pending reset: &f" + plugin.getBlockTracker().getPendingResetChunks());
+        MessageUtil.send(sender, "&eReset interval: &f" + plugin.getResetManager().getResetIntervalMinutes() + " minutes");
+        MessageUtil.send(sender, "&eCompiled region table: &f" + plugin.getRegionManager().getCompiledColumnCount() + " columns");
+        MessageUtil.send(sender, String.format("&eFluid fast path: &f%.1f%% of %d flow checks &7(%d boundary sections)",
+                plugin.getRegionManager().getFlowFastPathRate() * 100, plugin.getRegionManager().getFlowChecks(),
+                plugin.getRegionManager().getBoundarySectionCount()));
+        MessageUtil.send(sender, "&ePermission checks avoided: &f" + plugin.getPermissionCache().getChecksAvoided());
+        MessageUtil.send(sender, "&eDenial messages suppressed: &f" + plugin.getMessageLimiter().getSuppressed());
+
+        if (plugin.getBaselineManager().getPendingChunks() > 0) {
+            MessageUtil.send(sender, "&eChunks awaiting baseline restore: &f" + plugin.getBaselineManager().getPendingChunks());
+        }
+
+        ResetJob job = plugin.getResetManager().getActiveJob();
+        if (plugin.getResetManager().isComparingBaselines()) {
+            MessageUtil.send(sender, "&eReset: &fcomparing against baselines");
+        } else if (job == null) {
+            MessageUtil.send(sender, "&eReset: &fidle");
+        } else {
+            MessageUtil.send(sender, "&eReset: &f" + job.getDescription() + " " + job.getProgressPercent() + "% ("
+                    + job.getProcessedBlocks() + "/" + job.getTotalBlocks() + " blocks, "
+                    + job.getTicks() + " ticks)");
+        }
+
+        return true;
+    }
+
+    private boolean handleBenchCommand(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("boxserver.command.bench")) {
+            MessageUtil.send(sender, "&cYou don't have permission to use this command!");
+            return true;
+        }
+
+        int iterations = 50_000;
+        if (args.length > 0) {
+            try {
+                iterations = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                MessageUtil.send(sender, "&cIterations must be a number!");
+                return true;
+            }
+            if (iterations < 1) {
+                MessageUtil.send(sender, "&cIterations must be at least 1!");
+                return true;
+            }
+            if (iterations > MAX_BENCH_ITERATIONS) {
+                MessageUtil.send(sender, "&cIterations must be at most " + MAX_BENCH_ITERATIONS + "!");
+                return true;
+            }
+        }
+
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            MessageUtil.send(sender, "&cThis JVM cannot measure thread allocation.");
+            return true;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // Sample blocks around the regions of the sender's world, created before measuring
+        World world = sender instanceof Player player ? player.getWorld() : null;
+        List<Region> regions = new ArrayList<>();
+        for (Region region : plugin.getRegionManager().getAllRegions()) {
+            if (world == null) {
+                world = Bukkit.getWorld(region.getWorldId());
+            }
+            if (world != null && region.getWorldId().equals(world.getUID())) {
+                regions.add(region);
+            }
+        }
+        if (regions.isEmpty()) {
+            MessageUtil.send(sender, "&cThere are no regions to look up in this world.");
+            return true;
+        }
+
+        Random random = new Random(42);
+        Block[] blocks = new Block[4096];
+        for (int i = 0; i < blocks.length; i++) {
+            Region region = regions.get(random.nextInt(regions.size()));
+            blocks[i] = world.getBlockAt(
+                    region.getMinX() - 8 + random.nextInt(region.getMaxX() - region.getMinX() + 17),
+                    region.getMinY() + random.nextInt(region.getMaxY() - region.getMinY() + 1),
+                    region.getMinZ() - 8 + random.nextInt(region.getMaxZ() - region.getMinZ() + 17));
+        }
+
+        // Warm both paths up before measuring
+        benchLocationPath(blocks, iterations);
+        benchIntPath(blocks, iterations);
+
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        int locationHits = benchLocationPath(blocks, iterations);
+        long locationNanos = System.nanoTime() - start;
+        long locationBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+        allocated = threads.getCurrentThreadAllocatedBytes();
+        start = System.nanoTime();
+        int intHits = benchIntPath(blocks, iterations);
+        long intNanos = System.nanoTime() - start;
+        long intBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+        MessageUtil.send(sender, "&6=== Region Lookup Benchmark (" + iterations + " lookups) ===");
+        MessageUtil.send(sender, String.format("&eLocation path: &f%.1f ns/op, %.1f bytes/op",
+                (double) locationNanos / iterations, (double) locationBytes / iterations));
+        MessageUtil.send(sender, String.format("&eInt path: &f%.1f ns/op, %.1f bytes/op",
+                (double) intNanos / iterations, (double) intBytes / iterations));
+        if (locationHits != intHits) {
+            MessageUtil.send(sender, "&cThe paths disagreed: " + locationHits + " vs " + intHits + " hits.");
+        }
+        return true;
+    }
+
+    /**
+     * Resolve region and tracking for blocks the way listeners did through Location.
+     */
+    private int benchLocationPath(Block[] blocks, int iterations) {
+        int hits = 0;
+        for (int i = 0; i < iterations; i++) {
+            Block block = blocks[i & (blocks.length - 1)];
+            Location location = block.getLocation();
+            Region region = plugin.getRegionManager().getRegionAt(location);
+            if (region != null && region.contains(location)) {
+                hits++;
+            }
+            if (plugin.getBlockTracker().isTracked(block)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Resolve region and tracking for blocks through the world handle and int coordinates.
+     */
+    private int benchIntPath(Block[] blocks, int iterations) {
+        int hits = 0;
+        for (int i = 0; i < iterations; i++) {
+            Block block = blocks[i & (blocks.length - 1)];
+            int world = WorldRegistry.idOf(block.getWorld());
+            int x = block.getX();
+            int y = block.getY();
+            int z = block.getZ();
+            Region region = plugin.getRegionManager().getRegionAt(world, x, y, z);
+            if (region != null && region.contains(world, x, y, z)) {
+                hits++;
+            }
+            if (plugin.getBlockTracker().isTracked(world, x, y, z)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
     private String formatLocation(Location location) {
         return String.format("(%d, %d, %d)", 
                 location.getBlockX(), 
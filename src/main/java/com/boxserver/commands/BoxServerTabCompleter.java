@@ -2,6 +2,7 @@ package com.boxserver.commands;
 
 import com.boxserver.BoxServer;
 import com.boxserver.models.Region;
+import com.boxserver.models.RegionFlag;
 import com.boxserver.models.RegionType;
 import org.bukkit.Material;
 import org.bukkit.command.Command;
@@ -20,8 +21,8 @@ import java.util.stream.Collectors;
 public class BoxServerTabCompleter implements org.bukkit.command.TabCompleter {
     private final BoxServer plugin;
 
-    private static final List<String> MAIN_COMMANDS = Arrays.asList("region", "blocks", "reload", "reset", "setresettime");
-    private static final List<String> REGION_SUBCOMMANDS = Arrays.asList("create", "delete", "pos1", "pos2", "list", "info", "priority");
+    private static final List<String> MAIN_COMMANDS = Arrays.asList("region", "blocks", "reload", "reset", "setresettime", "status", "bench");
+    private static final List<String> REGION_SUBCOMMANDS = Arrays.asList("create", "delete", "pos1", "pos2", "point", "addbox", "list", "info", "priority", "flag", "baseline");
     private static final List<String> BLOCKS_SUBCOMMANDS = Arrays.asList("add", "remove", "list", "clear");
     private static final List<String> REGION_TYPES = Arrays.stream(RegionType.values())
             .map(t -> t.name().toLowerCase())
@@ -50,6 +51,16 @@ public class BoxServerTabCompleter implements org.bukkit.command.TabCompleter {
                     completions = filterStartsWith(getRegionNames(), args[1]);
                 }
             }
+            case "reload" -> {
+                if (args.length == 2) {
+                    completions = filterStartsWith(Arrays.asList("all"), args[1]);
+                }
+            }
+            case "bench" -> {
+                if (args.length == 2) {
+                    completions = Arrays.asList("10000", "50000", "100000");
+                }
+            }
             case "setresettime" -> {
                 if (args.length == 2) {
                     completions = Arrays.asList("5", "10", "15", "20", "30");
@@ -76,9 +87,27 @@ public class BoxServerTabCompleter implements org.bukkit.command.TabCompleter {
                 if (args.length == 4) {
                     yield filterStartsWith(REGION_TYPES, args[3]);
                 }
+                if (args.length == 5) {
+                    yield filterStartsWith(Arrays.asList("cuboid", "polygon", "union"), args[4]);
+                }
+                yield new ArrayList<>();
+            }
+            case "flag" -> {
+                if (args.length == 3) {
+                    yield filterStartsWith(getRegionNames(), args[2]);
+                }
+                if (args.length == 4) {
+                    List<String> keys = Arrays.stream(RegionFlag.values())
+                            .map(RegionFlag::getKey)
+                            .collect(Collectors.toList());
+                    yield filterStartsWith(keys, args[3]);
+                }
+                if (args.length == 5) {
+                    yield filterStartsWith(Arrays.asList("true", "false"), args[4]);
+                }
                 yield new ArrayList<>();
             }
-            case "delete", "info", "priority" -> {
+            case "delete", "info", "priority", "baseline" -> {
                 if (args.length == 3) {
                     yield filterStartsWith(getRegionNames(), args[2]);
                 }
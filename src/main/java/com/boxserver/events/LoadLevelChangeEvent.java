@@ -0,0 +1,53 @@
+package com.boxserver.events;
+
+import com.boxserver.models.LoadLevel;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Called when the load governor moves to another level, for example to record it as a metric.
+ */
+public class LoadLevelChangeEvent extends Event {
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final LoadLevel level;
+    private final LoadLevel previous;
+    private final double mspt;
+
+    public LoadLevelChangeEvent(@NotNull LoadLevel level, @NotNull LoadLevel previous, double mspt) {
+        this.level = level;
+        this.previous = previous;
+        this.mspt = mspt;
+    }
+
+    /**
+     * Get the new load level.
+     */
+    public @NotNull LoadLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the level before the change.
+     */
+    public @NotNull LoadLevel getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Get the average MSPT that caused the change.
+     */
+    public double getMspt() {
+        return mspt;
+    }
+
+    @Override
+    public @NotNull HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static @NotNull HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
@@ -0,0 +1,47 @@
+package com.boxserver.events;
+
+import com.boxserver.models.Region;
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.player.PlayerEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Called when a player's highest priority region changes to a region.
+ * Fired after the player has moved, so it cannot be cancelled.
+ */
+public class RegionEnterEvent extends PlayerEvent {
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final Region region;
+    private final Region previous;
+
+    public RegionEnterEvent(@NotNull Player player, @NotNull Region region, Region previous) {
+        super(player);
+        this.region = region;
+        this.previous = previous;
+    }
+
+    /**
+     * Get the region the player entered.
+     */
+    public @NotNull Region getRegion() {
+        return region;
+    }
+
+    /**
+     * Get the region the player was in before, or null if they were outside all regions.
+     */
+    public Region getPrevious() {
+        return previous;
+    }
+
+    @Override
+    public @NotNull HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static @NotNull HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
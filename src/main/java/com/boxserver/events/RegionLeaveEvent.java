@@ -0,0 +1,47 @@
+package com.boxserver.events;
+
+import com.boxserver.models.Region;
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.player.PlayerEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Called when a player's highest priority region changes away from a region.
+ * Fired before the matching {@link RegionEnterEvent}, after the player has moved.
+ */
+public class RegionLeaveEvent extends PlayerEvent {
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final Region region;
+    private final Region next;
+
+    public RegionLeaveEvent(@NotNull Player player, @NotNull Region region, Region next) {
+        super(player);
+        this.region = region;
+        this.next = next;
+    }
+
+    /**
+     * Get the region the player left.
+     */
+    public @NotNull Region getRegion() {
+        return region;
+    }
+
+    /**
+     * Get the region the player is now in, or null if they are outside all regions.
+     */
+    public Region getNext() {
+        return next;
+    }
+
+    @Override
+    public @NotNull HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static @NotNull HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
@@ -1,17 +1,22 @@
 package com.boxserver.listeners;
 
 import com.boxserver.BoxServer;
+import com.boxserver.managers.BlockTracker;
+import com.boxserver.managers.RegionManager;
 import com.boxserver.models.Region;
+import com.boxserver.models.RegionFlag;
 import com.boxserver.models.RegionType;
-import com.boxserver.utils.MessageUtil;
-import org.bukkit.Location;
-import org.bukkit.Material;
+import com.boxserver.utils.DenialMessage;
+import com.boxserver.utils.WorldRegistry;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityExplodeEvent;
 
 import java.util.List;
 
@@ -29,14 +34,14 @@ public class BlockListener implements Listener {
     public void onBlockBreak(BlockBreakEvent event) {
         Player player = event.getPlayer();
         Block block = event.getBlock();
-        Location location = block.getLocation();
+        int world = WorldRegistry.idOf(block.getWorld());
 
         // Check for admin bypass
-        if (player.hasPermission("boxserver.admin") || player.hasPermission("boxserver.bypass.build")) {
+        if (plugin.getPermissionCache().canBypassBuild(player)) {
             return;
         }
 
-        Region region = plugin.getRegionManager().getRegionAt(location);
+        Region region = plugin.getRegionManager().getRegionAt(world, block.getX(), block.getY(), block.getZ());
         if (region == null) {
             return;
         }
@@ -44,59 +49,71 @@ public class BlockListener implements Listener {
         // Check if the block can be broken based on region rules
         if (!region.canBreak(block.getType())) {
             event.setCancelled(true);
-            String message = plugin.getConfig().getString("messages.no-break", "&cYou cannot break blocks here!");
-            MessageUtil.send(player, message);
+            plugin.getMessageLimiter().deny(player, DenialMessage.NO_BREAK);
             return;
         }
 
-        // If the block was player-placed and is being broken, untrack it
-        if (plugin.getBlockTracker().isTracked(block)) {
-            plugin.getBlockTracker().untrackBlock(block);
+        // Remember natural PvP arena blocks so the reset can restore them
+        if (region.getType() == RegionType.PVP && !isBaselined(region)) {
+            plugin.getBlockTracker().recordOriginal(block);
         }
+
+        // If the block was player-placed and is being broken, untrack it
+        plugin.getBlockTracker().untrackBlock(world, block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Check if a region is reset by comparing it against its baseline, so its blocks need no tracking.
+     * Regions without a baseline fall back to tracked resets even in baseline mode.
+     */
+    private boolean isBaselined(Region region) {
+        return plugin.getSettings().isBaselineResetMode() && plugin.getBaselineManager().hasBaseline(region);
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
         Player player = event.getPlayer();
         Block block = event.getBlock();
-        Location location = block.getLocation();
+        int world = WorldRegistry.idOf(block.getWorld());
+        int x = block.getX();
+        int y = block.getY();
+        int z = block.getZ();
 
         // Check for admin bypass
-        boolean hasAdminBypass = player.hasPermission("boxserver.admin") || player.hasPermission("boxserver.bypass.build");
-        
+        boolean hasAdminBypass = plugin.getPermissionCache().canBypassBuild(player);
+        Region region = plugin.getRegionManager().getRegionAt(world, x, y, z);
+
         if (!hasAdminBypass) {
-            Region region = plugin.getRegionManager().getRegionAt(location);
             if (region == null) {
                 return;
             }
 
             // Check if blocks can be placed in this region
-            if (!region.canPlace()) {
+            if (!region.allows(RegionFlag.PLACE)) {
                 event.setCancelled(true);
-                String message = plugin.getConfig().getString("messages.no-place", "&cYou cannot place blocks here!");
-                MessageUtil.send(player, message);
+                plugin.getMessageLimiter().deny(player, DenialMessage.NO_PLACE);
                 return;
             }
 
             // PvP region height restriction - cannot place blocks more than 6 blocks above ceiling
             if (region.getType() == RegionType.PVP) {
                 int ceilingY = region.getCeilingY();
-                int blockY = location.getBlockY();
-                
-                if (blockY > ceilingY + 6) {
+
+                if (y > ceilingY + 6) {
                     event.setCancelled(true);
-                    String message = plugin.getConfig().getString("messages.too-high", "&cYou cannot place blocks this high!");
-                    MessageUtil.send(player, message);
+                    plugin.getMessageLimiter().deny(player, DenialMessage.TOO_HIGH);
                     return;
                 }
             }
         }
         
         // Track blocks placed in PVP regions (operator status is considered)
-        Region region = plugin.getRegionManager().getRegionAt(location);
-        if (region != null && region.getType() == RegionType.PVP) {
-            boolean isOperator = player.hasPermission("boxserver.admin") || player.hasPermission("boxserver.bypass.build");
-            plugin.getBlockTracker().trackBlock(block, isOperator);
+        if (region != null && region.getType() == RegionType.PVP && !isBaselined(region)) {
+            BlockState replaced = event.getBlockReplacedState();
+            if (!hasAdminBypass && !replaced.getType().isAir()) {
+                plugin.getBlockTracker().recordOriginal(block, replaced.getBlockData());
+            }
+            plugin.getBlockTracker().trackBlock(world, x, y, z, hasAdminBypass);
         }
     }
 
@@ -105,108 +122,122 @@ public class BlockListener implements Listener {
         Block source = event.getBlock();
         Block target = event.getToBlock();
 
+        // Flow inside a region, or far from any protected region, needs no lookups
+        if (plugin.getRegionManager().canSkipFlowCheck(source, target)) {
+            return;
+        }
+
         // Check if water/lava is flowing into a protected region
-        Region sourceRegion = plugin.getRegionManager().getRegionAt(source.getLocation());
-        Region targetRegion = plugin.getRegionManager().getRegionAt(target.getLocation());
+        int world = WorldRegistry.idOf(source.getWorld());
+        Region sourceRegion = plugin.getRegionManager().getRegionAt(world, source.getX(), source.getY(), source.getZ());
+        Region targetRegion = plugin.getRegionManager().getRegionAt(world, target.getX(), target.getY(), target.getZ());
 
         // Allow flow within the same region or to unprotected areas
         if (sourceRegion == targetRegion) {
             return;
         }
 
-        // Block flow into spawn or protected regions from outside
-        if (targetRegion != null && 
-            (targetRegion.getType() == RegionType.SPAWN || 
-             targetRegion.getType() == RegionType.PROTECTED ||
-             targetRegion.getType() == RegionType.BOUNDARY)) {
+        // Block flow into regions that keep fluids out
+        if (targetRegion != null && !targetRegion.allows(RegionFlag.FLUID_IN)) {
             event.setCancelled(true);
         }
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onPistonExtend(BlockPistonExtendEvent event) {
-        List<Block> blocks = event.getBlocks();
-        Block piston = event.getBlock();
-        
-        for (Block block : blocks) {
-            Location targetLoc = block.getRelative(event.getDirection()).getLocation();
-            Region targetRegion = plugin.getRegionManager().getRegionAt(targetLoc);
-
-            // Prevent pistons from pushing blocks into protected regions
-            if (targetRegion != null && 
-                (targetRegion.getType() == RegionType.SPAWN || 
-                 targetRegion.getType() == RegionType.PROTECTED ||
-                 targetRegion.getType() == RegionType.BOUNDARY)) {
-                
-                Region sourceRegion = plugin.getRegionManager().getRegionAt(block.getLocation());
-                if (sourceRegion != targetRegion) {
-                    event.setCancelled(true);
-                    return;
-                }
-            }
-            
-            // Update tracking for moved blocks
-            if (plugin.getBlockTracker().isTracked(block)) {
-                plugin.getBlockTracker().untrackBlock(block);
-                Block targetBlock = block.getRelative(event.getDirection());
-                plugin.getBlockTracker().trackBlock(targetBlock, false);
-            }
+        if (!checkPistonMove(event.getBlocks(), event.getDirection())) {
+            event.setCancelled(true);
         }
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onPistonRetract(BlockPistonRetractEvent event) {
-        List<Block> blocks = event.getBlocks();
-
-        for (Block block : blocks) {
-            Location targetLoc = block.getRelative(event.getDirection()).getLocation();
-            Region targetRegion = plugin.getRegionManager().getRegionAt(targetLoc);
-
-            // Prevent pistons from pulling blocks into protected regions
-            if (targetRegion != null && 
-                (targetRegion.getType() == RegionType.SPAWN || 
-                 targetRegion.getType() == RegionType.PROTECTED ||
-                 targetRegion.getType() == RegionType.BOUNDARY)) {
-                
-                Region sourceRegion = plugin.getRegionManager().getRegionAt(block.getLocation());
+        if (!checkPistonMove(event.getBlocks(), event.getDirection())) {
+            event.setCancelled(true);
+        }
+    }
+
+    /**
+     * Check the blocks a piston moves and move their tracking along.
+     *
+     * @return False if a block would be moved into a protected region
+     */
+    private boolean checkPistonMove(List<Block> blocks, BlockFace direction) {
+        RegionManager regionManager = plugin.getRegionManager();
+        BlockTracker tracker = plugin.getBlockTracker();
+        int dx = direction.getModX();
+        int dy = direction.getModY();
+        int dz = direction.getModZ();
+
+        // Null when no region keeping pistons out is near the moved blocks' targets
+        Region[] targetRegions = regionManager.getRegionsAt(blocks, dx, dy, dz,
+                region -> !region.allows(RegionFlag.PISTON_IN));
+
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            int world = WorldRegistry.idOf(block.getWorld());
+            int x = block.getX();
+            int y = block.getY();
+            int z = block.getZ();
+            Region targetRegion = targetRegions != null ? targetRegions[i] : null;
+
+            // Prevent pistons from moving blocks into regions that keep them out
+            if (targetRegion != null && !targetRegion.allows(RegionFlag.PISTON_IN)) {
+                Region sourceRegion = regionManager.getRegionAt(world, x, y, z);
                 if (sourceRegion != targetRegion) {
-                    event.setCancelled(true);
-                    return;
+                    return false;
                 }
             }
-            
+
             // Update tracking for moved blocks
-            if (plugin.getBlockTracker().isTracked(block)) {
-                plugin.getBlockTracker().untrackBlock(block);
-                Block targetBlock = block.getRelative(event.getDirection());
-                plugin.getBlockTracker().trackBlock(targetBlock, false);
+            if (tracker.isTracked(world, x, y, z)) {
+                tracker.untrackBlock(world, x, y, z);
+                tracker.trackBlock(world, x + dx, y + dy, z + dz, false);
             }
         }
+        return true;
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onBlockExplode(BlockExplodeEvent event) {
-        event.blockList().removeIf(block -> {
-            Region region = plugin.getRegionManager().getRegionAt(block.getLocation());
-            if (region == null) {
-                return false;
+        // Remove blocks in regions without explosions from explosion list
+        plugin.getRegionManager().removeBlocksDenying(event.blockList(), RegionFlag.EXPLOSION);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplodeMonitor(BlockExplodeEvent event) {
+        recordExplodedBlocks(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplodeMonitor(EntityExplodeEvent event) {
+        recordExplodedBlocks(event.blockList());
+    }
+
+    /**
+     * Log the original state of blocks destroyed by an explosion in PvP regions.
+     * Runs at MONITOR so only blocks that are really destroyed are logged.
+     */
+    private void recordExplodedBlocks(List<Block> blocks) {
+        Region[] regions = plugin.getRegionManager().getRegionsAt(blocks, 0, 0, 0,
+                region -> region.getType() == RegionType.PVP);
+        if (regions == null) {
+            return;
+        }
+        for (int i = 0; i < regions.length; i++) {
+            if (regions[i] != null && regions[i].getType() == RegionType.PVP && !isBaselined(regions[i])) {
+                plugin.getBlockTracker().recordOriginal(blocks.get(i));
             }
-            
-            // Remove blocks in protected regions from explosion list
-            return region.getType() == RegionType.SPAWN || 
-                   region.getType() == RegionType.PROTECTED ||
-                   region.getType() == RegionType.BOUNDARY;
-        });
+        }
     }
 
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onBlockIgnite(BlockIgniteEvent event) {
         Block block = event.getBlock();
-        Region region = plugin.getRegionManager().getRegionAt(block.getLocation());
+        Region region = plugin.getRegionManager().getRegionAt(
+                WorldRegistry.idOf(block.getWorld()), block.getX(), block.getY(), block.getZ());
 
-        if (region != null && 
-            (region.getType() == RegionType.SPAWN || 
-             region.getType() == RegionType.PROTECTED)) {
+        if (region != null && !region.allows(RegionFlag.IGNITE)) {
             event.setCancelled(true);
         }
     }
@@ -214,12 +245,10 @@ public class BlockListener implements Listener {
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onBlockBurn(BlockBurnEvent event) {
         Block block = event.getBlock();
-        Region region = plugin.getRegionManager().getRegionAt(block.getLocation());
+        Region region = plugin.getRegionManager().getRegionAt(
+                WorldRegistry.idOf(block.getWorld()), block.getX(), block.getY(), block.getZ());
 
-        if (region != null && 
-            (region.getType() == RegionType.SPAWN || 
-             region.getType() == RegionType.PROTECTED ||
-             region.getType() == RegionType.BOUNDARY)) {
+        if (region != null && !region.allows(RegionFlag.BURN)) {
             event.setCancelled(true);
         }
     }
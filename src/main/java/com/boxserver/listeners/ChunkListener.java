@@ -0,0 +1,29 @@
+package com.boxserver.listeners;
+
+import com.boxserver.BoxServer;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+/**
+ * Applies block resets and baseline restores that were deferred while a chunk was unloaded.
+ */
+public class ChunkListener implements Listener {
+    private final BoxServer plugin;
+
+    public ChunkListener(BoxServer plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        // Freshly generated chunks cannot contain tracked blocks
+        if (event.isNewChunk()) {
+            return;
+        }
+
+        plugin.getBlockTracker().applyPendingReset(event.getChunk());
+        plugin.getBaselineManager().applyPendingChunk(event.getChunk());
+    }
+}
@@ -2,9 +2,8 @@ package com.boxserver.listeners;
 
 import com.boxserver.BoxServer;
 import com.boxserver.models.Region;
-import com.boxserver.models.RegionType;
-import com.boxserver.utils.MessageUtil;
-import org.bukkit.Location;
+import com.boxserver.models.RegionFlag;
+import com.boxserver.utils.DenialMessage;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
@@ -37,44 +36,38 @@ public class CombatListener implements Listener {
         }
 
         // Check for bypass permissions
-        if (attacker.hasPermission("boxserver.admin") || attacker.hasPermission("boxserver.bypass.pvp")) {
+        if (plugin.getPermissionCache().canBypassPvp(attacker)) {
             return;
         }
 
-        // Check regions for both players
-        Location victimLoc = victim.getLocation();
-        Location attackerLoc = attacker.getLocation();
-
-        Region victimRegion = plugin.getRegionManager().getRegionAt(victimLoc);
-        Region attackerRegion = plugin.getRegionManager().getRegionAt(attackerLoc);
+        // Check the cached regions of both players
+        Region victimRegion = plugin.getRegionManager().getPlayerRegion(victim);
+        Region attackerRegion = plugin.getRegionManager().getPlayerRegion(attacker);
 
         // If either player is in a region where PvP is disabled, cancel the damage
-        if (victimRegion != null && !victimRegion.isPvpEnabled()) {
+        if (victimRegion != null && !victimRegion.allows(RegionFlag.PVP)) {
             event.setCancelled(true);
-            String message = plugin.getConfig().getString("messages.no-pvp", "&cPvP is disabled in this area!");
-            MessageUtil.send(attacker, message);
+            plugin.getMessageLimiter().deny(attacker, DenialMessage.NO_PVP);
             return;
         }
 
-        if (attackerRegion != null && !attackerRegion.isPvpEnabled()) {
+        if (attackerRegion != null && !attackerRegion.allows(RegionFlag.PVP)) {
             event.setCancelled(true);
-            String message = plugin.getConfig().getString("messages.no-pvp", "&cPvP is disabled in this area!");
-            MessageUtil.send(attacker, message);
+            plugin.getMessageLimiter().deny(attacker, DenialMessage.NO_PVP);
         }
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onEntityDamage(EntityDamageEvent event) {
-        // Prevent all player damage in spawn (falling, suffocation, etc.)
+        // Prevent environmental player damage (falling, suffocation, etc.) in regions without it
         if (!(event.getEntity() instanceof Player player)) {
             return;
         }
 
-        Location location = player.getLocation();
-        Region region = plugin.getRegionManager().getRegionAt(location);
+        Region region = plugin.getRegionManager().getPlayerRegion(player);
 
-        if (region != null && region.getType() == RegionType.SPAWN) {
-            // Only prevent environmental damage types in spawn
+        if (region != null && !region.allows(RegionFlag.ENV_DAMAGE)) {
+            // Only prevent environmental damage types
             EntityDamageEvent.DamageCause cause = event.getCause();
             if (cause == EntityDamageEvent.DamageCause.FALL ||
                 cause == EntityDamageEvent.DamageCause.SUFFOCATION ||
@@ -1,10 +1,15 @@
 package com.boxserver.listeners;
 
 import com.boxserver.BoxServer;
+import com.boxserver.events.RegionEnterEvent;
+import com.boxserver.events.RegionLeaveEvent;
 import com.boxserver.models.Region;
+import com.boxserver.models.RegionFlag;
 import com.boxserver.models.RegionType;
-import com.boxserver.utils.MessageUtil;
+import com.boxserver.utils.DenialMessage;
+import com.boxserver.utils.WorldRegistry;
 import org.bukkit.Location;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.WindCharge;
 import org.bukkit.event.EventHandler;
@@ -13,13 +18,17 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.entity.ProjectileLaunchEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.util.Vector;
 
 /**
  * Handles player-related events for region protection.
@@ -38,14 +47,12 @@ public class PlayerListener implements Listener {
 
         // Check for wind charge usage
         if (item != null && item.getType() == Material.WIND_CHARGE) {
-            Location location = player.getLocation();
-            Region region = plugin.getRegionManager().getRegionAt(location);
+            Region region = plugin.getRegionManager().getPlayerRegion(player);
 
-            if (region != null && !region.allowsWindCharges()) {
-                if (!player.hasPermission("boxserver.admin") && !player.hasPermission("boxserver.bypass.build")) {
+            if (region != null && !region.allows(RegionFlag.WIND_CHARGE)) {
+                if (!plugin.getPermissionCache().canBypassBuild(player)) {
                     event.setCancelled(true);
-                    String message = plugin.getConfig().getString("messages.no-windcharge", "&cWind charges are disabled in this area!");
-                    MessageUtil.send(player, message);
+                    plugin.getMessageLimiter().deny(player, DenialMessage.NO_WINDCHARGE);
                 }
             }
         }
@@ -56,14 +63,12 @@ public class PlayerListener implements Listener {
         // Check if projectile is a wind charge
         if (event.getEntity() instanceof WindCharge windCharge) {
             if (windCharge.getShooter() instanceof Player player) {
-                Location location = player.getLocation();
-                Region region = plugin.getRegionManager().getRegionAt(location);
+                Region region = plugin.getRegionManager().getPlayerRegion(player);
 
-                if (region != null && !region.allowsWindCharges()) {
-                    if (!player.hasPermission("boxserver.admin") && !player.hasPermission("boxserver.bypass.build")) {
+                if (region != null && !region.allows(RegionFlag.WIND_CHARGE)) {
+                    if (!plugin.getPermissionCache().canBypassBuild(player)) {
                         event.setCancelled(true);
-                        String message = plugin.getConfig().getString("messages.no-windcharge", "&cWind charges are disabled in this area!");
-                        MessageUtil.send(player, message);
+                        plugin.getMessageLimiter().deny(player, DenialMessage.NO_WINDCHARGE);
                     }
                 }
             }
@@ -74,21 +79,12 @@ public class PlayerListener implements Listener {
     public void onEntityExplode(EntityExplodeEvent event) {
         // Handle wind charge explosions
         if (event.getEntity() instanceof WindCharge) {
-            event.blockList().removeIf(block -> {
-                Region region = plugin.getRegionManager().getRegionAt(block.getLocation());
-                if (region == null) {
-                    return false;
-                }
-
-                // Remove blocks in protected regions from explosion list
-                return region.getType() == RegionType.SPAWN ||
-                       region.getType() == RegionType.PROTECTED ||
-                       region.getType() == RegionType.BOUNDARY;
-            });
+            // Remove blocks in regions without explosions from explosion list
+            plugin.getRegionManager().removeBlocksDenying(event.blockList(), RegionFlag.EXPLOSION);
         }
     }
 
-    @EventHandler(priority = EventPriority.MONITOR)
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerMove(PlayerMoveEvent event) {
         // Only check if actual block position changed
         if (event.getFrom().getBlockX() == event.getTo().getBlockX() &&
@@ -97,20 +93,20 @@ public class PlayerListener implements Listener {
             return;
         }
 
-        Player player = event.getPlayer();
-        Location to = event.getTo();
-        Region toRegion = plugin.getRegionManager().getRegionAt(to);
-
-        // Handle player pushing prevention in spawn
-        if (toRegion != null && toRegion.getType() == RegionType.SPAWN) {
-            Vector velocity = player.getVelocity();
-            // Only reduce horizontal velocity (X and Z), not vertical (Y) to allow jumping/falling
-            // Check for significant horizontal velocity that indicates being pushed
-            double horizontalSpeed = Math.sqrt(velocity.getX() * velocity.getX() + velocity.getZ() * velocity.getZ());
-            if (horizontalSpeed > 0.5 && !player.isSprinting() && !player.isFlying() && player.isOnGround()) {
-                // Reduce only horizontal velocity, preserve vertical
-                player.setVelocity(new Vector(velocity.getX() * 0.1, velocity.getY(), velocity.getZ() * 0.1));
-            }
+        // Pushing is handled by the collision team when the region changes
+        plugin.getRegionManager().updatePlayerRegion(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRegionEnter(RegionEnterEvent event) {
+        plugin.getCollisionTeam().update(event.getPlayer(), event.getRegion());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRegionLeave(RegionLeaveEvent event) {
+        // Leaving into another region is followed by its enter event
+        if (event.getNext() == null) {
+            plugin.getCollisionTeam().update(event.getPlayer(), null);
         }
     }
 
@@ -121,28 +117,68 @@ public class PlayerListener implements Listener {
             Player player = event.getPlayer();
             Location to = event.getTo();
 
-            if (player.hasPermission("boxserver.admin") || player.hasPermission("boxserver.bypass.build")) {
+            if (plugin.getPermissionCache().canBypassBuild(player)) {
                 return;
             }
 
             Region toRegion = plugin.getRegionManager().getRegionAt(to);
-            Region fromRegion = plugin.getRegionManager().getRegionAt(event.getFrom());
+            Region fromRegion = plugin.getRegionManager().getPlayerRegion(player);
 
-            // Prevent ender pearling into spawn from outside
-            if (toRegion != null && toRegion.getType() == RegionType.SPAWN) {
-                if (fromRegion == null || fromRegion.getType() != RegionType.SPAWN) {
+            // Prevent ender pearling into regions that keep pearls out from outside
+            if (toRegion != null && !toRegion.allows(RegionFlag.PEARL_IN)) {
+                if (fromRegion == null || fromRegion.allows(RegionFlag.PEARL_IN)) {
                     event.setCancelled(true);
-                    MessageUtil.send(player, "&cYou cannot ender pearl into this area!");
+                    plugin.getMessageLimiter().deny(player, DenialMessage.NO_PEARL);
                 }
             }
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleportMonitor(PlayerTeleportEvent event) {
+        plugin.getRegionManager().updatePlayerRegion(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        plugin.getRegionManager().updatePlayerRegion(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onVehicleMove(VehicleMoveEvent event) {
+        // Riding players do not get move events of their own
+        for (Entity passenger : event.getVehicle().getPassengers()) {
+            if (passenger instanceof Player player) {
+                plugin.getRegionManager().updatePlayerRegion(player, event.getTo());
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        // Permissions can differ per world
+        plugin.getPermissionCache().refresh(event.getPlayer());
+        plugin.getRegionManager().updatePlayerRegion(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getPermissionCache().refresh(event.getPlayer());
+        plugin.getRegionManager().updatePlayerRegion(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getRegionManager().clearPlayerRegion(event.getPlayer().getUniqueId());
+        plugin.getPermissionCache().forget(event.getPlayer().getUniqueId());
+        plugin.getMessageLimiter().forget(event.getPlayer().getUniqueId());
+        plugin.getCollisionTeam().forget(event.getPlayer());
+    }
+
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onPlayerBucketEmpty(PlayerBucketEmptyEvent event) {
         Player player = event.getPlayer();
         Block block = event.getBlock();
-        Location location = block.getLocation();
         Material bucket = event.getBucket();
 
         // Only handle water buckets
@@ -151,18 +187,16 @@ public class PlayerListener implements Listener {
         }
 
         // Check for admin bypass
-        boolean hasAdminBypass = player.hasPermission("boxserver.admin") || player.hasPermission("boxserver.bypass.build");
-        
+        boolean hasAdminBypass = plugin.getPermissionCache().canBypassBuild(player);
+        int world = WorldRegistry.idOf(block.getWorld());
+
         if (!hasAdminBypass) {
-            Region region = plugin.getRegionManager().getRegionAt(location);
+            Region region = plugin.getRegionManager().getRegionAt(world, block.getX(), block.getY(), block.getZ());
             
-            // Prevent water bucket placement in SPAWN and PROTECTED regions
-            if (region != null && 
-                (region.getType() == RegionType.SPAWN || 
-                 region.getType() == RegionType.PROTECTED)) {
+            // Prevent water bucket placement in regions without buckets
+            if (region != null && !region.allows(RegionFlag.BUCKET)) {
                 event.setCancelled(true);
-                String message = plugin.getConfig().getString("messages.no-water", "&cYou cannot place water here!");
-                MessageUtil.send(player, message);
+                plugin.getMessageLimiter().deny(player, DenialMessage.NO_WATER);
                 return;
             }
             
@@ -172,13 +206,13 @@ public class PlayerListener implements Listener {
                 plugin.getServer().getScheduler().runTask(plugin, () -> {
                     Block waterBlock = block.getRelative(event.getBlockFace());
                     if (waterBlock.getType() == Material.WATER) {
-                        plugin.getBlockTracker().trackBlock(waterBlock, false);
+                        plugin.getBlockTracker().trackBlock(world, waterBlock.getX(), waterBlock.getY(), waterBlock.getZ(), false);
                     }
                 });
             }
         } else {
             // Operator placed water - don't track it
-            Region region = plugin.getRegionManager().getRegionAt(location);
+            Region region = plugin.getRegionManager().getRegionAt(world, block.getX(), block.getY(), block.getZ());
             if (region != null && region.getType() == RegionType.PVP) {
                 // Operators' water blocks are not tracked (won't be removed during reset)
                 // No action needed as trackBlock with placedByOperator=true will skip tracking
@@ -0,0 +1,760 @@
+package com.boxserver.managers;
+
+import com.boxserver.BoxServer;
+import com.boxserver.models.Region;
+import com.boxserver.models.RegionShape;
+import com.boxserver.storage.AsyncFileWriter;
+import com.boxserver.storage.BaselineSnapshot;
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2LongHashMap;
+import com.boxserver.utils.Long2ObjectHashMap;
+import com.boxserver.utils.MessageUtil;
+import com.boxserver.utils.WorldRegistry;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.command.CommandSender;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Manages baseline snapshots of PvP regions for the "baseline" reset mode.
+ *
+ * A baseline is captured once per region from chunk snapshots and written compressed to disk.
+ * At reset time the loaded chunks are snapshotted on the server thread a few at a time, compared
+ * against the baseline on an async thread, and only blocks that differ are handed back for restoring.
+ * Block state strings are only ever parsed into block data on the server thread.
+ * Chunks that are not loaded are compared when they next load; the list of them is kept on disk
+ * so it survives restarts.
+ */
+public class BaselineManager {
+    private static final int SECTION_BLOCKS = 16 * 16 * 16;
+    // Chunk loads a baseline capture keeps in flight
+    private static final int MAX_CAPTURE_LOADS = 16;
+    // Chunks a baseline comparison keeps in flight
+    private static final int MAX_DIFF_CHUNKS = 16;
+    private static final int PENDING_MAGIC = 0x42584250; // "BXBP"
+    private static final int PENDING_VERSION = 1;
+
+    private final BoxServer plugin;
+    private final File baselineFolder;
+    private final Map<String, BaselineSnapshot> baselines;
+    // Names of baselines already reported as not matching their region
+    private final Set<String> outdatedWarned;
+    // Chunk keys waiting for a baseline restore, persisted in pending-chunks.dat
+    private final Long2LongHashMap pendingChunks;
+    // Pending chunks whose restore is being compared
+    private final Long2LongHashMap restoringChunks;
+    private final Map<String, BlockData> parsedStates;
+    private boolean pendingSaveScheduled;
+
+    public BaselineManager(BoxServer plugin) {
+        this.plugin = plugin;
+        this.baselineFolder = new File(plugin.getDataFolder(), "baselines");
+        this.baselines = new HashMap<>();
+        this.outdatedWarned = new HashSet<>();
+        this.pendingChunks = new Long2LongHashMap();
+        this.restoringChunks = new Long2LongHashMap();
+        this.parsedStates = new HashMap<>();
+        loadBaselines();
+        loadPendingChunks();
+    }
+
+    /**
+     * Load all baselines from disk.
+     */
+    public void loadBaselines() {
+        baselines.clear();
+        outdatedWarned.clear();
+        File[] files = baselineFolder.listFiles((dir, name) -> name.endsWith(".baseline"));
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = file.getName().substring(0, file.getName().length() - ".baseline".length());
+            try {
+                baselines.put(name.toLowerCase(), BaselineSnapshot.read(file));
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to load baseline " + file.getName() + ": " + e.getMessage());
+            }
+        }
+
+        plugin.getLogger().info("Loaded " + baselines.size() + " region baselines.");
+    }
+
+    /**
+     * Check if a region has a baseline that still matches its world and bounds.
+     */
+    public boolean hasBaseline(Region region) {
+        return getBaseline(region) != null;
+    }
+
+    /**
+     * Get the baseline of a region, or null if it has none or the region has moved to another
+     * world or changed its bounds since the baseline was captured. Such a region is reset
+     * through tracked blocks until its baseline is captured again.
+     */
+    public BaselineSnapshot getBaseline(Region region) {
+        String name = region.getName().toLowerCase();
+        BaselineSnapshot baseline = baselines.get(name);
+        if (baseline == null || matches(baseline, region)) {
+            return baseline;
+        }
+        if (outdatedWarned.add(name)) {
+            plugin.getLogger().warning("The baseline of region " + region.getName() + " does not match its world"
+                    + " and bounds anymore; resetting it through tracked blocks until the baseline is captured again.");
+        }
+        return null;
+    }
+
+    /**
+     * Check if a region has a baseline that no longer matches its world and bounds.
+     */
+    public boolean hasOutdatedBaseline(Region region) {
+        BaselineSnapshot baseline = baselines.get(region.getName().toLowerCase());
+        return baseline != null && !matches(baseline, region);
+    }
+
+    private static boolean matches(BaselineSnapshot baseline, Region region) {
+        int worldId = WorldRegistry.idOf(region.getWorldId());
+        return worldId >= 0 && worldId == WorldRegistry.idOf(baseline.getWorldName())
+                && baseline.getMinX() == region.getMinX() && baseline.getMaxX() == region.getMaxX()
+                && baseline.getMinY() == region.getMinY() && baseline.getMaxY() == region.getMaxY()
+                && baseline.getMinZ() == region.getMinZ() && baseline.getMaxZ() == region.getMaxZ();
+    }
+
+    /**
+     * Capture the current blocks of a region as its baseline.
+     * Chunks are loaded asynchronously, at most {@value #MAX_CAPTURE_LOADS} at a time. Each chunk
+     * is snapshotted on the server thread when it becomes available and its sections are encoded
+     * async right away, so only the snapshots of chunks in flight are held in memory.
+     *
+     * @param sender Receives a message when the capture completes
+     * @return false if the region's world is not loaded
+     */
+    public boolean capture(Region region, CommandSender sender) {
+        World world = Bukkit.getWorld(region.getWorldId());
+        if (world == null) {
+            return false;
+        }
+        new Capture(region, world, sender).start();
+        return true;
+    }
+
+    /**
+     * A baseline capture in progress. Chunk loads and bookkeeping happen on the server thread.
+     */
+    private final class Capture {
+        private final String name;
+        private final World world;
+        private final CommandSender sender;
+        private final RegionShape shape;
+        private final int minX;
+        private final int minY;
+        private final int minZ;
+        private final int maxX;
+        private final int maxY;
+        private final int maxZ;
+        // Unclamped region height, stored with the baseline so it can be matched against the region
+        private final int regionMinY;
+        private final int regionMaxY;
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int chunksZ;
+        // Encoded sections per chunk, kept in chunk order so the baseline is ordered by chunk and height
+        private final BaselineSnapshot.Section[][] chunkSections;
+        private int nextChunk;
+        private int remaining;
+        private boolean failed;
+
+        Capture(Region region, World world, CommandSender sender) {
+            this.name = region.getName();
+            this.world = world;
+            this.sender = sender;
+            this.shape = region.getShape();
+            this.minX = region.getMinX();
+            this.minY = Math.max(region.getMinY(), world.getMinHeight());
+            this.minZ = region.getMinZ();
+            this.maxX = region.getMaxX();
+            this.maxY = Math.min(region.getMaxY(), world.getMaxHeight() - 1);
+            this.maxZ = region.getMaxZ();
+            this.regionMinY = region.getMinY();
+            this.regionMaxY = region.getMaxY();
+            this.minChunkX = minX >> 4;
+            this.minChunkZ = minZ >> 4;
+            this.chunksZ = (maxZ >> 4) - minChunkZ + 1;
+            this.chunkSections = new BaselineSnapshot.Section[((maxX >> 4) - minChunkX + 1) * chunksZ][];
+            this.remaining = chunkSections.length;
+        }
+
+        void start() {
+            for (int i = 0; i < MAX_CAPTURE_LOADS; i++) {
+                loadNext();
+            }
+        }
+
+        private void loadNext() {
+            if (failed || nextChunk >= chunkSections.length) {
+                return;
+            }
+            int index = nextChunk++;
+            world.getChunkAtAsync(minChunkX + index / chunksZ, minChunkZ + index % chunksZ).whenComplete((chunk, error) -> {
+                if (error != null) {
+                    Bukkit.getScheduler().runTask(plugin, () -> fail(error));
+                    return;
+                }
+                // Paper completes chunk loads on the server thread, so the snapshot is taken there
+                ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                    try {
+                        BaselineSnapshot.Section[] sections = new BaselineSnapshot.Section[Math.max(0, (maxY >> 4) - (minY >> 4) + 1)];
+                        for (int sy = minY >> 4; sy <= maxY >> 4; sy++) {
+                            sections[sy - (minY >> 4)] = captureSection(snapshot, sy, shape, minX, minY, minZ, maxX, maxY, maxZ);
+                        }
+                        Bukkit.getScheduler().runTask(plugin, () -> chunkDone(index, sections));
+                    } catch (RuntimeException e) {
+                        Bukkit.getScheduler().runTask(plugin, () -> fail(e));
+                    }
+                });
+            });
+        }
+
+        private void chunkDone(int index, BaselineSnapshot.Section[] sections) {
+            if (failed) {
+                return;
+            }
+            chunkSections[index] = sections;
+            if (--remaining == 0) {
+                finish();
+            } else {
+                loadNext();
+            }
+        }
+
+        private void fail(Throwable error) {
+            if (failed) {
+                return;
+            }
+            failed = true;
+            plugin.getLogger().warning("Could not capture the baseline of region " + name + ": " + error);
+            MessageUtil.send(sender, "&cCould not capture the baseline of region '" + name + "'.");
+        }
+
+        /**
+         * Assemble and write the baseline, async.
+         */
+        private void finish() {
+            List<BaselineSnapshot.Section> sections = new ArrayList<>();
+            for (BaselineSnapshot.Section[] chunk : chunkSections) {
+                Collections.addAll(sections, chunk);
+            }
+            String worldName = world.getName();
+
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                BaselineSnapshot baseline = new BaselineSnapshot(worldName, minX, regionMinY, minZ, maxX, regionMaxY, maxZ,
+                        sections);
+                byte[] bytes = baseline.toBytes();
+                File file = getBaselineFile(name);
+                plugin.getFileWriter().submit("baseline " + name.toLowerCase(), () -> {
+                    if (!baselineFolder.exists() && !baselineFolder.mkdirs()) {
+                        throw new IOException("Could not create " + baselineFolder);
+                    }
+                    AsyncFileWriter.writeAtomically(file, bytes);
+                });
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    baselines.put(name.toLowerCase(), baseline);
+                    outdatedWarned.remove(name.toLowerCase());
+                    MessageUtil.send(sender, "&aCaptured baseline of region '" + name + "' (" + sections.size()
+                            + " sections, " + bytes.length / 1024 + " KB).");
+                });
+            });
+        }
+    }
+
+    /**
+     * Encode the part of a chunk section that lies inside the region bounds and shape.
+     *
+     * @param shape The region's shape, or null for a cuboid
+     */
+    private static BaselineSnapshot.Section captureSection(ChunkSnapshot snapshot, int sectionY, RegionShape shape,
+                                                          int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        Map<String, Short> paletteIndex = new HashMap<>();
+        String[] palette = new String[16];
+        short[] indices = new short[SECTION_BLOCKS];
+        Arrays.fill(indices, (short) -1);
+
+        int baseX = snapshot.getX() << 4;
+        int baseY = sectionY << 4;
+        int baseZ = snapshot.getZ() << 4;
+        for (int y = Math.max(minY, baseY); y <= Math.min(maxY, baseY + 15); y++) {
+            for (int z = Math.max(minZ, baseZ); z <= Math.min(maxZ, baseZ + 15); z++) {
+                for (int x = Math.max(minX, baseX); x <= Math.min(maxX, baseX + 15); x++) {
+                    if (shape != null && !shape.contains(x, y, z)) {
+                        continue;
+                    }
+                    String state = snapshot.getBlockData(x - baseX, y, z - baseZ).getAsString();
+                    Short index = paletteIndex.get(state);
+                    if (index == null) {
+                        index = (short) paletteIndex.size();
+                        paletteIndex.put(state, index);
+                        if (index == palette.length) {
+                            palette = Arrays.copyOf(palette, palette.length * 2);
+                        }
+                        palette[index] = state;
+                    }
+                    indices[((y - baseY) << 8) | ((z - baseZ) << 4) | (x - baseX)] = index;
+                }
+            }
+        }
+
+        byte[] data = BaselineSnapshot.encodeSection(palette, paletteIndex.size(), indices);
+        return new BaselineSnapshot.Section(snapshot.getX(), sectionY, snapshot.getZ(), data);
+    }
+
+    /**
+     * Delete the baseline of a region.
+     */
+    public void delete(String regionName) {
+        if (baselines.remove(regionName.toLowerCase()) == null) {
+            return;
+        }
+        File file = getBaselineFile(regionName);
+        plugin.getFileWriter().execute("baseline delete", () -> {
+            if (file.exists() && !file.delete()) {
+                plugin.getLogger().warning("Could not delete baseline " + file.getName());
+            }
+        });
+    }
+
+    /**
+     * Compare the loaded chunks of some regions against their baselines.
+     * Chunks are snapshotted and compared at most {@value #MAX_DIFF_CHUNKS} at a time, and each
+     * chunk's snapshot and inflated sections are released as soon as it has been compared.
+     * Unloaded chunks are marked and compared when they next load instead.
+     * Regions without a matching baseline or whose world is not loaded are left out.
+     *
+     * @param callback Called on the server thread with the baseline state of every block that differs
+     * @param onFailure Called on the server thread instead if the comparison fails
+     * @return The regions that are compared
+     */
+    public List<Region> diff(List<Region> regions, Consumer<Long2ObjectHashMap<BlockData>> callback,
+                             Consumer<Throwable> onFailure) {
+        List<Region> compared = new ArrayList<>();
+        List<DiffChunk> chunks = new ArrayList<>();
+        for (Region region : regions) {
+            BaselineSnapshot baseline = getBaseline(region);
+            World world = baseline != null ? Bukkit.getWorld(baseline.getWorldName()) : null;
+            int worldId = WorldRegistry.idOf(world);
+            if (worldId < 0) {
+                continue;
+            }
+            addChunks(baseline, world, worldId, chunks);
+            compared.add(region);
+        }
+        new Diff(chunks, callback, onFailure).start();
+        return compared;
+    }
+
+    /**
+     * Group the sections of a baseline by chunk. Sections are stored in chunk order.
+     */
+    private static void addChunks(BaselineSnapshot baseline, World world, int worldId, List<DiffChunk> chunks) {
+        List<BaselineSnapshot.Section> sections = new ArrayList<>();
+        long chunkKey = BlockKey.INVALID;
+        for (BaselineSnapshot.Section section : baseline.getSections()) {
+            long sectionChunk = BlockKey.chunkKey(worldId, section.chunkX(), section.chunkZ());
+            if (sectionChunk != chunkKey && !sections.isEmpty()) {
+                chunks.add(new DiffChunk(world, worldId, chunkKey, sections));
+                sections = new ArrayList<>();
+            }
+            chunkKey = sectionChunk;
+            sections.add(section);
+        }
+        if (!sections.isEmpty()) {
+            chunks.add(new DiffChunk(world, worldId, chunkKey, sections));
+        }
+    }
+
+    /**
+     * A baseline comparison in progress. Snapshots, state parsing and bookkeeping happen on the
+     * server thread; inflating and comparing sections run async.
+     */
+    private final class Diff {
+        private final List<DiffChunk> chunks;
+        private final Consumer<Long2ObjectHashMap<BlockData>> callback;
+        private final Consumer<Throwable> onFailure;
+        private final Long2ObjectHashMap<BlockData> changes;
+        private int nextChunk;
+        private int remaining;
+        private boolean done;
+
+        Diff(List<DiffChunk> chunks, Consumer<Long2ObjectHashMap<BlockData>> callback, Consumer<Throwable> onFailure) {
+            this.chunks = chunks;
+            this.callback = callback;
+            this.onFailure = onFailure;
+            this.changes = new Long2ObjectHashMap<>();
+            this.remaining = chunks.size();
+        }
+
+        void start() {
+            try {
+                for (int i = 0; i < MAX_DIFF_CHUNKS; i++) {
+                    compareNext();
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Snapshot the next loaded chunk and start comparing it, deferring unloaded chunks on the way.
+         */
+        private void compareNext() {
+            while (!done && nextChunk < chunks.size()) {
+                DiffChunk chunk = chunks.get(nextChunk++);
+                int chunkX = BlockKey.chunkX(chunk.chunkKey());
+                int chunkZ = BlockKey.chunkZ(chunk.chunkKey());
+                if (!chunk.world().isChunkLoaded(chunkX, chunkZ)) {
+                    deferChunk(chunk.chunkKey());
+                    remaining--;
+                    continue;
+                }
+                compareChunk(chunk, chunk.world().getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false));
+                return;
+            }
+            if (!done && remaining == 0) {
+                done = true;
+                // Outside the stage, so a failing callback is not mistaken for a failed comparison
+                Bukkit.getScheduler().runTask(plugin, () -> callback.accept(changes));
+            }
+        }
+
+        /**
+         * Inflate a chunk's sections async, parse their states on the server thread, then compare async.
+         */
+        private void compareChunk(DiffChunk chunk, ChunkSnapshot snapshot) {
+            World world = chunk.world();
+            int minSectionY = world.getMinHeight() >> 4;
+            int maxSectionY = (world.getMaxHeight() - 1) >> 4;
+            async(() -> {
+                // Sections outside the world's current height cannot be read or restored
+                List<BaselineSnapshot.Section> sections = new ArrayList<>();
+                List<BaselineSnapshot.DecodedSection> decoded = new ArrayList<>();
+                Set<String> states = new HashSet<>();
+                for (BaselineSnapshot.Section section : chunk.sections()) {
+                    BaselineSnapshot.DecodedSection inflated = section.sectionY() >= minSectionY
+                            && section.sectionY() <= maxSectionY ? decodeSection(section) : null;
+                    if (inflated != null) {
+                        sections.add(section);
+                        decoded.add(inflated);
+                        Collections.addAll(states, inflated.palette());
+                    }
+                }
+                sync(() -> {
+                    Map<String, BlockData> parsed = parseStates(states);
+                    async(() -> {
+                        Long2ObjectHashMap<BlockData> chunkChanges = new Long2ObjectHashMap<>();
+                        for (int i = 0; i < sections.size(); i++) {
+                            diffSection(sections.get(i), decoded.get(i), snapshot, chunk.worldId(), parsed, chunkChanges);
+                        }
+                        sync(() -> chunkDone(chunkChanges));
+                    });
+                });
+            });
+        }
+
+        private void chunkDone(Long2ObjectHashMap<BlockData> chunkChanges) {
+            chunkChanges.forEach(changes::put);
+            remaining--;
+            compareNext();
+        }
+
+        /**
+         * Run a stage async, reporting anything it throws back to the server thread.
+         */
+        private void async(Runnable stage) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                try {
+                    stage.run();
+                } catch (RuntimeException e) {
+                    Bukkit.getScheduler().runTask(plugin, () -> fail(e));
+                }
+            });
+        }
+
+        /**
+         * Run a stage on the server thread unless the comparison has ended, failing it if the stage throws.
+         */
+        private void sync(Runnable stage) {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (done) {
+                    return;
+                }
+                try {
+                    stage.run();
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        private void fail(Throwable error) {
+            if (done) {
+                return;
+            }
+            done = true;
+            onFailure.accept(error);
+        }
+    }
+
+    /**
+     * Parse block state strings through the shared cache. Server thread only.
+     *
+     * @return A new map from each state to its block data, or to null if it is not valid on this server version
+     */
+    private Map<String, BlockData> parseStates(Collection<String> states) {
+        Map<String, BlockData> parsed = new HashMap<>(states.size() * 2);
+        for (String state : states) {
+            parsed.put(state, parsedStates.computeIfAbsent(state, BaselineManager::parseState));
+        }
+        return parsed;
+    }
+
+    /**
+     * Start restoring a chunk that was not loaded when the last baseline reset ran.
+     * The chunk is compared through the same async pipeline as a reset, so the event only looks up
+     * its sections; setting the blocks that differ is the only work left on the server thread, as
+     * when a tracked reset is applied to a loaded chunk. Physics is skipped so the restore cannot
+     * cascade into loading neighbouring chunks. The chunk stays pending until it has been restored.
+     */
+    public void applyPendingChunk(Chunk chunk) {
+        if (pendingChunks.isEmpty()) {
+            return;
+        }
+
+        World world = chunk.getWorld();
+        int worldId = WorldRegistry.idOf(world);
+        if (worldId < 0) {
+            return;
+        }
+        long chunkKey = BlockKey.chunkKey(worldId, chunk.getX(), chunk.getZ());
+        if (!pendingChunks.containsKey(chunkKey) || !restoringChunks.put(chunkKey, 1)) {
+            return;
+        }
+
+        List<DiffChunk> chunks = new ArrayList<>();
+        for (BaselineSnapshot baseline : baselines.values()) {
+            if (!baseline.getWorldName().equals(world.getName()) || !baseline.coversChunk(chunk.getX(), chunk.getZ())) {
+                continue;
+            }
+            List<BaselineSnapshot.Section> sections = new ArrayList<>();
+            for (BaselineSnapshot.Section section : baseline.getSections()) {
+                if (section.chunkX() == chunk.getX() && section.chunkZ() == chunk.getZ()) {
+                    sections.add(section);
+                }
+            }
+            if (!sections.isEmpty()) {
+                chunks.add(new DiffChunk(world, worldId, chunkKey, sections));
+            }
+        }
+
+        new Diff(chunks, changes -> {
+            restoringChunks.remove(chunkKey);
+            // A chunk that unloaded again while it was compared stays pending
+            if (!world.isChunkLoaded(chunk.getX(), chunk.getZ())) {
+                return;
+            }
+            changes.forEach((key, data) -> world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key))
+                    .setBlockData(data, false));
+            pendingChunks.remove(chunkKey);
+            schedulePendingSave();
+        }, error -> {
+            restoringChunks.remove(chunkKey);
+            pendingChunks.remove(chunkKey);
+            schedulePendingSave();
+            plugin.getLogger().log(Level.WARNING, "Could not restore chunk " + chunk.getX() + ", " + chunk.getZ()
+                    + " from its baseline.", error);
+        }).start();
+    }
+
+    /**
+     * Mark a chunk to be compared against its baseline when it next loads.
+     */
+    public void deferChunk(long chunkKey) {
+        if (pendingChunks.put(chunkKey, 1)) {
+            schedulePendingSave();
+        }
+    }
+
+    /**
+     * Load the chunks waiting for a baseline restore, remapping world ids by name.
+     */
+    private void loadPendingChunks() {
+        File file = getPendingFile();
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != PENDING_MAGIC || in.readInt() != PENDING_VERSION) {
+                throw new IOException("unknown format");
+            }
+            int[] worldMap = new int[BlockKey.MAX_WORLDS];
+            Arrays.fill(worldMap, -1);
+            int worldCount = in.readUnsignedByte();
+            for (int i = 0; i < worldCount; i++) {
+                worldMap[in.readUnsignedByte()] = WorldRegistry.idOf(in.readUTF());
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long chunkKey = in.readLong();
+                int worldId = worldMap[BlockKey.chunkWorldId(chunkKey)];
+                if (worldId >= 0) {
+                    pendingChunks.put(BlockKey.chunkKey(worldId, BlockKey.chunkX(chunkKey), BlockKey.chunkZ(chunkKey)), 1);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to load " + file.getName() + ": " + e.getMessage());
+        }
+        if (!pendingChunks.isEmpty()) {
+            plugin.getLogger().info(pendingChunks.size() + " unloaded chunks have a baseline restore pending.");
+        }
+    }
+
+    /**
+     * Save the pending chunks at the end of this tick, so a reset deferring many chunks writes them once.
+     */
+    private void schedulePendingSave() {
+        if (!pendingSaveScheduled) {
+            pendingSaveScheduled = true;
+            Bukkit.getScheduler().runTask(plugin, this::savePendingChunks);
+        }
+    }
+
+    /**
+     * Write the chunks waiting for a baseline restore in the background, or delete the file if there are none.
+     */
+    public void savePendingChunks() {
+        pendingSaveScheduled = false;
+        long[] chunkKeys = pendingChunks.keysToArray();
+        String[] worldNames = new String[BlockKey.MAX_WORLDS];
+        for (long chunkKey : chunkKeys) {
+            worldNames[BlockKey.chunkWorldId(chunkKey)] = WorldRegistry.nameOf(BlockKey.chunkWorldId(chunkKey));
+        }
+
+        File file = getPendingFile();
+        plugin.getFileWriter().submit("baseline pending chunks", () -> {
+            if (chunkKeys.length == 0) {
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("Could not delete " + file);
+                }
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + chunkKeys.length * 8);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(PENDING_MAGIC);
+            out.writeInt(PENDING_VERSION);
+            int worldCount = 0;
+            for (String worldName : worldNames) {
+                if (worldName != null) {
+                    worldCount++;
+                }
+            }
+            out.writeByte(worldCount);
+            for (int worldId = 0; worldId < worldNames.length; worldId++) {
+                if (worldNames[worldId] != null) {
+                    out.writeByte(worldId);
+                    out.writeUTF(worldNames[worldId]);
+                }
+            }
+            out.writeInt(chunkKeys.length);
+            for (long chunkKey : chunkKeys) {
+                out.writeLong(chunkKey);
+            }
+            AsyncFileWriter.writeAtomically(file, bytes.toByteArray());
+        });
+    }
+
+    /**
+     * Inflate a baseline section, or log and return null if it is unreadable.
+     */
+    private BaselineSnapshot.DecodedSection decodeSection(BaselineSnapshot.Section section) {
+        try {
+            return BaselineSnapshot.decodeSection(section.data());
+        } catch (IOException e) {
+            plugin.getLogger().warning("Skipping unreadable baseline section at chunk " + section.chunkX() + ", "
+                    + section.chunkZ() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compare one decoded baseline section against a chunk snapshot, collecting the blocks that differ.
+     * Only reads already parsed block data, so it is safe to call off the server thread.
+     *
+     * @param parsed Block data of every state in the section's palette
+     */
+    private static void diffSection(BaselineSnapshot.Section section, BaselineSnapshot.DecodedSection decoded,
+                                    ChunkSnapshot snapshot, int worldId, Map<String, BlockData> parsed,
+                                    Long2ObjectHashMap<BlockData> changes) {
+        BlockData[] palette = new BlockData[decoded.palette().length];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = parsed.get(decoded.palette()[i]);
+        }
+
+        int baseX = section.chunkX() << 4;
+        int baseY = section.sectionY() << 4;
+        int baseZ = section.chunkZ() << 4;
+        short[] indices = decoded.indices();
+        for (int i = 0; i < indices.length; i++) {
+            BlockData expected = indices[i] >= 0 ? palette[indices[i]] : null;
+            if (expected == null) {
+                continue;
+            }
+            int x = i & 15;
+            int y = baseY + (i >> 8);
+            int z = (i >> 4) & 15;
+            if (!snapshot.getBlockData(x, y, z).equals(expected)) {
+                changes.put(BlockKey.pack(worldId, baseX + x, y, baseZ + z), expected);
+            }
+        }
+    }
+
+    /**
+     * Parse a block state string, or return null if it is not valid on this server version.
+     */
+    private static BlockData parseState(String state) {
+        try {
+            return Bukkit.createBlockData(state);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the number of chunks waiting to be compared against a baseline when they load.
+     */
+    public int getPendingChunks() {
+        return pendingChunks.size();
+    }
+
+    private File getPendingFile() {
+        return new File(baselineFolder, "pending-chunks.dat");
+    }
+
+    private File getBaselineFile(String regionName) {
+        return new File(baselineFolder, regionName.toLowerCase() + ".baseline");
+    }
+
+    /**
+     * The baseline sections of one chunk, in height order.
+     */
+    private record DiffChunk(World world, int worldId, long chunkKey, List<BaselineSnapshot.Section> sections) {
+    }
+}
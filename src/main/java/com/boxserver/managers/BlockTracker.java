@@ -2,36 +2,76 @@ package com.boxserver.managers;
 
 import com.boxserver.BoxServer;
 import com.boxserver.models.Region;
-import com.boxserver.models.RegionType;
+import com.boxserver.storage.AsyncFileWriter;
+import com.boxserver.storage.BitmapBlockStore;
+import com.boxserver.storage.BlockJournal;
+import com.boxserver.storage.BlockStore;
+import com.boxserver.storage.HashBlockStore;
+import com.boxserver.storage.MappedBlockSnapshot;
+import com.boxserver.storage.OriginalStateLog;
+import com.boxserver.utils.BlockKey;
 import com.boxserver.utils.LocationUtil;
+import com.boxserver.utils.Long2ObjectHashMap;
+import com.boxserver.utils.LongArrayList;
+import com.boxserver.utils.WorldRegistry;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tracks player-placed blocks for the reset feature.
- * Uses chunk-based storage for efficiency.
+ * Blocks are stored as packed long keys in primitive per-chunk maps
+ * and persisted through an append-only journal. Blocks from the last snapshot stay in
+ * the memory-mapped file until their chunk is first touched.
+ * Resets of unloaded chunks are deferred and applied when the chunk next loads.
+ *
+ * Natural blocks changed by players in PvP regions have their original state logged,
+ * so a reset can restore them instead of only removing placed blocks.
  */
 public class BlockTracker {
     private final BoxServer plugin;
-    private final Map<Long, Set<String>> chunkBlocks; // Chunk key -> Set of block keys
-    private final Map<String, Long> blockTimestamps; // Block key -> Timestamp
-    private File dataFile;
+    private final BlockJournal journal;
+    private BlockStore store;
+    private MappedBlockSnapshot snapshot;
+    private final Long2ObjectHashMap<long[]> pendingResets;
+    private final OriginalStateLog originalStates;
+    // Only touched on the I/O thread
+    private final OriginalStateLog.FileImage originalStateImage;
+    private final Map<String, BlockData> parsedStates;
+    private BukkitTask flushTask;
 
     public BlockTracker(BoxServer plugin) {
         this.plugin = plugin;
-        this.chunkBlocks = new ConcurrentHashMap<>();
-        this.blockTimestamps = new ConcurrentHashMap<>();
+        this.journal = new BlockJournal(plugin.getDataFolder(), plugin.getLogger(), plugin.getFileWriter());
+        this.pendingResets = new Long2ObjectHashMap<>();
+        this.originalStates = new OriginalStateLog();
+        this.originalStateImage = new OriginalStateLog.FileImage();
+        this.parsedStates = new HashMap<>();
         loadData();
+        startFlushTask();
+    }
+
+    /**
+     * Start the task that periodically writes journal records to disk.
+     */
+    private void startFlushTask() {
+        if (flushTask != null) {
+            flushTask.cancel();
+        }
+        long intervalTicks = plugin.getSettings().getFlushIntervalSeconds() * 20L;
+        flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::saveData, intervalTicks, intervalTicks);
     }
 
     /**
@@ -53,231 +93,502 @@ public class BlockTracker {
             return;
         }
 
-        String key = LocationUtil.blockToKey(block);
-        if (key == null) {
+        track(LocationUtil.packBlock(block));
+    }
+
+    /**
+     * Track a placed block by its coordinates without creating any objects.
+     * Only non-operator blocks are tracked.
+     *
+     * @param world The {@link WorldRegistry} id of the block's world
+     */
+    public void trackBlock(int world, int x, int y, int z, boolean placedByOperator) {
+        if (!placedByOperator) {
+            track(LocationUtil.packBlock(world, x, y, z));
+        }
+    }
+
+    private void track(long key) {
+        if (key == BlockKey.INVALID) {
             return;
         }
 
-        long chunkKey = LocationUtil.getChunkKey(block.getLocation());
-        
-        chunkBlocks.computeIfAbsent(chunkKey, k -> ConcurrentHashMap.newKeySet()).add(key);
-        blockTimestamps.put(key, System.currentTimeMillis());
+        long timestamp = System.currentTimeMillis();
+        faultIn(key);
+        store.add(key, timestamp);
+        journal.recordTrack(key, timestamp);
     }
 
     /**
      * Untrack a block (when broken by a player).
      */
     public void untrackBlock(Block block) {
-        if (block == null) {
-            return;
-        }
+        untrack(LocationUtil.packBlock(block));
+    }
+
+    /**
+     * Untrack a block by its coordinates.
+     *
+     * @param world The {@link WorldRegistry} id of the block's world
+     */
+    public void untrackBlock(int world, int x, int y, int z) {
+        untrack(LocationUtil.packBlock(world, x, y, z));
+    }
 
-        String key = LocationUtil.blockToKey(block);
-        if (key == null) {
+    /**
+     * Untrack a block by its packed key.
+     */
+    public void untrack(long key) {
+        if (key == BlockKey.INVALID) {
             return;
         }
 
-        long chunkKey = LocationUtil.getChunkKey(block.getLocation());
-        
-        Set<String> blocks = chunkBlocks.get(chunkKey);
-        if (blocks != null) {
-            blocks.remove(key);
-            if (blocks.isEmpty()) {
-                chunkBlocks.remove(chunkKey);
-            }
+        faultIn(key);
+        if (store.remove(key)) {
+            journal.recordUntrack(key);
         }
-        blockTimestamps.remove(key);
     }
 
     /**
      * Check if a block is tracked (player-placed).
      */
     public boolean isTracked(Block block) {
+        return isTracked(LocationUtil.packBlock(block));
+    }
+
+    /**
+     * Check if a block is tracked by its coordinates.
+     *
+     * @param world The {@link WorldRegistry} id of the block's world
+     */
+    public boolean isTracked(int world, int x, int y, int z) {
+        return isTracked(LocationUtil.packBlock(world, x, y, z));
+    }
+
+    /**
+     * Check if a block is tracked by its packed key.
+     */
+    public boolean isTracked(long key) {
+        if (key == BlockKey.INVALID) {
+            return false;
+        }
+
+        faultIn(key);
+        return store.contains(key);
+    }
+
+    /**
+     * Log the current state of a block as its original state, before a player changes it.
+     * Only the first change is logged, and blocks placed by players are never logged.
+     */
+    public void recordOriginal(Block block) {
+        long key = originalKey(block);
+        if (key != BlockKey.INVALID) {
+            originalStates.record(key, block.getBlockData().getAsString());
+        }
+    }
+
+    /**
+     * Log the original state of a block that is being replaced.
+     *
+     * @param original The state before the change
+     */
+    public void recordOriginal(Block block, BlockData original) {
+        long key = originalKey(block);
+        if (key != BlockKey.INVALID) {
+            originalStates.record(key, original.getAsString());
+        }
+    }
+
+    /**
+     * Get the key of a block whose original state should be logged, or {@link BlockKey#INVALID}
+     * if it is placed by a player or already logged. These checks run before the block state is
+     * read, since that builds a state string.
+     */
+    private long originalKey(Block block) {
+        if (!plugin.getSettings().isRestoreOriginalStates()) {
+            return BlockKey.INVALID;
+        }
+        long key = LocationUtil.packBlock(block);
+        if (key == BlockKey.INVALID || isTracked(key) || originalStates.contains(key)) {
+            return BlockKey.INVALID;
+        }
+        return key;
+    }
+
+    /**
+     * Check if a block is tracked or has a logged original state.
+     */
+    public boolean needsReset(long key) {
+        return isTracked(key) || originalStates.contains(key);
+    }
+
+    /**
+     * Return a block to its state before players changed it and stop tracking it.
+     * Blocks with a logged original state are restored, other tracked blocks become air.
+     *
+     * @param block The block at the key, or null if its world is not loaded, in which case the
+     *              block stays tracked and keeps its original state
+     * @return true if the block in the world was changed
+     */
+    public boolean resetBlock(long key, Block block, boolean applyPhysics) {
         if (block == null) {
             return false;
         }
+        String original = originalStates.remove(key);
+        boolean tracked = isTracked(key);
+        if (tracked) {
+            untrack(key);
+        }
+        if (original == null && !tracked) {
+            return false;
+        }
 
-        String key = LocationUtil.blockToKey(block);
-        if (key == null) {
+        BlockData target = original != null ? parseState(original) : null;
+        if (target != null) {
+            if (!block.getBlockData().equals(target)) {
+                block.setBlockData(target, applyPhysics);
+                return true;
+            }
             return false;
         }
 
-        return blockTimestamps.containsKey(key);
+        if (block.getType() != Material.AIR) {
+            block.setType(Material.AIR, applyPhysics);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stop tracking a block and drop its logged original state without changing the world.
+     */
+    public void forget(long key) {
+        untrack(key);
+        originalStates.remove(key);
+    }
+
+    /**
+     * Parse a logged block state, caching the result.
+     *
+     * @return The block data, or null if the state is not valid on this server version
+     */
+    private BlockData parseState(String state) {
+        BlockData data = parsedStates.get(state);
+        if (data == null && !parsedStates.containsKey(state)) {
+            try {
+                data = Bukkit.createBlockData(state);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Cannot restore unknown block state '" + state + "', clearing instead.");
+            }
+            parsedStates.put(state, data);
+        }
+        return data;
+    }
+
+    /**
+     * Get the number of blocks with a logged original state.
+     */
+    public int getOriginalStateCount() {
+        return originalStates.size();
+    }
+
+    /**
+     * Move the chunk of a block from the mapped snapshot into the live store before it is read or changed.
+     */
+    private void faultIn(long key) {
+        if (snapshot != null) {
+            snapshot.faultIn(BlockKey.chunkKeyOf(key), store);
+        }
+    }
+
+    /**
+     * Queue the removal of tracked blocks in a chunk that is not loaded, instead of loading it.
+     * The blocks are removed by {@link #applyPendingReset(Chunk)} when the chunk next loads.
+     *
+     * @param keys Packed keys of the blocks to remove, all in the given chunk
+     */
+    public void deferReset(long chunkKey, long[] keys) {
+        long[] existing = pendingResets.get(chunkKey);
+        if (existing != null) {
+            LongArrayList merged = new LongArrayList();
+            for (long key : existing) {
+                merged.add(key);
+            }
+            for (long key : keys) {
+                merged.add(key);
+            }
+            keys = merged.toSortedUniqueArray();
+        }
+
+        pendingResets.put(chunkKey, keys);
+        journal.recordPendingReset(chunkKey, keys);
+    }
+
+    /**
+     * Reset the blocks of a deferred reset in a chunk that has just loaded.
+     * Physics is skipped so the removal cannot cascade into loading neighbouring chunks.
+     *
+     * @return The number of blocks changed
+     */
+    public int applyPendingReset(Chunk chunk) {
+        if (pendingResets.isEmpty()) {
+            return 0;
+        }
+
+        int worldId = WorldRegistry.idOf(chunk.getWorld());
+        if (worldId < 0) {
+            return 0;
+        }
+
+        long chunkKey = BlockKey.chunkKey(worldId, chunk.getX(), chunk.getZ());
+        long[] keys = pendingResets.remove(chunkKey);
+        if (keys == null) {
+            return 0;
+        }
+
+        int removed = 0;
+        for (long key : keys) {
+            // Blocks broken or moved before the reset was deferred are no longer tracked
+            if (!needsReset(key)) {
+                continue;
+            }
+            Block block = chunk.getBlock(BlockKey.x(key) & 15, BlockKey.y(key), BlockKey.z(key) & 15);
+            if (resetBlock(key, block, false)) {
+                removed++;
+            }
+        }
+
+        journal.recordResetDone(chunkKey);
+        return removed;
+    }
+
+    /**
+     * Get the number of chunks with a deferred reset.
+     */
+    public int getPendingResetChunks() {
+        return pendingResets.size();
     }
 
     /**
      * Get all tracked blocks in a region.
-     * Uses chunk-based filtering for better performance.
      */
     public List<Location> getTrackedBlocksInRegion(Region region) {
         List<Location> locations = new ArrayList<>();
         World world = Bukkit.getWorld(region.getWorldId());
-        
         if (world == null) {
             return locations;
         }
 
-        // Calculate which chunks overlap with the region
-        int minChunkX = region.getMinX() >> 4;
-        int maxChunkX = region.getMaxX() >> 4;
-        int minChunkZ = region.getMinZ() >> 4;
-        int maxChunkZ = region.getMaxZ() >> 4;
-
-        // Only iterate through chunks that overlap with the region
-        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
-            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
-                long chunkKey = ((long) cx << 32) | (cz & 0xFFFFFFFFL);
-                Set<String> blocksInChunk = chunkBlocks.get(chunkKey);
-                
-                if (blocksInChunk != null) {
-                    for (String key : blocksInChunk) {
-                        Location loc = parseLocationKey(key, world);
-                        if (loc != null && region.contains(loc)) {
-                            locations.add(loc);
-                        }
-                    }
-                }
-            }
+        for (long key : getTrackedKeysInRegion(region)) {
+            locations.add(new Location(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key)));
         }
-
         return locations;
     }
 
     /**
-     * Reset (remove) all tracked blocks in a region.
+     * Get the packed keys of all blocks in a region that are tracked or have a logged original state,
+     * sorted so blocks of the same chunk are adjacent.
+     * Uses chunk-based filtering for better performance.
      */
-    public int resetBlocksInRegion(Region region) {
-        List<Location> blocksToRemove = getTrackedBlocksInRegion(region);
-        int count = 0;
+    public long[] getTrackedKeysInRegion(Region region) {
+        LongArrayList keys = new LongArrayList();
+        World world = Bukkit.getWorld(region.getWorldId());
+        int worldId = WorldRegistry.idOf(world);
+        if (worldId < 0) {
+            return keys.toArray();
+        }
+
+        BlockStore.BlockConsumer collector = (key, timestamp) -> {
+            if (region.contains(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key))) {
+                keys.add(key);
+            }
+        };
 
-        for (Location loc : blocksToRemove) {
-            Block block = loc.getBlock();
-            if (block.getType() != Material.AIR) {
-                block.setType(Material.AIR);
-                count++;
+        // Only iterate through chunks that overlap with the region
+        for (int cx = region.getMinX() >> 4; cx <= region.getMaxX() >> 4; cx++) {
+            for (int cz = region.getMinZ() >> 4; cz <= region.getMaxZ() >> 4; cz++) {
+                long chunkKey = BlockKey.chunkKey(worldId, cx, cz);
+                store.forEachInChunk(chunkKey, collector);
+                // Chunks not faulted in yet are streamed straight from the mapped snapshot
+                if (snapshot != null) {
+                    snapshot.forEachInChunk(chunkKey, collector);
+                }
+                originalStates.forEachInChunk(chunkKey, key -> collector.accept(key, 0));
             }
-            untrackBlock(block);
         }
 
-        return count;
+        return keys.toSortedUniqueArray();
     }
 
     /**
      * Get the total number of tracked blocks.
      */
     public int getTotalTrackedBlocks() {
-        return blockTimestamps.size();
+        long unfaulted = snapshot != null ? snapshot.getUnfaultedBlockCount() : 0;
+        return (int) (store.size() + unfaulted);
     }
 
     /**
-     * Parse a location key back to a Location object.
+     * Get a rough estimate of the heap used by the tracker store, in bytes.
      */
-    private Location parseLocationKey(String key, World defaultWorld) {
-        if (key == null) {
-            return null;
-        }
+    public long getEstimatedMemoryBytes() {
+        return store.estimateMemoryBytes() + originalStates.estimateMemoryBytes();
+    }
 
-        String[] parts = key.split(";");
-        if (parts.length != 4) {
-            return null;
+    /**
+     * Parse a legacy block key ("world_x_y_z") into a packed key.
+     * Coordinates are taken from the right so world names may contain underscores.
+     */
+    private long parseLegacyKey(String key) {
+        int zSep = key.lastIndexOf('_');
+        int ySep = zSep > 0 ? key.lastIndexOf('_', zSep - 1) : -1;
+        int xSep = ySep > 0 ? key.lastIndexOf('_', ySep - 1) : -1;
+        if (xSep <= 0) {
+            return BlockKey.INVALID;
         }
 
         try {
-            World world = Bukkit.getWorld(parts[0]);
-            if (world == null) {
-                world = defaultWorld;
-            }
-            if (world == null) {
-                return null;
+            int worldId = WorldRegistry.idOf(key.substring(0, xSep));
+            int x = Integer.parseInt(key.substring(xSep + 1, ySep));
+            int y = Integer.parseInt(key.substring(ySep + 1, zSep));
+            int z = Integer.parseInt(key.substring(zSep + 1));
+            if (!BlockKey.isPackable(worldId, x, y, z)) {
+                return BlockKey.INVALID;
             }
-
-            int x = Integer.parseInt(parts[1]);
-            int y = Integer.parseInt(parts[2]);
-            int z = Integer.parseInt(parts[3]);
-
-            return new Location(world, x, y, z);
+            return BlockKey.pack(worldId, x, y, z);
         } catch (NumberFormatException e) {
-            return null;
+            return BlockKey.INVALID;
         }
     }
 
     /**
-     * Load tracked blocks from file.
+     * Import tracked blocks from the legacy placed-blocks.yml and fold them into a snapshot.
+     * The YAML file is renamed once the snapshot is on disk so the migration only runs once.
      */
-    public void loadData() {
-        chunkBlocks.clear();
-        blockTimestamps.clear();
-
-        dataFile = new File(plugin.getDataFolder(), "placed-blocks.yml");
-        if (!dataFile.exists()) {
-            return;
-        }
-
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(dataFile);
+    private void migrateLegacyData(File legacyFile) {
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(legacyFile);
         ConfigurationSection blocksSection = config.getConfigurationSection("blocks");
 
-        if (blocksSection == null) {
-            return;
-        }
-
-        for (String key : blocksSection.getKeys(false)) {
-            long timestamp = blocksSection.getLong(key);
-            String decodedKey = key.replace("_", ";");
-            blockTimestamps.put(decodedKey, timestamp);
-
-            // Parse location to get chunk key
-            String[] parts = decodedKey.split(";");
-            if (parts.length == 4) {
-                try {
-                    int x = Integer.parseInt(parts[1]);
-                    int z = Integer.parseInt(parts[3]);
-                    long chunkKey = LocationUtil.getChunkKey(x, z);
-                    chunkBlocks.computeIfAbsent(chunkKey, k -> ConcurrentHashMap.newKeySet()).add(decodedKey);
-                } catch (NumberFormatException ignored) {
+        if (blocksSection != null) {
+            for (String key : blocksSection.getKeys(false)) {
+                long packed = parseLegacyKey(key);
+                if (packed != BlockKey.INVALID) {
+                    store.add(packed, blocksSection.getLong(key));
                 }
             }
         }
 
-        plugin.getLogger().info("Loaded " + blockTimestamps.size() + " tracked blocks.");
+        compact();
+
+        File migratedFile = new File(plugin.getDataFolder(), "placed-blocks.yml.migrated");
+        plugin.getFileWriter().execute("legacy block data rename", () -> {
+            if (!legacyFile.renameTo(migratedFile)) {
+                plugin.getLogger().warning("Could not rename " + legacyFile.getName() + " after migration.");
+            }
+        });
+        plugin.getLogger().info("Migrated " + store.size() + " tracked blocks from " + legacyFile.getName() + ".");
     }
 
     /**
-     * Save tracked blocks to file.
+     * Create the storage backend selected in the config.
      */
-    public void saveData() {
-        if (dataFile == null) {
-            dataFile = new File(plugin.getDataFolder(), "placed-blocks.yml");
+    private BlockStore createStore() {
+        String backend = plugin.getSettings().getTrackerBackend();
+        if (backend.equalsIgnoreCase("bitmap")) {
+            return new BitmapBlockStore(plugin.getSettings().isBitmapTimestamps());
+        }
+        if (!backend.equalsIgnoreCase("hash")) {
+            plugin.getLogger().warning("Unknown tracker backend '" + backend + "', using hash.");
         }
+        return new HashBlockStore();
+    }
 
-        YamlConfiguration config = new YamlConfiguration();
-        ConfigurationSection blocksSection = config.createSection("blocks");
+    /**
+     * Load tracked blocks from the snapshot and journal.
+     */
+    public void loadData() {
+        store = createStore();
+        File legacyFile = new File(plugin.getDataFolder(), "placed-blocks.yml");
+        boolean migrate = !journal.exists() && legacyFile.exists();
 
-        for (Map.Entry<String, Long> entry : blockTimestamps.entrySet()) {
-            // Replace semicolons with underscores for YAML key compatibility
-            String encodedKey = entry.getKey().replace(";", "_");
-            blocksSection.set(encodedKey, entry.getValue());
+        try {
+            snapshot = journal.load(store, pendingResets);
+            if (migrate) {
+                migrateLegacyData(legacyFile);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to load tracked blocks: " + e.getMessage());
         }
 
         try {
-            config.save(dataFile);
+            originalStates.load(getOriginalStatesFile());
         } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save tracked blocks: " + e.getMessage());
+            plugin.getLogger().severe("Failed to load original block states: " + e.getMessage());
+        }
+        parsedStates.clear();
+
+        plugin.getLogger().info("Loaded " + getTotalTrackedBlocks() + " tracked blocks ("
+                + store.getClass().getSimpleName() + ", ~" + store.estimateMemoryBytes() / 1024 + " KB in memory).");
+        if (originalStates.size() > 0) {
+            plugin.getLogger().info("Loaded " + originalStates.size() + " original block states.");
+        }
+        if (!pendingResets.isEmpty()) {
+            plugin.getLogger().info(pendingResets.size() + " unloaded chunks have a reset pending.");
+        }
+    }
+
+    /**
+     * Queue pending journal records for writing, compacting the journal when it has grown large.
+     * The write itself happens on the I/O thread.
+     */
+    public void saveData() {
+        journal.flush();
+        if (originalStates.isDirty()) {
+            // Only changed chunks are copied here; they are encoded and written on the I/O thread
+            OriginalStateLog.Changes changes = originalStates.drainChanges();
+            File file = getOriginalStatesFile();
+            plugin.getFileWriter().execute("original-states", () -> {
+                originalStateImage.apply(changes);
+                AsyncFileWriter.writeAtomically(file, originalStateImage.toBytes());
+            });
+        }
+        if (journal.needsCompaction(plugin.getSettings().getCompactAfterRecords())) {
+            compact();
         }
     }
 
+    private File getOriginalStatesFile() {
+        return new File(plugin.getDataFolder(), "original-states.dat");
+    }
+
+    private void compact() {
+        journal.compact(store, snapshot, pendingResets, plugin.getSettings().isSnapshotCompression());
+    }
+
     /**
      * Clear all tracked blocks data.
      */
     public void clearAll() {
-        chunkBlocks.clear();
-        blockTimestamps.clear();
-        saveData();
+        store.clear();
+        pendingResets.clear();
+        originalStates.clear();
+        if (snapshot != null) {
+            snapshot.dropAll();
+        }
+        journal.recordClear();
+        compact();
     }
 
     /**
      * Reload block tracking data.
      */
     public void reload() {
+        saveData();
+        if (!plugin.getFileWriter().awaitPending(10, TimeUnit.SECONDS)) {
+            plugin.getLogger().warning("Pending block data writes did not finish before reload.");
+        }
         loadData();
+        startFlushTask();
     }
 }
@@ -0,0 +1,136 @@
+package com.boxserver.managers;
+
+import com.boxserver.models.Region;
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2LongHashMap;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Immutable set of the chunk sections where a block and one of its neighbours can resolve to
+ * different regions with different rules.
+ *
+ * A section is a boundary section if the section grown by one block overlaps a ruled region
+ * and is not entirely inside a single top region. Any other section is
+ * boundary-free: a block there and every block next to it have the same region, or none of
+ * them are in a ruled region. Sections are only enumerated around ruled regions, so the set
+ * stays small however large the unruled areas are.
+ */
+public class BoundarySectionIndex {
+    private static final int MAX_CANDIDATE_SECTIONS = 1 << 21;
+
+    // Per world: boundary section keys, or null if the world has too many sections to index
+    private final Map<UUID, Long2LongHashMap> worlds;
+
+    private BoundarySectionIndex(Map<UUID, Long2LongHashMap> worlds) {
+        this.worlds = worlds;
+    }
+
+    /**
+     * Find the boundary sections of a set of regions.
+     *
+     * @param index Index over the same regions
+     * @param ruled Selects the regions whose borders matter to the caller
+     */
+    public static BoundarySectionIndex build(RegionIndex index, Collection<Region> regions, Predicate<Region> ruled) {
+        Map<UUID, List<Region>> byWorld = new HashMap<>();
+        for (Region region : regions) {
+            if (ruled.test(region)) {
+                byWorld.computeIfAbsent(region.getWorldId(), id -> new ArrayList<>()).add(region);
+            }
+        }
+
+        Map<UUID, Long2LongHashMap> worlds = new HashMap<>();
+        for (Map.Entry<UUID, List<Region>> entry : byWorld.entrySet()) {
+            worlds.put(entry.getKey(), buildWorld(index, entry.getKey(), entry.getValue(), ruled));
+        }
+        return new BoundarySectionIndex(worlds);
+    }
+
+    private static Long2LongHashMap buildWorld(RegionIndex index, UUID worldId, List<Region> ruledRegions,
+                                               Predicate<Region> ruled) {
+        long candidates = 0;
+        for (Region region : ruledRegions) {
+            candidates += (long) sectionSpan(region.getMinX(), region.getMaxX())
+                    * sectionSpan(region.getMinY(), region.getMaxY())
+                    * sectionSpan(region.getMinZ(), region.getMaxZ());
+        }
+        if (candidates > MAX_CANDIDATE_SECTIONS) {
+            return null;
+        }
+
+        Long2LongHashMap boundaries = new Long2LongHashMap();
+        Long2LongHashMap visited = new Long2LongHashMap((int) candidates);
+        for (Region region : ruledRegions) {
+            for (int sx = (region.getMinX() - 1) >> 4; sx <= (region.getMaxX() + 1) >> 4; sx++) {
+                for (int sy = (region.getMinY() - 1) >> 4; sy <= (region.getMaxY() + 1) >> 4; sy++) {
+                    for (int sz = (region.getMinZ() - 1) >> 4; sz <= (region.getMaxZ() + 1) >> 4; sz++) {
+                        int x = sx << 4, y = sy << 4, z = sz << 4;
+                        if (!BlockKey.isPackable(0, x, y, z)) {
+                            continue;
+                        }
+                        long key = sectionKey(x, y, z);
+                        if (!visited.put(key, 0)) {
+                            continue;
+                        }
+                        if (isBoundary(index, worldId, ruled, x - 1, y - 1, z - 1, x + 16, y + 16, z + 16)) {
+                            boundaries.put(key, 0);
+                        }
+                    }
+                }
+            }
+        }
+        return boundaries;
+    }
+
+    private static boolean isBoundary(RegionIndex index, UUID worldId, Predicate<Region> ruled,
+                                      int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        List<Region> overlapping = index.getRegionsIntersecting(worldId, minX, minY, minZ, maxX, maxY, maxZ);
+        boolean anyRuled = false;
+        for (Region region : overlapping) {
+            if (ruled.test(region)) {
+                anyRuled = true;
+                break;
+            }
+        }
+        return anyRuled
+                && RegionIndex.topRegionIfUniform(overlapping, minX, minY, minZ, maxX, maxY, maxZ) == RegionIndex.MIXED;
+    }
+
+    private static int sectionSpan(int min, int max) {
+        return ((max + 1) >> 4) - ((min - 1) >> 4) + 1;
+    }
+
+    private static long sectionKey(int x, int y, int z) {
+        return BlockKey.sectionKeyOf(BlockKey.pack(0, x, y, z));
+    }
+
+    /**
+     * Check if a block's section is boundary-free, so the block and its neighbours share a region.
+     */
+    public boolean isBoundaryFree(UUID worldId, int x, int y, int z) {
+        Long2LongHashMap boundaries = worlds.get(worldId);
+        if (boundaries == null) {
+            // Either no ruled regions in this world, or too many sections to index
+            return !worlds.containsKey(worldId);
+        }
+        if (!BlockKey.isPackable(0, x, y, z)) {
+            return false;
+        }
+        return !boundaries.containsKey(sectionKey(x, y, z));
+    }
+
+    /**
+     * Get the number of boundary sections over all worlds.
+     */
+    public int getBoundarySectionCount() {
+        int count = 0;
+        for (Long2LongHashMap boundaries : worlds.values()) {
+            if (boundaries != null) {
+                count += boundaries.size();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,101 @@
+package com.boxserver.managers;
+
+import com.boxserver.BoxServer;
+import com.boxserver.models.Region;
+import com.boxserver.models.RegionFlag;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps players whose region denies pushing on a scoreboard team with collisions turned off,
+ * so neither the client nor the server pushes them.
+ *
+ * Membership only changes when a player's region changes, not on every move. The team lives
+ * on the main scoreboard, where a player can only be on one team; players already on another
+ * plugin's team are left where they are. Main thread only.
+ */
+public class CollisionTeam {
+    private final BoxServer plugin;
+    private final Scoreboard scoreboard;
+    private final Team team;
+    private final Set<UUID> members;
+
+    public CollisionTeam(BoxServer plugin) {
+        this.plugin = plugin;
+        this.members = new HashSet<>();
+
+        this.scoreboard = Bukkit.getScoreboardManager().getMainScoreboard();
+        String name = plugin.getSettings().getAntiPushTeamName();
+        Team existing = scoreboard.getTeam(name);
+        if (existing != null) {
+            // Left over from a crash, the main scoreboard is saved with the world
+            existing.unregister();
+        }
+        this.team = scoreboard.registerNewTeam(name);
+        team.setOption(Team.Option.COLLISION_RULE, Team.OptionStatus.NEVER);
+
+        updateAll();
+    }
+
+    /**
+     * Add or remove a player depending on whether their region allows pushing.
+     *
+     * @param region The player's highest priority region, or null if they are outside all regions
+     */
+    public void update(Player player, Region region) {
+        if (plugin.getLoadGovernor().isShedding()) {
+            // Frozen under load, all players are updated once it is back to normal
+            return;
+        }
+        boolean wanted = region != null && !region.allows(RegionFlag.PUSH);
+        UUID playerId = player.getUniqueId();
+        if (wanted == members.contains(playerId)) {
+            return;
+        }
+
+        if (!wanted) {
+            team.removeEntry(player.getName());
+            members.remove(playerId);
+            return;
+        }
+        Team current = scoreboard.getEntryTeam(player.getName());
+        if (current != null && !current.getName().equals(team.getName())) {
+            return;
+        }
+        team.addEntry(player.getName());
+        members.add(playerId);
+    }
+
+    /**
+     * Update all online players, after a new region set was published.
+     */
+    public void updateAll() {
+        RegionManager regionManager = plugin.getRegionManager();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            update(player, regionManager.getPlayerRegion(player));
+        }
+    }
+
+    /**
+     * Remove a player who left, so the saved scoreboard does not keep them.
+     */
+    public void forget(Player player) {
+        if (members.remove(player.getUniqueId())) {
+            team.removeEntry(player.getName());
+        }
+    }
+
+    /**
+     * Remove the team and all its members.
+     */
+    public void shutdown() {
+        team.unregister();
+        members.clear();
+    }
+}
@@ -0,0 +1,239 @@
+package com.boxserver.managers;
+
+import com.boxserver.models.Region;
+import com.boxserver.models.RegionShape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Dense, precomputed region lookup for the bounding box of one world's regions.
+ *
+ * Every block column in the box stores its vertical runs of winning region, already resolved
+ * by priority, as packed ints (run start Y in the upper 16 bits, region number in the lower 16,
+ * 0 for no region). A lookup is an array index for the column plus a walk over its few runs,
+ * without touching any region bounds.
+ *
+ * Tables are compiled in two steps: {@link #prepare} copies the region bounds on the server
+ * thread, and {@link Source#compile()} does the heavy work on any thread. Compiled tables are
+ * immutable.
+ */
+public class CompiledRegionTable {
+    private static final int NO_REGION = 0;
+
+    private final Region[] regions;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int sizeZ;
+    private final int[] columnOffsets;
+    private final int[] runs;
+
+    private CompiledRegionTable(Region[] regions, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                                int[] columnOffsets, int[] runs) {
+        this.regions = regions;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.sizeZ = maxZ - minZ + 1;
+        this.columnOffsets = columnOffsets;
+        this.runs = runs;
+    }
+
+    /**
+     * Capture the bounds and priority order of a world's regions for compiling.
+     *
+     * @param maxColumns Largest number of block columns to compile
+     * @return The compile source, or null if there are no regions or the bounding box is too large
+     */
+    public static Source prepare(List<Region> regions, long maxColumns) {
+        if (regions.isEmpty()) {
+            return null;
+        }
+
+        List<Region> sorted = new ArrayList<>(regions);
+        sorted.sort(Comparator.comparingInt(Region::getPriority).reversed()
+                .thenComparing(Region::getName, String.CASE_INSENSITIVE_ORDER));
+
+        int[][] bounds = new int[sorted.size()][];
+        RegionShape[] shapes = new RegionShape[sorted.size()];
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int i = 0; i < sorted.size(); i++) {
+            Region region = sorted.get(i);
+            bounds[i] = new int[] {region.getMinX(), region.getMinY(), region.getMinZ(),
+                    region.getMaxX(), region.getMaxY(), region.getMaxZ()};
+            shapes[i] = region.getShape();
+            minX = Math.min(minX, region.getMinX());
+            minY = Math.min(minY, region.getMinY());
+            minZ = Math.min(minZ, region.getMinZ());
+            maxX = Math.max(maxX, region.getMaxX());
+            maxY = Math.max(maxY, region.getMaxY());
+            maxZ = Math.max(maxZ, region.getMaxZ());
+        }
+
+        // Run starts and region numbers are packed into 16 bits each; starts stay below the sign bit
+        long columns = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+        if (columns > Math.min(maxColumns, Integer.MAX_VALUE - 1)
+                || maxY - minY >= 1 << 15 || sorted.size() >= 1 << 16) {
+            return null;
+        }
+        return new Source(sorted.toArray(new Region[0]), bounds, shapes, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Region bounds captured on the server thread, ready to compile on another thread.
+     * Shapes are immutable, so they are shared rather than copied.
+     */
+    public static final class Source {
+        private final Region[] regions;
+        private final int[][] bounds;
+        private final RegionShape[] shapes;
+        private final int minX;
+        private final int minY;
+        private final int minZ;
+        private final int maxX;
+        private final int maxY;
+        private final int maxZ;
+
+        private Source(Region[] regions, int[][] bounds, RegionShape[] shapes,
+                       int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            this.regions = regions;
+            this.bounds = bounds;
+            this.shapes = shapes;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+        }
+
+        /**
+         * Resolve the winning region of every block in the bounding box.
+         */
+        public CompiledRegionTable compile() {
+            int sizeX = maxX - minX + 1;
+            int sizeZ = maxZ - minZ + 1;
+            int[] columnOffsets = new int[sizeX * sizeZ + 1];
+            int[] runs = new int[Math.max(16, sizeX * sizeZ)];
+            int runCount = 0;
+
+            int[] candidates = new int[regions.length];
+            int maxSpans = 1;
+            int totalSpans = 0;
+            for (RegionShape shape : shapes) {
+                int shapeSpans = shape != null ? shape.getMaxColumnSpans() : 1;
+                maxSpans = Math.max(maxSpans, shapeSpans);
+                totalSpans += shapeSpans;
+            }
+            int[] spans = new int[maxSpans * 2];
+            int[] breaks = new int[totalSpans * 2 + 1];
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    // Regions covering this column, still in priority order
+                    int candidateCount = 0;
+                    int breakCount = 0;
+                    breaks[breakCount++] = minY;
+                    for (int i = 0; i < bounds.length; i++) {
+                        int[] b = bounds[i];
+                        if (x < b[0] || x > b[3] || z < b[2] || z > b[5]) {
+                            continue;
+                        }
+                        if (shapes[i] == null) {
+                            candidates[candidateCount++] = i;
+                            breaks[breakCount++] = b[1];
+                            breaks[breakCount++] = b[4] + 1;
+                            continue;
+                        }
+                        int spanCount = shapes[i].getColumnSpans(x, z, spans);
+                        if (spanCount > 0) {
+                            candidates[candidateCount++] = i;
+                        }
+                        for (int k = 0; k < spanCount; k++) {
+                            breaks[breakCount++] = spans[k * 2];
+                            breaks[breakCount++] = spans[k * 2 + 1] + 1;
+                        }
+                    }
+                    Arrays.sort(breaks, 0, breakCount);
+
+                    // The winner can only change where some candidate starts or ends
+                    int lastRegion = -1;
+                    for (int k = 0; k < breakCount; k++) {
+                        int y = breaks[k];
+                        if (y > maxY || (k > 0 && y == breaks[k - 1])) {
+                            continue;
+                        }
+                        int winner = NO_REGION;
+                        for (int c = 0; c < candidateCount; c++) {
+                            int[] b = bounds[candidates[c]];
+                            RegionShape shape = shapes[candidates[c]];
+                            if (y >= b[1] && y <= b[4] && (shape == null || shape.contains(x, y, z))) {
+                                winner = candidates[c] + 1;
+                                break;
+                            }
+                        }
+                        if (winner != lastRegion) {
+                            if (runCount == runs.length) {
+                                runs = Arrays.copyOf(runs, runs.length * 2);
+                            }
+                            runs[runCount++] = ((y - minY) << 16) | winner;
+                            lastRegion = winner;
+                        }
+                    }
+                    columnOffsets[(x - minX) * sizeZ + (z - minZ) + 1] = runCount;
+                }
+            }
+
+            return new CompiledRegionTable(regions, minX, minY, minZ, maxX, maxY, maxZ,
+                    columnOffsets, Arrays.copyOf(runs, runCount));
+        }
+    }
+
+    /**
+     * Check if a block lies inside the compiled bounding box.
+     */
+    public boolean covers(int x, int y, int z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Get the highest priority region at a block inside the bounding box, or null.
+     */
+    public Region getRegionAt(int x, int y, int z) {
+        int column = (x - minX) * sizeZ + (z - minZ);
+        int start = columnOffsets[column];
+        int end = columnOffsets[column + 1];
+        int key = (y - minY) << 16;
+
+        // Runs are sorted by start Y; the last run starting at or below y wins
+        int run = runs[start];
+        for (int i = start + 1; i < end && runs[i] <= (key | 0xFFFF); i++) {
+            run = runs[i];
+        }
+        int region = run & 0xFFFF;
+        return region == NO_REGION ? null : regions[region - 1];
+    }
+
+    /**
+     * Get the number of block columns in the table.
+     */
+    public int getColumnCount() {
+        return columnOffsets.length - 1;
+    }
+
+    /**
+     * Get the number of runs over all columns.
+     */
+    public int getRunCount() {
+        return runs.length;
+    }
+}
@@ -0,0 +1,110 @@
+package com.boxserver.managers;
+
+import com.boxserver.BoxServer;
+import com.boxserver.Settings;
+import com.boxserver.events.LoadLevelChangeEvent;
+import com.boxserver.models.LoadLevel;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Samples the server's average tick time and sets a {@link LoadLevel} that other parts of the
+ * plugin check before doing optional work.
+ *
+ * A level is entered as soon as MSPT reaches its threshold, and left only once MSPT is
+ * load-governor.hysteresis-mspt below it, so the level does not flap around a threshold.
+ * Main thread only.
+ */
+public class LoadGovernor {
+    private final BoxServer plugin;
+    private BukkitTask sampleTask;
+    private LoadLevel level;
+    private double lastMspt;
+    private long changes;
+
+    public LoadGovernor(BoxServer plugin) {
+        this.plugin = plugin;
+        this.level = LoadLevel.NORMAL;
+        reload();
+    }
+
+    /**
+     * Restart sampling with the configured interval, or stop it and return to normal if disabled.
+     */
+    public void reload() {
+        if (sampleTask != null) {
+            sampleTask.cancel();
+            sampleTask = null;
+        }
+        Settings settings = plugin.getSettings();
+        if (!settings.isLoadGovernorEnabled()) {
+            setLevel(LoadLevel.NORMAL, lastMspt);
+            return;
+        }
+        long interval = settings.getLoadSampleIntervalTicks();
+        sampleTask = Bukkit.getScheduler().runTaskTimer(plugin, this::sample, interval, interval);
+    }
+
+    private void sample() {
+        Settings settings = plugin.getSettings();
+        double mspt = Bukkit.getAverageTickTime();
+        lastMspt = mspt;
+
+        double hysteresis = settings.getLoadHysteresisMspt();
+        LoadLevel next;
+        if (mspt >= settings.getCriticalMspt()
+                || (level == LoadLevel.CRITICAL && mspt > settings.getCriticalMspt() - hysteresis)) {
+            next = LoadLevel.CRITICAL;
+        } else if (mspt >= settings.getDegradedMspt()
+                || (level != LoadLevel.NORMAL && mspt > settings.getDegradedMspt() - hysteresis)) {
+            next = LoadLevel.DEGRADED;
+        } else {
+            next = LoadLevel.NORMAL;
+        }
+        setLevel(next, mspt);
+    }
+
+    private void setLevel(LoadLevel next, double mspt) {
+        if (next == level) {
+            return;
+        }
+        LoadLevel previous = level;
+        level = next;
+        changes++;
+        plugin.getLogger().info(String.format("Server load is %s (%.1f MSPT), was %s.", next, mspt, previous));
+
+        if (next == LoadLevel.NORMAL && plugin.getCollisionTeam() != null) {
+            // Membership was frozen while shedding
+            plugin.getCollisionTeam().updateAll();
+        }
+        plugin.getServer().getPluginManager().callEvent(new LoadLevelChangeEvent(next, previous, mspt));
+    }
+
+    /**
+     * Get the current load level.
+     */
+    public LoadLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Check if optional work such as messages and anti-push updates should be skipped.
+     */
+    public boolean isShedding() {
+        return level != LoadLevel.NORMAL;
+    }
+
+    /**
+     * Get the average MSPT at the last sample.
+     */
+    public double getLastMspt() {
+        return lastMspt;
+    }
+
+    /**
+     * Get the number of level changes since the plugin was enabled.
+     */
+    public long getChanges() {
+        return changes;
+    }
+}
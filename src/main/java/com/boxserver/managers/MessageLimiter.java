@@ -0,0 +1,159 @@
+package com.boxserver.managers;
+
+import com.boxserver.BoxServer;
+import com.boxserver.Settings;
+import com.boxserver.utils.DenialMessage;
+import com.boxserver.utils.MessageUtil;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits denial messages per player and message.
+ *
+ * The first denial sends the message to chat. Repeats within the message's window are only
+ * counted, and every few ticks the player gets one action-bar message with the count instead
+ * of one chat message per event. While the load governor is shedding load, denials are not
+ * sent at all. Main thread only.
+ */
+public class MessageLimiter {
+    // Marks a message that was never sent to the player
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final BoxServer plugin;
+    private final Map<UUID, PlayerState> states;
+    private final Set<UUID> pendingPlayers;
+    private BukkitTask flushTask;
+    private long suppressed;
+
+    public MessageLimiter(BoxServer plugin) {
+        this.plugin = plugin;
+        this.states = new HashMap<>();
+        this.pendingPlayers = new HashSet<>();
+        reload();
+    }
+
+    /**
+     * Restart the action-bar task with the configured interval.
+     */
+    public void reload() {
+        if (flushTask != null) {
+            flushTask.cancel();
+        }
+        long interval = plugin.getSettings().getActionBarIntervalTicks();
+        flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flush, interval, interval);
+    }
+
+    /**
+     * Tell a player that an action was denied, unless they were just told the same.
+     */
+    public void deny(Player player, DenialMessage message) {
+        if (plugin.getLoadGovernor().isShedding()) {
+            suppressed++;
+            return;
+        }
+        Settings settings = plugin.getSettings();
+        Component component = settings.getDenialMessage(message);
+        if (component == null) {
+            return;
+        }
+        long window = settings.getDenialWindowMillis(message);
+        if (window == 0) {
+            MessageUtil.send(player, component);
+            return;
+        }
+
+        PlayerState state = states.computeIfAbsent(player.getUniqueId(), id -> new PlayerState());
+        int index = message.ordinal();
+        long now = System.nanoTime();
+        if (state.sentAt[index] != NEVER && now - state.sentAt[index] < TimeUnit.MILLISECONDS.toNanos(window)) {
+            state.repeats[index]++;
+            state.pendingMask |= 1 << index;
+            pendingPlayers.add(player.getUniqueId());
+            suppressed++;
+            return;
+        }
+
+        state.sentAt[index] = now;
+        state.repeats[index] = 0;
+        MessageUtil.send(player, component);
+    }
+
+    /**
+     * Send one action-bar message to each player with denials counted since the last flush,
+     * for the message they repeated most.
+     */
+    private void flush() {
+        if (pendingPlayers.isEmpty()) {
+            return;
+        }
+        if (plugin.getLoadGovernor().isShedding()) {
+            for (UUID playerId : pendingPlayers) {
+                PlayerState state = states.get(playerId);
+                if (state != null) {
+                    state.pendingMask = 0;
+                }
+            }
+            pendingPlayers.clear();
+            return;
+        }
+        Settings settings = plugin.getSettings();
+        for (UUID playerId : pendingPlayers) {
+            PlayerState state = states.get(playerId);
+            Player player = Bukkit.getPlayer(playerId);
+            if (state == null || player == null) {
+                continue;
+            }
+
+            int best = -1;
+            for (int mask = state.pendingMask; mask != 0; mask &= mask - 1) {
+                int index = Integer.numberOfTrailingZeros(mask);
+                if (best < 0 || state.repeats[index] > state.repeats[best]) {
+                    best = index;
+                }
+            }
+            state.pendingMask = 0;
+
+            Component component = settings.getDenialMessage(DenialMessage.all()[best]);
+            if (component != null) {
+                // Count the chat message that started the window too
+                player.sendActionBar(component.append(MessageUtil.colorize(" &7(x" + (state.repeats[best] + 1) + ")")));
+            }
+        }
+        pendingPlayers.clear();
+    }
+
+    /**
+     * Forget the state of a player who left.
+     */
+    public void forget(UUID playerId) {
+        states.remove(playerId);
+        pendingPlayers.remove(playerId);
+    }
+
+    /**
+     * Get the number of denial messages kept out of chat since the plugin was enabled.
+     */
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    private static final class PlayerState {
+        final long[] sentAt = new long[DenialMessage.count()];
+        final int[] repeats = new int[DenialMessage.count()];
+        int pendingMask;
+
+        PlayerState() {
+            Arrays.fill(sentAt, NEVER);
+        }
+    }
+}
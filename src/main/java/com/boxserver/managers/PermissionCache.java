@@ -0,0 +1,122 @@
+package com.boxserver.managers;
+
+import com.boxserver.BoxServer;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the bypass permissions of online players as a bitmask, so protection listeners do not
+ * walk the permission attachments of a player on every event.
+ *
+ * Masks are computed when a player joins and recomputed when they change worlds (permissions
+ * can be per world), on /boxserver reload, and after a short time to live, since Bukkit has
+ * no event for permission changes. Main thread only.
+ */
+public class PermissionCache {
+    public static final int ADMIN = 1;
+    public static final int BYPASS_BUILD = 1 << 1;
+    public static final int BYPASS_PVP = 1 << 2;
+
+    private final BoxServer plugin;
+    private final Map<UUID, Entry> entries;
+    private long ttlNanos;
+    private long checksAvoided;
+
+    public PermissionCache(BoxServer plugin) {
+        this.plugin = plugin;
+        this.entries = new HashMap<>();
+        reload();
+    }
+
+    /**
+     * Re-read the time to live and forget all cached masks.
+     */
+    public void reload() {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(plugin.getSettings().getPermissionCacheTtlSeconds());
+        entries.clear();
+    }
+
+    /**
+     * Check if a player may build anywhere (boxserver.admin or boxserver.bypass.build).
+     */
+    public boolean canBypassBuild(Player player) {
+        int mask = getMask(player);
+        // The uncached check stops after boxserver.admin if the player has it
+        checksAvoided += (mask & ADMIN) != 0 ? 1 : 2;
+        return (mask & (ADMIN | BYPASS_BUILD)) != 0;
+    }
+
+    /**
+     * Check if a player may attack anywhere (boxserver.admin or boxserver.bypass.pvp).
+     */
+    public boolean canBypassPvp(Player player) {
+        int mask = getMask(player);
+        checksAvoided += (mask & ADMIN) != 0 ? 1 : 2;
+        return (mask & (ADMIN | BYPASS_PVP)) != 0;
+    }
+
+    /**
+     * Get a player's bypass mask, computing it if it is missing or expired.
+     */
+    public int getMask(Player player) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(player.getUniqueId(), entry);
+        } else if (now - entry.expiresAt < 0) {
+            return entry.mask;
+        }
+
+        entry.mask = computeMask(player);
+        entry.expiresAt = now + ttlNanos;
+        checksAvoided -= 3;
+        return entry.mask;
+    }
+
+    private static int computeMask(Player player) {
+        int mask = 0;
+        if (player.hasPermission("boxserver.admin")) {
+            mask |= ADMIN;
+        }
+        if (player.hasPermission("boxserver.bypass.build")) {
+            mask |= BYPASS_BUILD;
+        }
+        if (player.hasPermission("boxserver.bypass.pvp")) {
+            mask |= BYPASS_PVP;
+        }
+        return mask;
+    }
+
+    /**
+     * Recompute a player's mask now, for example after they joined or changed worlds.
+     */
+    public void refresh(Player player) {
+        entries.remove(player.getUniqueId());
+        getMask(player);
+    }
+
+    /**
+     * Forget the mask of a player who left.
+     */
+    public void forget(UUID playerId) {
+        entries.remove(playerId);
+    }
+
+    /**
+     * Get the number of permission checks the cache saved since the plugin was enabled:
+     * checks answered from it minus checks made to fill it.
+     */
+    public long getChecksAvoided() {
+        return checksAvoided;
+    }
+
+    private static final class Entry {
+        int mask;
+        long expiresAt;
+    }
+}
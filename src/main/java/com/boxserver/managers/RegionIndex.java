@@ -0,0 +1,214 @@
+package com.boxserver.managers;
+
+import com.boxserver.models.Region;
+import com.boxserver.models.RegionType;
+import com.boxserver.utils.Long2ObjectHashMap;
+
+import java.util.*;
+
+/**
+ * Immutable spatial index of regions, keyed by world and chunk column.
+ *
+ * Each chunk column holds the regions overlapping it, sorted by descending priority, so a
+ * lookup is one map probe plus a scan of a short array that stops at the first match.
+ * Regions covering more than {@link #MAX_INDEXED_CHUNKS} chunk columns are kept in a
+ * per-world list instead, so one huge region cannot blow up the index.
+ *
+ * The index is rebuilt from scratch when regions change and published by replacing the
+ * reference, so readers never see a partially built index.
+ */
+public class RegionIndex {
+    private static final int MAX_INDEXED_CHUNKS = 65536;
+    private static final Region[] NO_REGIONS = new Region[0];
+
+    // Marks a box of blocks that does not resolve to a single region
+    static final Region MIXED = new Region("", new UUID(0, 0), RegionType.PROTECTED, 0, 0, 0, 0, 0, 0);
+
+    // Highest priority first; names break ties so lookups do not depend on map iteration order
+    private static final Comparator<Region> PRIORITY_ORDER = Comparator.comparingInt(Region::getPriority).reversed()
+            .thenComparing(Region::getName, String.CASE_INSENSITIVE_ORDER);
+
+    private final Map<UUID, WorldIndex> worlds;
+
+    private RegionIndex(Map<UUID, WorldIndex> worlds) {
+        this.worlds = worlds;
+    }
+
+    /**
+     * Build an index over a set of regions.
+     */
+    public static RegionIndex build(Collection<Region> regions) {
+        Map<UUID, List<Region>> byWorld = new HashMap<>();
+        for (Region region : regions) {
+            byWorld.computeIfAbsent(region.getWorldId(), id -> new ArrayList<>()).add(region);
+        }
+
+        Map<UUID, WorldIndex> worlds = new HashMap<>();
+        for (Map.Entry<UUID, List<Region>> entry : byWorld.entrySet()) {
+            worlds.put(entry.getKey(), buildWorld(entry.getValue()));
+        }
+        return new RegionIndex(worlds);
+    }
+
+    private static WorldIndex buildWorld(List<Region> regions) {
+        regions.sort(PRIORITY_ORDER);
+
+        Long2ObjectHashMap<List<Region>> cellLists = new Long2ObjectHashMap<>();
+        List<Region> large = new ArrayList<>();
+        for (Region region : regions) {
+            int minCx = region.getMinX() >> 4;
+            int maxCx = region.getMaxX() >> 4;
+            int minCz = region.getMinZ() >> 4;
+            int maxCz = region.getMaxZ() >> 4;
+            if ((long) (maxCx - minCx + 1) * (maxCz - minCz + 1) > MAX_INDEXED_CHUNKS) {
+                large.add(region);
+                continue;
+            }
+            // Regions are visited in priority order, so every cell list ends up sorted
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                for (int cz = minCz; cz <= maxCz; cz++) {
+                    // Shaped regions skip the chunk columns of their bounding box they do not reach
+                    if (region.getShape() != null && !region.intersects(cx << 4, region.getMinY(), cz << 4,
+                            (cx << 4) + 15, region.getMaxY(), (cz << 4) + 15)) {
+                        continue;
+                    }
+                    cellLists.computeIfAbsent(cellKey(cx, cz), k -> new ArrayList<>(2)).add(region);
+                }
+            }
+        }
+
+        Long2ObjectHashMap<Region[]> cells = new Long2ObjectHashMap<>(cellLists.size());
+        cellLists.forEach((key, list) -> cells.put(key, list.toArray(NO_REGIONS)));
+        return new WorldIndex(cells, large.toArray(NO_REGIONS), regions.toArray(NO_REGIONS));
+    }
+
+    private static long cellKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the highest priority region containing a block, or null.
+     */
+    public Region getRegionAt(UUID worldId, int x, int y, int z) {
+        WorldIndex world = worlds.get(worldId);
+        if (world == null) {
+            return null;
+        }
+
+        Region[] cell = world.cells().get(cellKey(x >> 4, z >> 4));
+        if (cell != null) {
+            for (Region region : cell) {
+                if (region.contains(x, y, z)) {
+                    // Large regions are rare; only they can outrank the cell's first match
+                    return world.large().length == 0 ? region : pickHigher(region, world.large(), x, y, z);
+                }
+            }
+        }
+        return pickHigher(null, world.large(), x, y, z);
+    }
+
+    private static Region pickHigher(Region best, Region[] candidates, int x, int y, int z) {
+        for (Region region : candidates) {
+            if (region.contains(x, y, z)) {
+                if (best == null || PRIORITY_ORDER.compare(region, best) < 0) {
+                    best = region;
+                }
+                // Candidates are sorted, so the first match is the best of them
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get all regions containing a block, highest priority first.
+     */
+    public List<Region> getRegionsAt(UUID worldId, int x, int y, int z) {
+        WorldIndex world = worlds.get(worldId);
+        if (world == null) {
+            return new ArrayList<>();
+        }
+
+        List<Region> result = new ArrayList<>(2);
+        Region[] cell = world.cells().get(cellKey(x >> 4, z >> 4));
+        if (cell != null) {
+            for (Region region : cell) {
+                if (region.contains(x, y, z)) {
+                    result.add(region);
+                }
+            }
+        }
+        if (world.large().length > 0) {
+            for (Region region : world.large()) {
+                if (region.contains(x, y, z)) {
+                    result.add(region);
+                }
+            }
+            result.sort(PRIORITY_ORDER);
+        }
+        return result;
+    }
+
+    /**
+     * Get all regions overlapping a box of blocks, highest priority first.
+     */
+    public List<Region> getRegionsIntersecting(UUID worldId, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        WorldIndex world = worlds.get(worldId);
+        List<Region> result = new ArrayList<>(2);
+        if (world == null) {
+            return result;
+        }
+
+        long chunks = (long) ((maxX >> 4) - (minX >> 4) + 1) * ((maxZ >> 4) - (minZ >> 4) + 1);
+        if (chunks > world.all().length) {
+            // Scanning every region is cheaper than probing this many cells
+            for (Region region : world.all()) {
+                if (region.intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+                    result.add(region);
+                }
+            }
+            return result;
+        }
+
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                Region[] cell = world.cells().get(cellKey(cx, cz));
+                if (cell == null) {
+                    continue;
+                }
+                for (Region region : cell) {
+                    if (!result.contains(region) && region.intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+                        result.add(region);
+                    }
+                }
+            }
+        }
+        for (Region region : world.large()) {
+            if (region.intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+                result.add(region);
+            }
+        }
+        result.sort(PRIORITY_ORDER);
+        return result;
+    }
+
+    /**
+     * Get the region that wins at every block of a box, null if no region overlaps it,
+     * or {@link #MIXED} if different blocks resolve differently.
+     *
+     * @param candidates Regions overlapping a box that contains this one, highest priority first
+     */
+    static Region topRegionIfUniform(List<Region> candidates, int minX, int minY, int minZ,
+                                     int maxX, int maxY, int maxZ) {
+        for (Region region : candidates) {
+            if (region.intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+                // The highest overlapping region wins everywhere only if it covers the whole box
+                return region.covers(minX, minY, minZ, maxX, maxY, maxZ) ? region : MIXED;
+            }
+        }
+        return null;
+    }
+
+    private record WorldIndex(Long2ObjectHashMap<Region[]> cells, Region[] large, Region[] all) {
+    }
+}
@@ -1,55 +1,211 @@
 package com.boxserver.managers;
 
 import com.boxserver.BoxServer;
+import com.boxserver.events.RegionEnterEvent;
+import com.boxserver.events.RegionLeaveEvent;
+import com.boxserver.models.CuboidUnionShape;
+import com.boxserver.models.PolygonShape;
 import com.boxserver.models.Region;
+import com.boxserver.models.RegionFlag;
+import com.boxserver.models.RegionShape;
 import com.boxserver.models.RegionType;
+import com.boxserver.storage.AsyncFileWriter;
+import com.boxserver.storage.FileWatcher;
+import com.boxserver.utils.LocationUtil;
+import com.boxserver.utils.Long2ObjectHashMap;
+import com.boxserver.utils.WorldRegistry;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
  * Manages all regions in the BoxServer plugin.
+ * The regions and everything derived from them form one immutable {@link RegionState} that is
+ * replaced as a whole by a single volatile write, so lookups never see a partly updated set.
+ * regions.yml is watched for edits, which are parsed off the main thread and swapped in.
+ *
+ * Location lookups go through a {@link RegionIndex} that is rebuilt whenever regions are
+ * added, removed or reprioritized. Inside the bounding box of a world's regions they use a
+ * {@link CompiledRegionTable} instead, compiled off the main thread after each change, together
+ * with a {@link BoundarySectionIndex} that lets fluid flow checks skip lookups entirely.
+ *
+ * The current region of each online player is cached and updated as they move; changes fire
+ * {@link RegionLeaveEvent} and {@link RegionEnterEvent}. The same updates maintain the set of
+ * players in each region, so occupancy counts and region-local broadcasts need no lookups.
  */
 public class RegionManager {
     private final BoxServer plugin;
-    private final Map<String, Region> regions;
     private final Map<UUID, Location> pos1Selections;
     private final Map<UUID, Location> pos2Selections;
-    private File regionsFile;
+    // Polygon corners and union cuboids (pos1/pos2 pairs) picked for the next shaped region
+    private final Map<UUID, List<Location>> pointSelections;
+    private final Map<UUID, List<Location[]>> cuboidSelections;
+    // Main thread only; a null value means the player is outside all regions
+    private final Map<UUID, Region> playerRegions;
+    // Main thread only; players by lower-case region name, and players outside all regions
+    private final Map<String, Set<UUID>> occupants;
+    private final Set<UUID> unregioned;
+    private final File regionsFile;
+    private volatile RegionState state;
+    // Guarded by this; numbers each published region set
+    private long generation;
+    // Contents of regions.yml as last loaded or saved, so our own writes do not trigger reloads
+    private volatile byte[] knownContent;
+    private FileWatcher watcher;
+    private long flowChecks;
+    private long flowChecksSkipped;
 
     public RegionManager(BoxServer plugin) {
         this.plugin = plugin;
-        this.regions = new ConcurrentHashMap<>();
+        this.regionsFile = new File(plugin.getDataFolder(), "regions.yml");
         this.pos1Selections = new ConcurrentHashMap<>();
         this.pos2Selections = new ConcurrentHashMap<>();
+        this.pointSelections = new ConcurrentHashMap<>();
+        this.cuboidSelections = new ConcurrentHashMap<>();
+        this.playerRegions = new HashMap<>();
+        this.occupants = new HashMap<>();
+        this.unregioned = new HashSet<>();
+        this.state = new RegionState(Map.of(), RegionIndex.build(List.of()), Map.of(), null, 0);
         loadRegions();
+
+        if (plugin.getSettings().isWatchRegionsFile()) {
+            watcher = new FileWatcher(regionsFile, 500, () -> scheduleReload(false), plugin.getLogger());
+            watcher.start();
+        }
+    }
+
+    /**
+     * Regions by lower-case name, with the index, compiled tables and boundary sections built
+     * from them. Tables and boundary sections are null or empty until their background builds
+     * finish, and are then added by publishing a copy with the same generation.
+     */
+    private record RegionState(Map<String, Region> regions, RegionIndex index,
+                               Map<UUID, CompiledRegionTable> tables, BoundarySectionIndex boundaries,
+                               long generation) {
+        RegionState withTables(Map<UUID, CompiledRegionTable> tables) {
+            return new RegionState(regions, index, tables, boundaries, generation);
+        }
+
+        RegionState withBoundaries(BoundarySectionIndex boundaries) {
+            return new RegionState(regions, index, tables, boundaries, generation);
+        }
     }
 
     /**
-     * Load regions from the configuration file.
+     * Load regions from the configuration file on the calling thread.
      */
     public void loadRegions() {
-        regions.clear();
-        regionsFile = new File(plugin.getDataFolder(), "regions.yml");
+        byte[] content;
+        try {
+            content = readRegionsFile();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not read regions.yml: " + e.getMessage());
+            content = null;
+        }
 
-        if (!regionsFile.exists()) {
-            return;
+        Map<String, Region> loaded = parseRegions(content);
+        knownContent = content;
+        publish(loaded != null ? loaded : Map.of());
+        plugin.getLogger().info("Loaded " + state.regions().size() + " regions.");
+    }
+
+    /**
+     * Read and parse regions.yml on the I/O thread, then swap the result in on the main thread.
+     * Tracked blocks and the reset schedule are not touched. If the file cannot be parsed,
+     * the current regions stay in place.
+     *
+     * The read is queued behind pending region saves, so it sees every change made in game
+     * before it was requested. If regions change in game while it runs, its result is dropped
+     * and the file is read again.
+     *
+     * @param force Reload even if the file still holds what was last loaded or saved
+     */
+    private void scheduleReload(boolean force) {
+        long expected = state.generation();
+        plugin.getFileWriter().execute("regions.yml reload", () -> {
+            byte[] content;
+            try {
+                content = readRegionsFile();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read regions.yml: " + e.getMessage());
+                return;
+            }
+            if (!force && Arrays.equals(content, knownContent)) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            Map<String, Region> loaded = parseRegions(content);
+            if (loaded == null) {
+                plugin.getLogger().warning("Keeping the current regions until regions.yml is fixed.");
+                return;
+            }
+            RegionIndex builtIndex = RegionIndex.build(loaded.values());
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (!plugin.isEnabled()) {
+                return;
+            }
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (state.generation() != expected) {
+                    // Edited in game meanwhile; that edit's save is queued ahead of the next read
+                    scheduleReload(force);
+                    return;
+                }
+                knownContent = content;
+                publish(loaded, builtIndex);
+                plugin.getLogger().info("Reloaded " + loaded.size() + " regions from regions.yml (parsed in "
+                        + millis + " ms).");
+            });
+        });
+    }
+
+    private byte[] readRegionsFile() throws IOException {
+        return regionsFile.exists() ? Files.readAllBytes(regionsFile.toPath()) : null;
+    }
+
+    /**
+     * Parse the contents of regions.yml. Regions that fail to load are logged and skipped.
+     * Safe to call from any thread.
+     *
+     * @param content The file contents, or null if there is no file
+     * @return Regions by lower-case name, or null if the file is not valid YAML
+     */
+    private Map<String, Region> parseRegions(byte[] content) {
+        Map<String, Region> loaded = new HashMap<>();
+        if (content == null) {
+            return loaded;
         }
 
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(regionsFile);
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.loadFromString(new String(content, StandardCharsets.UTF_8));
+        } catch (InvalidConfigurationException e) {
+            plugin.getLogger().severe("Could not parse regions.yml: " + e.getMessage());
+            return null;
+        }
         ConfigurationSection regionsSection = config.getConfigurationSection("regions");
 
         if (regionsSection == null) {
-            return;
+            return loaded;
         }
 
         for (String name : regionsSection.getKeys(false)) {
@@ -66,11 +222,22 @@ public class RegionManager {
                 int maxY = regionSection.getInt("maxY");
                 int maxZ = regionSection.getInt("maxZ");
                 int priority = regionSection.getInt("priority", 0);
-                boolean pvpEnabled = regionSection.getBoolean("pvpEnabled", type != RegionType.SPAWN);
-
-                Region region = new Region(name, worldId, type, minX, minY, minZ, maxX, maxY, maxZ);
+                String shape = regionSection.getString("shape", "cuboid").toLowerCase();
+
+                Region region = switch (shape) {
+                    case "cuboid" -> new Region(name, worldId, type, minX, minY, minZ, maxX, maxY, maxZ);
+                    case "polygon" -> new Region(name, worldId, type,
+                            loadPolygon(regionSection.getStringList("points"), minY, maxY));
+                    case "union" -> new Region(name, worldId, type,
+                            loadCuboidUnion(regionSection.getStringList("cuboids")));
+                    default -> throw new IllegalArgumentException("unknown shape '" + shape + "'");
+                };
                 region.setPriority(priority);
-                region.setPvpEnabled(pvpEnabled);
+                // Regions saved before flags existed only have pvpEnabled
+                if (regionSection.contains("pvpEnabled")) {
+                    region.setPvpEnabled(regionSection.getBoolean("pvpEnabled"));
+                }
+                loadFlags(region, regionSection.getConfigurationSection("flags"));
 
                 // Load whitelisted blocks
                 List<String> blockList = regionSection.getStringList("whitelistedBlocks");
@@ -81,69 +248,299 @@ public class RegionManager {
                     region.setWhitelistedBlocks(blocks);
                 }
 
-                regions.put(name.toLowerCase(), region);
+                loaded.put(name.toLowerCase(), region);
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to load region: " + name + " - " + e.getMessage());
             }
         }
 
-        plugin.getLogger().info("Loaded " + regions.size() + " regions.");
+        return loaded;
     }
 
     /**
-     * Save all regions to the configuration file.
+     * Build a polygon prism from "x,z" corner strings.
      */
-    public void saveRegions() {
-        if (regionsFile == null) {
-            regionsFile = new File(plugin.getDataFolder(), "regions.yml");
+    private static PolygonShape loadPolygon(List<String> points, int minY, int maxY) {
+        int[] xs = new int[points.size()];
+        int[] zs = new int[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            int[] point = parseInts(points.get(i), 2);
+            xs[i] = point[0];
+            zs[i] = point[1];
         }
+        return new PolygonShape(xs, zs, minY, maxY);
+    }
 
-        YamlConfiguration config = new YamlConfiguration();
-        ConfigurationSection regionsSection = config.createSection("regions");
-
-        for (Region region : regions.values()) {
-            ConfigurationSection regionSection = regionsSection.createSection(region.getName());
-            regionSection.set("world", region.getWorldId().toString());
-            regionSection.set("type", region.getType().name());
-            regionSection.set("minX", region.getMinX());
-            regionSection.set("minY", region.getMinY());
-            regionSection.set("minZ", region.getMinZ());
-            regionSection.set("maxX", region.getMaxX());
-            regionSection.set("maxY", region.getMaxY());
-            regionSection.set("maxZ", region.getMaxZ());
-            regionSection.set("priority", region.getPriority());
-            regionSection.set("pvpEnabled", region.isPvpEnabled());
-
-            List<String> blockList = region.getWhitelistedBlocks().stream()
-                    .map(Material::name)
-                    .toList();
-            regionSection.set("whitelistedBlocks", blockList);
+    /**
+     * Build a cuboid union from "x1,y1,z1,x2,y2,z2" corner strings.
+     */
+    private static CuboidUnionShape loadCuboidUnion(List<String> cuboids) {
+        List<int[]> corners = new ArrayList<>();
+        for (String cuboid : cuboids) {
+            corners.add(parseInts(cuboid, 6));
         }
+        return new CuboidUnionShape(corners);
+    }
 
-        try {
-            config.save(regionsFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save regions: " + e.getMessage());
+    private static int[] parseInts(String value, int count) {
+        String[] parts = value.split(",");
+        if (parts.length != count) {
+            throw new IllegalArgumentException("expected " + count + " numbers in '" + value + "'");
+        }
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = Integer.parseInt(parts[i].trim());
         }
+        return result;
     }
 
     /**
-     * Create a new region.
+     * Apply the flags listed in a region's flags section over its type defaults.
      */
-    public boolean createRegion(String name, UUID worldId, RegionType type, Location pos1, Location pos2) {
-        if (regions.containsKey(name.toLowerCase())) {
+    private void loadFlags(Region region, ConfigurationSection flagsSection) {
+        if (flagsSection == null) {
+            return;
+        }
+        for (String key : flagsSection.getKeys(false)) {
+            RegionFlag flag = RegionFlag.fromKey(key);
+            if (flag == null) {
+                plugin.getLogger().warning("Unknown flag '" + key + "' in region " + region.getName());
+                continue;
+            }
+            region.setFlag(flag, flagsSection.getBoolean(key));
+        }
+    }
+
+    /**
+     * Index a new set of regions and publish it. Main thread only.
+     */
+    private void publish(Map<String, Region> regions) {
+        publish(regions, RegionIndex.build(regions.values()));
+    }
+
+    /**
+     * Publish a new set of regions with its index, start building its tables and boundary
+     * sections, and re-resolve the players' regions and anti-push team. Main thread only.
+     */
+    private void publish(Map<String, Region> regions, RegionIndex index) {
+        RegionState published;
+        synchronized (this) {
+            published = new RegionState(Map.copyOf(regions), index, Map.of(), null, ++generation);
+            state = published;
+        }
+        compileTables(published);
+        refreshPlayerRegions();
+        // A region kept under the same name fires no events, but its push flag may have changed
+        if (plugin.getCollisionTeam() != null) {
+            plugin.getCollisionTeam().updateAll();
+        }
+    }
+
+    /**
+     * Build the compiled tables and boundary sections of a region set on another thread.
+     * Lookups use the index, and every flow check does lookups, until they are published.
+     */
+    private void compileTables(RegionState base) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            BoundarySectionIndex built = BoundarySectionIndex.build(base.index(), base.regions().values(),
+                    region -> !region.allows(RegionFlag.FLUID_IN));
+            update(base.generation(), current -> current.withBoundaries(built));
+        });
+
+        if (!plugin.getSettings().isRegionTableEnabled()) {
+            return;
+        }
+
+        long maxColumns = plugin.getSettings().getRegionTableMaxColumns();
+        Map<UUID, List<Region>> byWorld = new HashMap<>();
+        for (Region region : base.regions().values()) {
+            byWorld.computeIfAbsent(region.getWorldId(), id -> new ArrayList<>()).add(region);
+        }
+        Map<UUID, CompiledRegionTable.Source> sources = new HashMap<>();
+        for (Map.Entry<UUID, List<Region>> entry : byWorld.entrySet()) {
+            CompiledRegionTable.Source source = CompiledRegionTable.prepare(entry.getValue(), maxColumns);
+            if (source != null) {
+                sources.put(entry.getKey(), source);
+            }
+        }
+        if (sources.isEmpty()) {
+            return;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            long start = System.nanoTime();
+            Map<UUID, CompiledRegionTable> compiled = new HashMap<>();
+            for (Map.Entry<UUID, CompiledRegionTable.Source> entry : sources.entrySet()) {
+                compiled.put(entry.getKey(), entry.getValue().compile());
+            }
+            Map<UUID, CompiledRegionTable> tables = Map.copyOf(compiled);
+            if (update(base.generation(), current -> current.withTables(tables))) {
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                plugin.getLogger().info("Compiled region tables for " + compiled.size() + " world(s): "
+                        + getCompiledColumnCount() + " columns in " + millis + " ms.");
+            }
+        });
+    }
+
+    /**
+     * Publish a change to the current region set unless a newer set replaced it meanwhile.
+     */
+    private synchronized boolean update(long generation, UnaryOperator<RegionState> change) {
+        if (state.generation() != generation) {
+            return false;
+        }
+        state = change.apply(state);
+        return true;
+    }
+
+    /**
+     * Check if a fluid flow between two blocks can skip region checks, because the source
+     * lies in a boundary-free section and the target is next to it. Main thread only.
+     */
+    public boolean canSkipFlowCheck(Block source, Block target) {
+        flowChecks++;
+        BoundarySectionIndex sections = state.boundaries();
+        if (sections == null) {
             return false;
         }
 
-        Region region = new Region(
+        int x = source.getX(), y = source.getY(), z = source.getZ();
+        int distance = Math.abs(target.getX() - x) + Math.abs(target.getY() - y) + Math.abs(target.getZ() - z);
+        if (distance > 1 || !sections.isBoundaryFree(source.getWorld().getUID(), x, y, z)) {
+            return false;
+        }
+        flowChecksSkipped++;
+        return true;
+    }
+
+    /**
+     * Get the share of fluid flow checks that skipped region lookups, from 0 to 1.
+     */
+    public double getFlowFastPathRate() {
+        return flowChecks == 0 ? 0 : (double) flowChecksSkipped / flowChecks;
+    }
+
+    /**
+     * Get the number of fluid flow checks since the plugin was enabled.
+     */
+    public long getFlowChecks() {
+        return flowChecks;
+    }
+
+    /**
+     * Get the number of boundary sections, or -1 while they are being computed.
+     */
+    public int getBoundarySectionCount() {
+        BoundarySectionIndex sections = state.boundaries();
+        return sections != null ? sections.getBoundarySectionCount() : -1;
+    }
+
+    /**
+     * Get the number of block columns covered by compiled region tables.
+     */
+    public long getCompiledColumnCount() {
+        long columns = 0;
+        for (CompiledRegionTable table : state.tables().values()) {
+            columns += table.getColumnCount();
+        }
+        return columns;
+    }
+
+    /**
+     * Save all regions to the configuration file.
+     * Region data is copied on the calling thread; YAML serialization and the write
+     * happen on the I/O thread, and saves issued in quick succession coalesce.
+     */
+    public void saveRegions() {
+        File file = regionsFile;
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        for (Region region : state.regions().values()) {
+            snapshot.put(region.getName(), serializeRegion(region));
+        }
+
+        plugin.getFileWriter().submit("regions.yml", () -> {
+            YamlConfiguration config = new YamlConfiguration();
+            ConfigurationSection regionsSection = config.createSection("regions");
+            for (Map.Entry<String, Map<String, Object>> entry : snapshot.entrySet()) {
+                regionsSection.createSection(entry.getKey(), entry.getValue());
+            }
+            byte[] content = config.saveToString().getBytes(StandardCharsets.UTF_8);
+            knownContent = content;
+            AsyncFileWriter.writeAtomically(file, content);
+        });
+    }
+
+    /**
+     * Copy a region's persistent fields into plain values that are safe to read from another thread.
+     */
+    private Map<String, Object> serializeRegion(Region region) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("world", region.getWorldId().toString());
+        data.put("type", region.getType().name());
+        RegionShape shape = region.getShape();
+        if (shape instanceof PolygonShape polygon) {
+            List<String> points = new ArrayList<>();
+            for (int i = 0; i < polygon.getPointCount(); i++) {
+                points.add(polygon.getPointX(i) + "," + polygon.getPointZ(i));
+            }
+            data.put("shape", polygon.getKey());
+            data.put("points", points);
+        } else if (shape instanceof CuboidUnionShape union) {
+            List<String> cuboids = new ArrayList<>();
+            for (int i = 0; i < union.getCuboidCount(); i++) {
+                int[] c = union.getCuboid(i);
+                cuboids.add(c[0] + "," + c[1] + "," + c[2] + "," + c[3] + "," + c[4] + "," + c[5]);
+            }
+            data.put("shape", union.getKey());
+            data.put("cuboids", cuboids);
+        }
+        data.put("minX", region.getMinX());
+        data.put("minY", region.getMinY());
+        data.put("minZ", region.getMinZ());
+        data.put("maxX", region.getMaxX());
+        data.put("maxY", region.getMaxY());
+        data.put("maxZ", region.getMaxZ());
+        data.put("priority", region.getPriority());
+        Map<String, Object> flags = new LinkedHashMap<>();
+        for (RegionFlag flag : RegionFlag.values()) {
+            flags.put(flag.getKey(), region.allows(flag));
+        }
+        data.put("flags", flags);
+        data.put("whitelistedBlocks", region.getWhitelistedBlocks().stream()
+                .map(Material::name)
+                .toList());
+        return data;
+    }
+
+    /**
+     * Create a new region.
+     */
+    public boolean createRegion(String name, UUID worldId, RegionType type, Location pos1, Location pos2) {
+        return addRegion(new Region(
                 name,
                 worldId,
                 type,
                 pos1.getBlockX(), pos1.getBlockY(), pos1.getBlockZ(),
                 pos2.getBlockX(), pos2.getBlockY(), pos2.getBlockZ()
-        );
+        ));
+    }
+
+    /**
+     * Create a new region with a non-cuboid shape.
+     */
+    public boolean createRegion(String name, UUID worldId, RegionType type, RegionShape shape) {
+        return addRegion(new Region(name, worldId, type, shape));
+    }
 
-        regions.put(name.toLowerCase(), region);
+    private boolean addRegion(Region region) {
+        String name = region.getName();
+        if (state.regions().containsKey(name.toLowerCase())) {
+            return false;
+        }
+
+        Map<String, Region> next = new HashMap<>(state.regions());
+        next.put(name.toLowerCase(), region);
+        publish(next);
         saveRegions();
         return true;
     }
@@ -152,53 +549,360 @@ public class RegionManager {
      * Delete a region.
      */
     public boolean deleteRegion(String name) {
-        Region removed = regions.remove(name.toLowerCase());
-        if (removed != null) {
-            saveRegions();
-            return true;
+        if (!state.regions().containsKey(name.toLowerCase())) {
+            return false;
         }
-        return false;
+
+        Map<String, Region> next = new HashMap<>(state.regions());
+        next.remove(name.toLowerCase());
+        publish(next);
+        saveRegions();
+        return true;
+    }
+
+    /**
+     * Allow or deny a rule in a region and save it.
+     */
+    public void setRegionFlag(Region region, RegionFlag flag, boolean allowed) {
+        updateRegion(region, changed -> changed.setFlag(flag, allowed));
+    }
+
+    /**
+     * Change the priority of a region and save it.
+     */
+    public void setRegionPriority(Region region, int priority) {
+        updateRegion(region, changed -> changed.setPriority(priority));
+    }
+
+    /**
+     * Change a copy of a region, publish a region set holding the copy in its place, and save it.
+     * The published region is never changed, since lookups, indexes and table builds of the
+     * current set may still be reading it. Main thread only.
+     *
+     * @return The changed copy, which is now the current region
+     */
+    public Region updateRegion(Region region, Consumer<Region> change) {
+        Region changed = region.copy();
+        change.accept(changed);
+        Map<String, Region> next = new HashMap<>(state.regions());
+        next.put(changed.getName().toLowerCase(), changed);
+        publish(next);
+        saveRegions();
+        return changed;
     }
 
     /**
      * Get a region by name.
      */
     public Region getRegion(String name) {
-        return regions.get(name.toLowerCase());
+        return state.regions().get(name.toLowerCase());
     }
 
     /**
      * Get all regions.
      */
     public Collection<Region> getAllRegions() {
-        return regions.values();
+        return state.regions().values();
     }
 
     /**
      * Get the highest priority region at a location.
      */
     public Region getRegionAt(Location location) {
-        return regions.values().stream()
-                .filter(r -> r.contains(location))
-                .max(Comparator.comparingInt(Region::getPriority))
-                .orElse(null);
+        if (location == null || location.getWorld() == null) {
+            return null;
+        }
+        return getRegionAt(location.getWorld().getUID(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Get the highest priority region at a block without creating any objects.
+     *
+     * @param world The {@link WorldRegistry} id of the block's world
+     */
+    public Region getRegionAt(int world, int x, int y, int z) {
+        UUID worldId = WorldRegistry.uuidOf(world);
+        if (worldId == null) {
+            return null;
+        }
+        return getRegionAt(worldId, x, y, z);
+    }
+
+    private Region getRegionAt(UUID worldId, int x, int y, int z) {
+        RegionState current = state;
+        CompiledRegionTable table = current.tables().get(worldId);
+        if (table != null && table.covers(x, y, z)) {
+            return table.getRegionAt(x, y, z);
+        }
+        return current.index().getRegionAt(worldId, x, y, z);
+    }
+
+    /**
+     * Resolve the highest priority region of many blocks in one world at once, such as the
+     * blocks of an explosion or the targets of a piston.
+     *
+     * The bounding box of the blocks is tested against the relevant regions first;
+     * if none overlap it, null is returned without resolving anything. Otherwise blocks are
+     * grouped by chunk, and a chunk whose blocks all lie in a single top region is resolved
+     * with one check instead of one lookup per block.
+     *
+     * @param dx X offset added to every block, for example a piston direction
+     * @param dy Y offset added to every block
+     * @param dz Z offset added to every block
+     * @param relevant Selects the regions the caller acts on
+     * @return The region of each (offset) block in list order, or null if no relevant
+     *         region overlaps the blocks
+     */
+    public Region[] getRegionsAt(List<Block> blocks, int dx, int dy, int dz, Predicate<Region> relevant) {
+        if (blocks.isEmpty()) {
+            return null;
+        }
+        UUID worldId = blocks.get(0).getWorld().getUID();
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (Block block : blocks) {
+            minX = Math.min(minX, block.getX() + dx);
+            minY = Math.min(minY, block.getY() + dy);
+            minZ = Math.min(minZ, block.getZ() + dz);
+            maxX = Math.max(maxX, block.getX() + dx);
+            maxY = Math.max(maxY, block.getY() + dy);
+            maxZ = Math.max(maxZ, block.getZ() + dz);
+        }
+
+        List<Region> candidates = state.index().getRegionsIntersecting(worldId, minX, minY, minZ, maxX, maxY, maxZ);
+        boolean anyRelevant = false;
+        for (Region region : candidates) {
+            if (relevant.test(region)) {
+                anyRelevant = true;
+                break;
+            }
+        }
+        if (!anyRelevant) {
+            return null;
+        }
+
+        Region[] result = new Region[blocks.size()];
+        Region uniform = RegionIndex.topRegionIfUniform(candidates, minX, minY, minZ, maxX, maxY, maxZ);
+        if (uniform != RegionIndex.MIXED) {
+            Arrays.fill(result, uniform);
+            return result;
+        }
+
+        // Bounds of the blocks in each chunk column
+        Long2ObjectHashMap<int[]> chunkBounds = new Long2ObjectHashMap<>();
+        for (Block block : blocks) {
+            int x = block.getX() + dx, y = block.getY() + dy, z = block.getZ() + dz;
+            int[] b = chunkBounds.get(LocationUtil.getChunkKey(x, z));
+            if (b == null) {
+                chunkBounds.put(LocationUtil.getChunkKey(x, z), new int[] {x, y, z, x, y, z});
+            } else {
+                b[0] = Math.min(b[0], x);
+                b[1] = Math.min(b[1], y);
+                b[2] = Math.min(b[2], z);
+                b[3] = Math.max(b[3], x);
+                b[4] = Math.max(b[4], y);
+                b[5] = Math.max(b[5], z);
+            }
+        }
+        Long2ObjectHashMap<Region> chunkRegions = new Long2ObjectHashMap<>(chunkBounds.size());
+        chunkBounds.forEach((chunkKey, b) -> chunkRegions.put(chunkKey,
+                RegionIndex.topRegionIfUniform(candidates, b[0], b[1], b[2], b[3], b[4], b[5])));
+
+        for (int i = 0; i < result.length; i++) {
+            Block block = blocks.get(i);
+            int x = block.getX() + dx, y = block.getY() + dy, z = block.getZ() + dz;
+            Region region = chunkRegions.get(LocationUtil.getChunkKey(x, z));
+            result[i] = region != RegionIndex.MIXED ? region : getRegionAt(worldId, x, y, z);
+        }
+        return result;
+    }
+
+    /**
+     * Remove the blocks that lie in regions denying a flag from a list, resolving the
+     * blocks as one batch.
+     */
+    public void removeBlocksDenying(List<Block> blocks, RegionFlag flag) {
+        Region[] resolved = getRegionsAt(blocks, 0, 0, 0, region -> !region.allows(flag));
+        if (resolved == null) {
+            return;
+        }
+
+        Iterator<Block> it = blocks.iterator();
+        for (Region region : resolved) {
+            it.next();
+            if (region != null && !region.allows(flag)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the cached highest priority region of an online player.
+     * Players not seen yet are looked up and cached. Other player entities, such as NPCs, are
+     * looked up every time, since they never quit and would stay cached forever. Main thread only.
+     */
+    public Region getPlayerRegion(Player player) {
+        if (!isOnlinePlayer(player)) {
+            return getRegionAt(player.getLocation());
+        }
+        Region region = playerRegions.get(player.getUniqueId());
+        if (region != null || playerRegions.containsKey(player.getUniqueId())) {
+            return region;
+        }
+        return updatePlayerRegion(player, player.getLocation());
+    }
+
+    /**
+     * Update the cached region of a player who moved to a location, firing
+     * {@link RegionLeaveEvent} and {@link RegionEnterEvent} if it changed. Player entities that are
+     * not online players, such as NPCs, are neither cached nor get events. Main thread only.
+     *
+     * @return The player's region at the location, or null
+     */
+    public Region updatePlayerRegion(Player player, Location location) {
+        Region next = getRegionAt(location);
+        if (!isOnlinePlayer(player)) {
+            return next;
+        }
+        boolean known = playerRegions.containsKey(player.getUniqueId());
+        Region previous = playerRegions.put(player.getUniqueId(), next);
+        if (!known || previous != next) {
+            if (known) {
+                removeOccupant(player.getUniqueId(), previous);
+            }
+            addOccupant(player.getUniqueId(), next);
+        }
+        // A reload replaces region objects; the same name is still the same region
+        if (previous == next || (previous != null && next != null
+                && previous.getName().equalsIgnoreCase(next.getName()))) {
+            return next;
+        }
+
+        if (previous != null) {
+            plugin.getServer().getPluginManager().callEvent(new RegionLeaveEvent(player, previous, next));
+        }
+        if (next != null) {
+            plugin.getServer().getPluginManager().callEvent(new RegionEnterEvent(player, next, previous));
+        }
+        return next;
+    }
+
+    /**
+     * Check if a player entity is a real online player, which fires a quit event when it leaves.
+     */
+    private static boolean isOnlinePlayer(Player player) {
+        return Bukkit.getPlayer(player.getUniqueId()) == player;
+    }
+
+    /**
+     * Forget the cached region of a player who left.
+     */
+    public void clearPlayerRegion(UUID playerId) {
+        if (playerRegions.containsKey(playerId)) {
+            removeOccupant(playerId, playerRegions.remove(playerId));
+        }
+    }
+
+    private void addOccupant(UUID playerId, Region region) {
+        if (region == null) {
+            unregioned.add(playerId);
+        } else {
+            occupants.computeIfAbsent(region.getName().toLowerCase(), k -> new HashSet<>()).add(playerId);
+        }
+    }
+
+    private void removeOccupant(UUID playerId, Region region) {
+        if (region == null) {
+            unregioned.remove(playerId);
+            return;
+        }
+        String key = region.getName().toLowerCase();
+        Set<UUID> players = occupants.get(key);
+        if (players != null && players.remove(playerId) && players.isEmpty()) {
+            occupants.remove(key);
+        }
+    }
+
+    /**
+     * Get the number of players whose current region is a region. Main thread only.
+     */
+    public int getOccupantCount(Region region) {
+        Set<UUID> players = occupants.get(region.getName().toLowerCase());
+        return players != null ? players.size() : 0;
+    }
+
+    /**
+     * Get the players near a set of regions: players in them, players in any region within
+     * a radius of them, and players outside all regions but within the radius. Main thread only.
+     *
+     * @param radius Distance in blocks around the regions
+     */
+    public Set<Player> getPlayersNear(Collection<Region> targets, int radius) {
+        Set<UUID> ids = new HashSet<>();
+        for (Region target : targets) {
+            int minX = target.getMinX() - radius, minY = target.getMinY() - radius, minZ = target.getMinZ() - radius;
+            int maxX = target.getMaxX() + radius, maxY = target.getMaxY() + radius, maxZ = target.getMaxZ() + radius;
+
+            for (Region region : state.regions().values()) {
+                Set<UUID> players = occupants.get(region.getName().toLowerCase());
+                if (players != null && region.getWorldId().equals(target.getWorldId())
+                        && region.intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+                    ids.addAll(players);
+                }
+            }
+
+            // Players outside all regions are few; check their positions directly
+            for (UUID id : unregioned) {
+                Player player = Bukkit.getPlayer(id);
+                if (player == null || !player.getWorld().getUID().equals(target.getWorldId())) {
+                    continue;
+                }
+                Location location = player.getLocation();
+                if (location.getBlockX() >= minX && location.getBlockX() <= maxX
+                        && location.getBlockY() >= minY && location.getBlockY() <= maxY
+                        && location.getBlockZ() >= minZ && location.getBlockZ() <= maxZ) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        Set<Player> players = new HashSet<>();
+        for (UUID id : ids) {
+            Player player = Bukkit.getPlayer(id);
+            if (player != null) {
+                players.add(player);
+            }
+        }
+        return players;
+    }
+
+    /**
+     * Re-resolve the cached region of every online player after regions changed.
+     */
+    private void refreshPlayerRegions() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            updatePlayerRegion(player, player.getLocation());
+        }
     }
 
     /**
      * Get all regions at a location, sorted by priority.
      */
     public List<Region> getRegionsAt(Location location) {
-        return regions.values().stream()
-                .filter(r -> r.contains(location))
-                .sorted(Comparator.comparingInt(Region::getPriority).reversed())
-                .collect(Collectors.toList());
+        if (location == null || location.getWorld() == null) {
+            return new ArrayList<>();
+        }
+        return state.index().getRegionsAt(location.getWorld().getUID(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
 
     /**
      * Get all regions of a specific type.
      */
     public List<Region> getRegionsByType(RegionType type) {
-        return regions.values().stream()
+        return state.regions().values().stream()
                 .filter(r -> r.getType() == type)
                 .collect(Collectors.toList());
     }
@@ -231,12 +935,50 @@ public class RegionManager {
         return pos2Selections.get(playerId);
     }
 
+    /**
+     * Add a corner to a player's polygon selection.
+     *
+     * @return The number of corners selected
+     */
+    public int addSelectionPoint(UUID playerId, Location location) {
+        List<Location> points = pointSelections.computeIfAbsent(playerId, id -> new ArrayList<>());
+        points.add(location);
+        return points.size();
+    }
+
+    /**
+     * Get the corners of a player's polygon selection, in the order they were added.
+     */
+    public List<Location> getSelectionPoints(UUID playerId) {
+        return pointSelections.getOrDefault(playerId, List.of());
+    }
+
+    /**
+     * Add the cuboid between a player's pos1 and pos2 to their union selection.
+     *
+     * @return The number of cuboids selected
+     */
+    public int addSelectionCuboid(UUID playerId, Location pos1, Location pos2) {
+        List<Location[]> cuboids = cuboidSelections.computeIfAbsent(playerId, id -> new ArrayList<>());
+        cuboids.add(new Location[] {pos1, pos2});
+        return cuboids.size();
+    }
+
+    /**
+     * Get the cuboids of a player's union selection as pos1/pos2 pairs.
+     */
+    public List<Location[]> getSelectionCuboids(UUID playerId) {
+        return cuboidSelections.getOrDefault(playerId, List.of());
+    }
+
     /**
      * Clear a player's region selection.
      */
     public void clearSelection(UUID playerId) {
         pos1Selections.remove(playerId);
         pos2Selections.remove(playerId);
+        pointSelections.remove(playerId);
+        cuboidSelections.remove(playerId);
     }
 
     /**
@@ -255,9 +997,19 @@ public class RegionManager {
     }
 
     /**
-     * Reload all region data.
+     * Reload regions.yml in the background. The current regions stay in use until the new
+     * ones are swapped in.
      */
     public void reload() {
-        loadRegions();
+        scheduleReload(true);
+    }
+
+    /**
+     * Stop watching regions.yml.
+     */
+    public void shutdown() {
+        if (watcher != null) {
+            watcher.stop();
+        }
     }
 }
@@ -0,0 +1,199 @@
+package com.boxserver.managers;
+
+import com.boxserver.BoxServer;
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2ObjectHashMap;
+import com.boxserver.utils.LongArrayList;
+import com.boxserver.utils.WorldRegistry;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.function.Consumer;
+
+/**
+ * A resumable reset of tracked blocks that spends a bounded amount of time per tick.
+ * Blocks are processed in packed-key order, so all blocks of a chunk are handled together.
+ * Chunks that are not loaded, including all chunks of a world that is not loaded, are skipped
+ * and handed to the tracker as deferred resets, so a reset never loads chunks itself.
+ *
+ * Blocks with a baseline target are set to that state; all other keys are reset through the tracker.
+ *
+ * Without physics, a tick only ends on a chunk section boundary, so every section is cleared
+ * within one tick and reaches clients as a single section update.
+ */
+public class ResetJob {
+    private final BoxServer plugin;
+    private final String description;
+    private final long[] keys;
+    private final Long2ObjectHashMap<BlockData> targets;
+    private final Consumer<ResetJob> onComplete;
+    private final long startNanos;
+    private final boolean applyPhysics;
+    private BukkitTask task;
+    private int position;
+    private int removed;
+    private int deferredChunks;
+    private int ticks;
+    private boolean finished;
+
+    /**
+     * @param keys Packed keys to reset, sorted
+     * @param targets Baseline state per key for blocks restored from a baseline, or null
+     */
+    public ResetJob(BoxServer plugin, String description, long[] keys, Long2ObjectHashMap<BlockData> targets,
+                    Consumer<ResetJob> onComplete) {
+        this.plugin = plugin;
+        this.description = description;
+        this.keys = keys;
+        this.targets = targets;
+        this.onComplete = onComplete;
+        this.startNanos = System.nanoTime();
+        this.applyPhysics = plugin.getSettings().isResetPhysics();
+    }
+
+    /**
+     * Start processing on the next tick.
+     */
+    public void start() {
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * Stop processing without completing. Blocks not reached yet stay tracked.
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void tick() {
+        ticks++;
+        long deadline = System.nanoTime() + plugin.getResetManager().getTickBudgetNanos();
+        BlockTracker tracker = plugin.getBlockTracker();
+
+        int worldId = -1;
+        World world = null;
+        long chunkKey = BlockKey.INVALID;
+        while (position < keys.length) {
+            long key = keys[position];
+
+            if (BlockKey.chunkKeyOf(key) != chunkKey) {
+                chunkKey = BlockKey.chunkKeyOf(key);
+                if (BlockKey.worldId(key) != worldId) {
+                    worldId = BlockKey.worldId(key);
+                    world = WorldRegistry.worldOf(worldId);
+                }
+                // Keys of an unloaded world are deferred chunk by chunk until the world is back
+                if (world == null || !world.isChunkLoaded(BlockKey.chunkX(chunkKey), BlockKey.chunkZ(chunkKey))) {
+                    deferChunk(chunkKey);
+                    continue;
+                }
+            }
+            position++;
+
+            BlockData target = targets != null ? targets.get(key) : null;
+            if (target != null) {
+                Block block = world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+                if (!block.getBlockData().equals(target)) {
+                    block.setBlockData(target, applyPhysics);
+                    removed++;
+                }
+            } else if (tracker.needsReset(key)) {
+                // Blocks broken or moved since the job was created are skipped
+                Block block = world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+                if (tracker.resetBlock(key, block, applyPhysics)) {
+                    removed++;
+                }
+            }
+
+            // Checking the clock is not free, so only do it every few blocks
+            boolean checkClock = applyPhysics
+                    ? (position & 31) == 0
+                    : position < keys.length && BlockKey.sectionKeyOf(keys[position]) != BlockKey.sectionKeyOf(key);
+            if (checkClock && System.nanoTime() >= deadline) {
+                return;
+            }
+        }
+
+        finish();
+    }
+
+    /**
+     * Hand the remaining keys of an unloaded chunk to the tracker and move past them.
+     * Chunks with baseline targets are compared against the baseline again when they load.
+     */
+    private void deferChunk(long chunkKey) {
+        int end = position;
+        LongArrayList tracked = new LongArrayList();
+        boolean baseline = false;
+        while (end < keys.length && BlockKey.chunkKeyOf(keys[end]) == chunkKey) {
+            if (targets != null && targets.containsKey(keys[end])) {
+                baseline = true;
+            } else {
+                tracked.add(keys[end]);
+            }
+            end++;
+        }
+        if (baseline) {
+            plugin.getBaselineManager().deferChunk(chunkKey);
+        }
+        if (!tracked.isEmpty()) {
+            plugin.getBlockTracker().deferReset(chunkKey, tracked.toArray());
+        }
+        position = end;
+        deferredChunks++;
+    }
+
+    private void finish() {
+        cancel();
+        finished = true;
+        onComplete.accept(this);
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getTotalBlocks() {
+        return keys.length;
+    }
+
+    public int getProcessedBlocks() {
+        return position;
+    }
+
+    public int getRemovedBlocks() {
+        return removed;
+    }
+
+    public int getDeferredChunks() {
+        return deferredChunks;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Get the completion percentage.
+     */
+    public int getProgressPercent() {
+        return keys.length == 0 ? 100 : (int) (position * 100L / keys.length);
+    }
+
+    /**
+     * Get the wall-clock time since the job was created, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -1,31 +1,49 @@
 package com.boxserver.managers;
 
 import com.boxserver.BoxServer;
+import com.boxserver.Settings;
+import com.boxserver.models.LoadLevel;
 import com.boxserver.models.Region;
 import com.boxserver.models.RegionType;
+import com.boxserver.utils.Long2ObjectHashMap;
+import com.boxserver.utils.LongArrayList;
+import com.boxserver.utils.MessageTemplate;
 import com.boxserver.utils.MessageUtil;
+import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.command.CommandSender;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 /**
  * Manages the automatic reset of player-placed blocks in PvP regions.
+ * Resets run as a {@link ResetJob} spread over several ticks.
+ * In "baseline" mode, regions with a baseline are compared against it first and only
+ * blocks that differ are restored; other regions fall back to tracked blocks.
  */
 public class ResetManager {
     private final BoxServer plugin;
     private BukkitTask resetTask;
     private final List<BukkitTask> warningTasks;
     private int resetIntervalMinutes;
+    private ResetJob activeJob;
+    private boolean comparingBaselines;
 
     // Warning times in seconds before reset
     private static final int[] WARNING_TIMES = {60, 30, 10, 5};
 
+    // Length of one server tick at 20 TPS
+    private static final double TICK_MILLIS = 50.0;
+
     public ResetManager(BoxServer plugin) {
         this.plugin = plugin;
         this.warningTasks = new ArrayList<>();
-        this.resetIntervalMinutes = plugin.getConfig().getInt("reset-interval-minutes", 10);
+        this.resetIntervalMinutes = plugin.getSettings().getResetIntervalMinutes();
         startResetTask();
     }
 
@@ -61,16 +79,14 @@ public class ResetManager {
         }
         warningTasks.clear();
 
-        String warningMessage = plugin.getConfig().getString("messages.reset-warning", "&eBlock reset in %time% seconds!");
+        MessageTemplate warningMessage = plugin.getSettings().getResetWarningMessage();
 
         for (int seconds : WARNING_TIMES) {
             long warningTicks = intervalTicks - (seconds * 20L);
             if (warningTicks > 0) {
-                final int warningSeconds = seconds;
-                BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                    String message = MessageUtil.replacePlaceholders(warningMessage, "%time%", String.valueOf(warningSeconds));
-                    broadcastToPlayers(message);
-                }, warningTicks);
+                Component message = warningMessage.render("%time%", String.valueOf(seconds));
+                BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin,
+                        () -> broadcastNearResetRegions(message), warningTicks);
                 warningTasks.add(task);
             }
         }
@@ -91,26 +107,142 @@ public class ResetManager {
     }
 
     /**
-     * Perform the block reset for all PvP regions.
+     * Start a block reset for all PvP regions.
+     * The reset-complete message is broadcast once the job has finished.
      */
     public void performReset() {
-        int totalReset = 0;
+        if (isResetting()) {
+            plugin.getLogger().warning("Skipping scheduled reset, the previous reset is still running.");
+            return;
+        }
+
+        startReset("PvP regions", plugin.getRegionManager().getRegionsByType(RegionType.PVP),
+                job -> broadcastNearResetRegions(plugin.getSettings().getResetCompleteMessage()));
+    }
+
+    /**
+     * Start a reset of the blocks in a specific region.
+     *
+     * @param sender Receives a message when the reset completes, may be null
+     * @return false if another reset is still running
+     */
+    public boolean resetRegion(Region region, CommandSender sender) {
+        if (isResetting()) {
+            return false;
+        }
+
+        startReset("region '" + region.getName() + "'", List.of(region), job -> {
+            if (sender != null) {
+                MessageUtil.send(sender, "&aReset " + job.getRemovedBlocks() + " blocks in region '" + region.getName() + "'");
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Collect the blocks to reset in some regions and start a job for them.
+     * Baseline regions are compared asynchronously first, so the job may start a few ticks later.
+     */
+    private void startReset(String description, List<Region> regions, Consumer<ResetJob> onComplete) {
+        BlockTracker tracker = plugin.getBlockTracker();
+        BaselineManager baselineManager = plugin.getBaselineManager();
+        boolean baselineMode = plugin.getSettings().isBaselineResetMode();
+
+        LongArrayList keys = new LongArrayList();
+        List<Region> baselineRegions = new ArrayList<>();
+        for (Region region : regions) {
+            if (baselineMode && baselineManager.hasBaseline(region)) {
+                baselineRegions.add(region);
+                continue;
+            }
+            for (long key : tracker.getTrackedKeysInRegion(region)) {
+                keys.add(key);
+            }
+        }
 
-        for (Region region : plugin.getRegionManager().getRegionsByType(RegionType.PVP)) {
-            totalReset += plugin.getBlockTracker().resetBlocksInRegion(region);
+        if (baselineRegions.isEmpty()) {
+            startJob(description, keys.toSortedUniqueArray(), null, onComplete);
+            return;
         }
 
-        String resetMessage = plugin.getConfig().getString("messages.reset-complete", "&aAll placed blocks have been reset!");
-        broadcastToPlayers(resetMessage);
+        comparingBaselines = true;
+        List<Region> compared = new ArrayList<>();
+        compared.addAll(baselineManager.diff(baselineRegions, targets -> {
+            comparingBaselines = false;
+            // The baseline covers these regions completely, so per-block tracking there is obsolete
+            for (Region region : compared) {
+                for (long key : tracker.getTrackedKeysInRegion(region)) {
+                    tracker.forget(key);
+                }
+            }
+            for (long key : targets.keysToArray()) {
+                keys.add(key);
+            }
+            startJob(description, keys.toSortedUniqueArray(), targets, onComplete);
+        }, error -> {
+            comparingBaselines = false;
+            plugin.getLogger().log(Level.SEVERE, "Baseline comparison for " + description
+                    + " failed, the reset was not run.", error);
+        }));
 
-        plugin.getLogger().info("Reset " + totalReset + " blocks in PvP regions.");
+        // Regions whose baseline world is not loaded are reset through their tracked blocks instead
+        for (Region region : baselineRegions) {
+            if (!compared.contains(region)) {
+                for (long key : tracker.getTrackedKeysInRegion(region)) {
+                    keys.add(key);
+                }
+            }
+        }
+    }
+
+    private void startJob(String description, long[] keys, Long2ObjectHashMap<BlockData> targets,
+                          Consumer<ResetJob> onComplete) {
+        activeJob = new ResetJob(plugin, description, keys, targets, job -> {
+            activeJob = null;
+            plugin.getLogger().info("Reset " + job.getRemovedBlocks() + " blocks in " + job.getDescription() + " over "
+                    + job.getTicks() + " ticks (" + job.getElapsedMillis() + " ms), deferred "
+                    + job.getDeferredChunks() + " unloaded chunks.");
+            onComplete.accept(job);
+        });
+        plugin.getLogger().info("Resetting " + keys.length + " tracked blocks in " + description + ".");
+        activeJob.start();
+    }
+
+    /**
+     * Check if a reset is running or waiting for its baseline comparison.
+     */
+    public boolean isResetting() {
+        return activeJob != null || comparingBaselines;
     }
 
     /**
-     * Manually reset blocks in a specific region.
+     * Check if a reset is waiting for its baseline comparison.
      */
-    public int resetRegion(Region region) {
-        return plugin.getBlockTracker().resetBlocksInRegion(region);
+    public boolean isComparingBaselines() {
+        return comparingBaselines;
+    }
+
+    /**
+     * Get the reset currently in progress, or null.
+     */
+    public ResetJob getActiveJob() {
+        return activeJob;
+    }
+
+    /**
+     * Get how long a reset job may run this tick.
+     * The budget is a share of the time left in a 50 ms tick at the current average MSPT,
+     * clamped to the configured bounds.
+     */
+    public long getTickBudgetNanos() {
+        Settings settings = plugin.getSettings();
+        if (plugin.getLoadGovernor().getLevel() == LoadLevel.CRITICAL) {
+            return (long) (settings.getMinTickBudgetMillis() * 1_000_000);
+        }
+        double headroom = TICK_MILLIS - Bukkit.getAverageTickTime();
+        double budgetMillis = Math.max(settings.getMinTickBudgetMillis(),
+                Math.min(settings.getMaxTickBudgetMillis(), headroom * settings.getHeadroomFraction()));
+        return (long) (budgetMillis * 1_000_000);
     }
 
     /**
@@ -120,6 +252,7 @@ public class ResetManager {
         this.resetIntervalMinutes = minutes;
         plugin.getConfig().set("reset-interval-minutes", minutes);
         plugin.saveConfig();
+        plugin.refreshSettings();
         startResetTask();
     }
 
@@ -131,17 +264,27 @@ public class ResetManager {
     }
 
     /**
-     * Broadcast a message to all players.
+     * Send a message to the players in and around the PvP regions that are reset,
+     * or to all players if reset.broadcast-radius is negative.
      */
-    private void broadcastToPlayers(String message) {
-        Bukkit.getOnlinePlayers().forEach(player -> MessageUtil.send(player, message));
+    private void broadcastNearResetRegions(Component message) {
+        if (message == null || plugin.getLoadGovernor().isShedding()) {
+            return;
+        }
+        int radius = plugin.getSettings().getBroadcastRadius();
+        if (radius < 0) {
+            Bukkit.getOnlinePlayers().forEach(player -> MessageUtil.send(player, message));
+            return;
+        }
+        List<Region> regions = plugin.getRegionManager().getRegionsByType(RegionType.PVP);
+        plugin.getRegionManager().getPlayersNear(regions, radius).forEach(player -> MessageUtil.send(player, message));
     }
 
     /**
      * Reload the reset manager configuration.
      */
     public void reload() {
-        this.resetIntervalMinutes = plugin.getConfig().getInt("reset-interval-minutes", 10);
+        this.resetIntervalMinutes = plugin.getSettings().getResetIntervalMinutes();
         startResetTask();
     }
 }
@@ -0,0 +1,164 @@
+package com.boxserver.models;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Union of several cuboids acting as one region. The cuboids are kept in one flat array sorted
+ * by minimum X, so a containment test stops at the first cuboid starting past the block.
+ */
+public final class CuboidUnionShape implements RegionShape {
+    private static final int STRIDE = 6;
+
+    // minX, minY, minZ, maxX, maxY, maxZ of each cuboid
+    private final int[] cuboids;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+
+    /**
+     * @param corners Opposite corners of each cuboid as {x1, y1, z1, x2, y2, z2}
+     * @throws IllegalArgumentException If there are no cuboids
+     */
+    public CuboidUnionShape(List<int[]> corners) {
+        if (corners.isEmpty()) {
+            throw new IllegalArgumentException("A cuboid union needs at least 1 cuboid");
+        }
+
+        int[][] sorted = new int[corners.size()][];
+        for (int i = 0; i < sorted.length; i++) {
+            int[] c = corners.get(i);
+            sorted[i] = new int[] {Math.min(c[0], c[3]), Math.min(c[1], c[4]), Math.min(c[2], c[5]),
+                    Math.max(c[0], c[3]), Math.max(c[1], c[4]), Math.max(c[2], c[5])};
+        }
+        Arrays.sort(sorted, Comparator.comparingInt(c -> c[0]));
+
+        this.cuboids = new int[sorted.length * STRIDE];
+        int lowX = Integer.MAX_VALUE, lowY = Integer.MAX_VALUE, lowZ = Integer.MAX_VALUE;
+        int highX = Integer.MIN_VALUE, highY = Integer.MIN_VALUE, highZ = Integer.MIN_VALUE;
+        for (int i = 0; i < sorted.length; i++) {
+            int[] c = sorted[i];
+            System.arraycopy(c, 0, cuboids, i * STRIDE, STRIDE);
+            lowX = Math.min(lowX, c[0]);
+            lowY = Math.min(lowY, c[1]);
+            lowZ = Math.min(lowZ, c[2]);
+            highX = Math.max(highX, c[3]);
+            highY = Math.max(highY, c[4]);
+            highZ = Math.max(highZ, c[5]);
+        }
+        this.minX = lowX;
+        this.minY = lowY;
+        this.minZ = lowZ;
+        this.maxX = highX;
+        this.maxY = highY;
+        this.maxZ = highZ;
+    }
+
+    @Override
+    public String getKey() {
+        return "union";
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        for (int i = 0; i < cuboids.length && cuboids[i] <= x; i += STRIDE) {
+            if (x <= cuboids[i + 3] && y >= cuboids[i + 1] && y <= cuboids[i + 4]
+                    && z >= cuboids[i + 2] && z <= cuboids[i + 5]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean intersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        for (int i = 0; i < cuboids.length && cuboids[i] <= maxX; i += STRIDE) {
+            if (cuboids[i + 3] >= minX && cuboids[i + 1] <= maxY && cuboids[i + 4] >= minY
+                    && cuboids[i + 2] <= maxZ && cuboids[i + 5] >= minZ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if a single cuboid covers a box. Boxes covered only by several cuboids together
+     * are reported as not covered.
+     */
+    @Override
+    public boolean covers(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        for (int i = 0; i < cuboids.length && cuboids[i] <= minX; i += STRIDE) {
+            if (cuboids[i + 3] >= maxX && cuboids[i + 1] <= minY && cuboids[i + 4] >= maxY
+                    && cuboids[i + 2] <= minZ && cuboids[i + 5] >= maxZ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getColumnSpans(int x, int z, int[] spans) {
+        int count = 0;
+        for (int i = 0; i < cuboids.length && cuboids[i] <= x; i += STRIDE) {
+            if (x <= cuboids[i + 3] && z >= cuboids[i + 2] && z <= cuboids[i + 5]) {
+                spans[count * 2] = cuboids[i + 1];
+                spans[count * 2 + 1] = cuboids[i + 4];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getMaxColumnSpans() {
+        return cuboids.length / STRIDE;
+    }
+
+    /**
+     * Get the number of cuboids in the union.
+     */
+    public int getCuboidCount() {
+        return cuboids.length / STRIDE;
+    }
+
+    /**
+     * Get the corners of one cuboid as {minX, minY, minZ, maxX, maxY, maxZ}.
+     */
+    public int[] getCuboid(int index) {
+        return Arrays.copyOfRange(cuboids, index * STRIDE, index * STRIDE + STRIDE);
+    }
+
+    @Override
+    public int getMinX() {
+        return minX;
+    }
+
+    @Override
+    public int getMinY() {
+        return minY;
+    }
+
+    @Override
+    public int getMinZ() {
+        return minZ;
+    }
+
+    @Override
+    public int getMaxX() {
+        return maxX;
+    }
+
+    @Override
+    public int getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public int getMaxZ() {
+        return maxZ;
+    }
+}
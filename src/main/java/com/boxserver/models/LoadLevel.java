@@ -0,0 +1,24 @@
+package com.boxserver.models;
+
+/**
+ * How far behind the server is, as measured by the load governor.
+ * Protection decisions are the same at every level; only optional work is shed.
+ */
+public enum LoadLevel {
+    /**
+     * Ticks fit in their budget. Everything runs.
+     */
+    NORMAL,
+
+    /**
+     * MSPT is over the degraded threshold.
+     * Denial and reset messages are dropped and anti-push team membership is frozen.
+     */
+    DEGRADED,
+
+    /**
+     * MSPT is over the critical threshold.
+     * As degraded, and reset jobs only get the minimum tick budget.
+     */
+    CRITICAL
+}
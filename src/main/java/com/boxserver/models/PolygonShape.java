@@ -0,0 +1,256 @@
+package com.boxserver.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prism made of a polygon in the X/Z plane and a Y range. Blocks whose coordinates lie inside
+ * the polygon or on its edges belong to the shape.
+ *
+ * The polygon is scan-converted once into a table of X spans per Z row, so a containment
+ * test is a Y check, an array index for the row and a walk over its few spans.
+ */
+public final class PolygonShape implements RegionShape {
+    private static final int MAX_ROWS = 1 << 20;
+
+    private final int[] pointsX;
+    private final int[] pointsZ;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    // Spans of row z are the inclusive (start, end) pairs spans[rowOffsets[z - minZ] .. rowOffsets[z - minZ + 1])
+    private final int[] rowOffsets;
+    private final int[] spans;
+
+    /**
+     * @param pointsX X coordinates of the polygon corners, in order around the polygon
+     * @param pointsZ Z coordinates of the polygon corners
+     * @throws IllegalArgumentException If there are fewer than 3 corners or the polygon is too long
+     */
+    public PolygonShape(int[] pointsX, int[] pointsZ, int y1, int y2) {
+        if (pointsX.length != pointsZ.length || pointsX.length < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 points");
+        }
+        this.pointsX = pointsX.clone();
+        this.pointsZ = pointsZ.clone();
+        this.minY = Math.min(y1, y2);
+        this.maxY = Math.max(y1, y2);
+
+        int lowX = Integer.MAX_VALUE, lowZ = Integer.MAX_VALUE;
+        int highX = Integer.MIN_VALUE, highZ = Integer.MIN_VALUE;
+        for (int i = 0; i < pointsX.length; i++) {
+            lowX = Math.min(lowX, pointsX[i]);
+            lowZ = Math.min(lowZ, pointsZ[i]);
+            highX = Math.max(highX, pointsX[i]);
+            highZ = Math.max(highZ, pointsZ[i]);
+        }
+        if ((long) highZ - lowZ >= MAX_ROWS) {
+            throw new IllegalArgumentException("A polygon can be at most " + MAX_ROWS + " blocks long");
+        }
+        this.minX = lowX;
+        this.minZ = lowZ;
+        this.maxX = highX;
+        this.maxZ = highZ;
+
+        int rows = maxZ - minZ + 1;
+        this.rowOffsets = new int[rows + 1];
+        int[] table = new int[rows * 2];
+        int size = 0;
+        for (int row = 0; row < rows; row++) {
+            int[] rowSpans = scanRow(minZ + row);
+            if (size + rowSpans.length > table.length) {
+                table = Arrays.copyOf(table, Math.max(table.length * 2, size + rowSpans.length));
+            }
+            System.arraycopy(rowSpans, 0, table, size, rowSpans.length);
+            size += rowSpans.length;
+            rowOffsets[row + 1] = size;
+        }
+        this.spans = Arrays.copyOf(table, size);
+    }
+
+    /**
+     * Find the merged X spans of the polygon in one row.
+     */
+    private int[] scanRow(int z) {
+        List<long[]> intervals = new ArrayList<>();
+        List<double[]> crossings = new ArrayList<>();
+        int count = pointsX.length;
+        for (int i = 0; i < count; i++) {
+            int x1 = pointsX[i], z1 = pointsZ[i];
+            int x2 = pointsX[(i + 1) % count], z2 = pointsZ[(i + 1) % count];
+            if (z1 == z2) {
+                // Horizontal edges only add their own blocks
+                if (z == z1) {
+                    intervals.add(new long[] {Math.min(x1, x2), Math.max(x1, x2)});
+                }
+                continue;
+            }
+            if (z1 > z2) {
+                int t = x1; x1 = x2; x2 = t;
+                t = z1; z1 = z2; z2 = t;
+            }
+            if (z < z1 || z > z2) {
+                continue;
+            }
+
+            // The edge crosses this row at x = n / d
+            long d = z2 - z1;
+            long n = (long) x1 * d + (long) (z - z1) * (x2 - x1);
+            long floor = Math.floorDiv(n, d);
+            long ceil = -Math.floorDiv(-n, d);
+            if (floor == ceil) {
+                // Block exactly on the edge
+                intervals.add(new long[] {floor, floor});
+            }
+            // Half-open in Z so corners shared by two edges are counted once
+            if (z < z2) {
+                crossings.add(new double[] {(double) n / d, ceil, floor});
+            }
+        }
+
+        crossings.sort((a, b) -> Double.compare(a[0], b[0]));
+        for (int i = 0; i + 1 < crossings.size(); i += 2) {
+            long start = (long) crossings.get(i)[1];
+            long end = (long) crossings.get(i + 1)[2];
+            if (start <= end) {
+                intervals.add(new long[] {start, end});
+            }
+        }
+
+        intervals.sort((a, b) -> Long.compare(a[0], b[0]));
+        int[] merged = new int[intervals.size() * 2];
+        int size = 0;
+        for (long[] interval : intervals) {
+            if (size > 0 && interval[0] <= merged[size - 1] + 1L) {
+                merged[size - 1] = (int) Math.max(merged[size - 1], interval[1]);
+            } else {
+                merged[size++] = (int) interval[0];
+                merged[size++] = (int) interval[1];
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    @Override
+    public String getKey() {
+        return "polygon";
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        if (y < minY || y > maxY || z < minZ || z > maxZ) {
+            return false;
+        }
+        int row = z - minZ;
+        for (int i = rowOffsets[row], end = rowOffsets[row + 1]; i < end; i += 2) {
+            if (x < spans[i]) {
+                return false;
+            }
+            if (x <= spans[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean intersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (minY > this.maxY || maxY < this.minY) {
+            return false;
+        }
+        for (int z = Math.max(minZ, this.minZ); z <= Math.min(maxZ, this.maxZ); z++) {
+            int row = z - this.minZ;
+            for (int i = rowOffsets[row], end = rowOffsets[row + 1]; i < end; i += 2) {
+                if (spans[i] <= maxX && spans[i + 1] >= minX) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean covers(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (minY < this.minY || maxY > this.maxY || minZ < this.minZ || maxZ > this.maxZ) {
+            return false;
+        }
+        for (int z = minZ; z <= maxZ; z++) {
+            int row = z - this.minZ;
+            boolean covered = false;
+            for (int i = rowOffsets[row], end = rowOffsets[row + 1]; i < end; i += 2) {
+                if (spans[i] <= minX && spans[i + 1] >= maxX) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getColumnSpans(int x, int z, int[] spans) {
+        if (!contains(x, minY, z)) {
+            return 0;
+        }
+        spans[0] = minY;
+        spans[1] = maxY;
+        return 1;
+    }
+
+    @Override
+    public int getMaxColumnSpans() {
+        return 1;
+    }
+
+    /**
+     * Get the number of polygon corners.
+     */
+    public int getPointCount() {
+        return pointsX.length;
+    }
+
+    public int getPointX(int index) {
+        return pointsX[index];
+    }
+
+    public int getPointZ(int index) {
+        return pointsZ[index];
+    }
+
+    @Override
+    public int getMinX() {
+        return minX;
+    }
+
+    @Override
+    public int getMinY() {
+        return minY;
+    }
+
+    @Override
+    public int getMinZ() {
+        return minZ;
+    }
+
+    @Override
+    public int getMaxX() {
+        return maxX;
+    }
+
+    @Override
+    public int getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public int getMaxZ() {
+        return maxZ;
+    }
+}
@@ -1,15 +1,22 @@
 package com.boxserver.models;
 
+import com.boxserver.utils.WorldRegistry;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.Set;
 import java.util.UUID;
 
 /**
  * Represents a region in the BoxServer arena.
+ * A region is a cuboid, or has a {@link RegionShape} whose bounding box is the region's min
+ * and max coordinates, so box checks stay cheap and only blocks inside the box reach the shape.
+ * Rules are kept as a {@link RegionFlag} bitmask that starts from the defaults of the region
+ * type, and the block whitelist is an {@link EnumSet}, which is a bitset over material ordinals.
+ * Regions are only changed before they are published; the region manager replaces a published
+ * region with a changed {@link #copy()}.
  */
 public class Region {
     private final String name;
@@ -17,9 +24,13 @@ public class Region {
     private RegionType type;
     private int minX, minY, minZ;
     private int maxX, maxY, maxZ;
+    // Null for a plain cuboid
+    private RegionShape shape;
     private int priority;
-    private boolean pvpEnabled;
-    private Set<Material> whitelistedBlocks;
+    private int flags;
+    private EnumSet<Material> whitelistedBlocks;
+    // WorldRegistry id of the world, resolved on first use
+    private int worldHandle = -1;
 
     public Region(String name, UUID worldId, RegionType type, int x1, int y1, int z1, int x2, int y2, int z2) {
         this.name = name;
@@ -32,8 +43,8 @@ public class Region {
         this.maxY = Math.max(y1, y2);
         this.maxZ = Math.max(z1, z2);
         this.priority = 0;
-        this.pvpEnabled = type != RegionType.SPAWN;
-        this.whitelistedBlocks = new HashSet<>();
+        this.flags = RegionFlag.defaultsFor(type);
+        this.whitelistedBlocks = EnumSet.noneOf(Material.class);
 
         // Set default whitelisted blocks for spawn regions
         if (type == RegionType.SPAWN) {
@@ -41,6 +52,28 @@ public class Region {
         }
     }
 
+    /**
+     * Create a region with a non-cuboid shape.
+     */
+    public Region(String name, UUID worldId, RegionType type, RegionShape shape) {
+        this(name, worldId, type, shape.getMinX(), shape.getMinY(), shape.getMinZ(),
+                shape.getMaxX(), shape.getMaxY(), shape.getMaxZ());
+        this.shape = shape;
+    }
+
+    /**
+     * Create a copy of this region that can be changed without affecting this one.
+     */
+    public Region copy() {
+        Region copy = shape != null
+                ? new Region(name, worldId, type, shape)
+                : new Region(name, worldId, type, minX, minY, minZ, maxX, maxY, maxZ);
+        copy.priority = priority;
+        copy.flags = flags;
+        copy.whitelistedBlocks = whitelistedBlocks.clone();
+        return copy;
+    }
+
     private void initDefaultWhitelistedBlocks() {
         whitelistedBlocks.add(Material.STONE);
         whitelistedBlocks.add(Material.SPRUCE_LOG);
@@ -67,42 +100,87 @@ public class Region {
         if (!location.getWorld().getUID().equals(worldId)) {
             return false;
         }
-        int x = location.getBlockX();
-        int y = location.getBlockY();
-        int z = location.getBlockZ();
-        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        return contains(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Check if a block is within this region.
+     *
+     * @param world The {@link WorldRegistry} id of the block's world
+     */
+    public boolean contains(int world, int x, int y, int z) {
+        int handle = worldHandle;
+        if (handle < 0) {
+            handle = WorldRegistry.idOf(worldId);
+            worldHandle = handle;
+        }
+        return handle == world && contains(x, y, z);
+    }
+
+    /**
+     * Check if block coordinates are within this region, without checking the world.
+     */
+    public boolean contains(int x, int y, int z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ
+                && (shape == null || shape.contains(x, y, z));
     }
 
     /**
-     * Check if a block can be broken in this region.
+     * Check if this region overlaps a box of block coordinates, without checking the world.
+     */
+    public boolean intersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return this.minX <= maxX && this.maxX >= minX
+                && this.minY <= maxY && this.maxY >= minY
+                && this.minZ <= maxZ && this.maxZ >= minZ
+                && (shape == null || shape.intersects(minX, minY, minZ, maxX, maxY, maxZ));
+    }
+
+    /**
+     * Check if every block of a box is in this region, without checking the world.
+     * Shapes may report a covered box as not covered, never the other way round.
+     */
+    public boolean covers(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return minX >= this.minX && maxX <= this.maxX
+                && minY >= this.minY && maxY <= this.maxY
+                && minZ >= this.minZ && maxZ <= this.maxZ
+                && (shape == null || shape.covers(minX, minY, minZ, maxX, maxY, maxZ));
+    }
+
+    /**
+     * Check if this region allows a rule.
+     */
+    public boolean allows(RegionFlag flag) {
+        return (flags & flag.mask()) != 0;
+    }
+
+    /**
+     * Check if a block can be broken in this region: anything if it allows
+     * {@link RegionFlag#BREAK}, otherwise only whitelisted blocks if it allows {@link RegionFlag#WHITELIST}.
      */
     public boolean canBreak(Material material) {
-        return switch (type) {
-            case SPAWN -> whitelistedBlocks.contains(material);
-            case PVP -> true;
-            case PROTECTED, BOUNDARY -> false;
-        };
+        return (flags & RegionFlag.BREAK.mask()) != 0
+                || ((flags & RegionFlag.WHITELIST.mask()) != 0 && whitelistedBlocks.contains(material));
     }
 
     /**
      * Check if blocks can be placed in this region.
      */
     public boolean canPlace() {
-        return type == RegionType.PVP;
+        return allows(RegionFlag.PLACE);
     }
 
     /**
      * Check if wind charges are allowed in this region.
      */
     public boolean allowsWindCharges() {
-        return type == RegionType.PVP;
+        return allows(RegionFlag.WIND_CHARGE);
     }
 
     /**
      * Check if PvP is enabled in this region.
      */
     public boolean isPvpEnabled() {
-        return pvpEnabled;
+        return allows(RegionFlag.PVP);
     }
 
     /**
@@ -125,8 +203,12 @@ public class Region {
         return type;
     }
 
+    /**
+     * Change the type of this region. Flags are reset to the defaults of the new type.
+     */
     public void setType(RegionType type) {
         this.type = type;
+        this.flags = RegionFlag.defaultsFor(type);
     }
 
     public int getMinX() {
@@ -153,6 +235,13 @@ public class Region {
         return maxZ;
     }
 
+    /**
+     * Get the shape of this region, or null if it is a plain cuboid.
+     */
+    public RegionShape getShape() {
+        return shape;
+    }
+
     public int getPriority() {
         return priority;
     }
@@ -162,7 +251,19 @@ public class Region {
     }
 
     public void setPvpEnabled(boolean pvpEnabled) {
-        this.pvpEnabled = pvpEnabled;
+        setFlag(RegionFlag.PVP, pvpEnabled);
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public void setFlags(int flags) {
+        this.flags = flags;
+    }
+
+    public void setFlag(RegionFlag flag, boolean allowed) {
+        flags = allowed ? flags | flag.mask() : flags & ~flag.mask();
     }
 
     public Set<Material> getWhitelistedBlocks() {
@@ -170,7 +271,8 @@ public class Region {
     }
 
     public void setWhitelistedBlocks(Set<Material> whitelistedBlocks) {
-        this.whitelistedBlocks = whitelistedBlocks;
+        this.whitelistedBlocks = whitelistedBlocks.isEmpty()
+                ? EnumSet.noneOf(Material.class) : EnumSet.copyOf(whitelistedBlocks);
     }
 
     public void addWhitelistedBlock(Material material) {
@@ -185,7 +287,11 @@ public class Region {
         whitelistedBlocks.clear();
     }
 
+    /**
+     * Make this region a plain cuboid between two corners.
+     */
     public void setCorners(int x1, int y1, int z1, int x2, int y2, int z2) {
+        this.shape = null;
         this.minX = Math.min(x1, x2);
         this.minY = Math.min(y1, y2);
         this.minZ = Math.min(z1, z2);
@@ -196,7 +302,7 @@ public class Region {
 
     @Override
     public String toString() {
-        return String.format("Region{name='%s', type=%s, bounds=[%d,%d,%d to %d,%d,%d], priority=%d}",
-                name, type, minX, minY, minZ, maxX, maxY, maxZ, priority);
+        return String.format("Region{name='%s', type=%s, shape=%s, bounds=[%d,%d,%d to %d,%d,%d], priority=%d}",
+                name, type, shape == null ? "cuboid" : shape.getKey(), minX, minY, minZ, maxX, maxY, maxZ, priority);
     }
 }
@@ -0,0 +1,86 @@
+package com.boxserver.models;
+
+/**
+ * Rules a region can allow or deny. A region keeps its flags as one int bitmask,
+ * so each rule check is a single mask test.
+ */
+public enum RegionFlag {
+    /** Players can break any block. */
+    BREAK("break"),
+    /** Players can place blocks. */
+    PLACE("place"),
+    /** Water and lava can flow in from outside the region. */
+    FLUID_IN("fluid-in"),
+    /** Pistons can move blocks in from outside the region. */
+    PISTON_IN("piston-in"),
+    /** Explosions can destroy blocks. */
+    EXPLOSION("explosion"),
+    /** Blocks can be set on fire. */
+    IGNITE("ignite"),
+    /** Blocks can be destroyed by fire. */
+    BURN("burn"),
+    /** Players can use wind charges. */
+    WIND_CHARGE("wind-charge"),
+    /** Players can damage each other. */
+    PVP("pvp"),
+    /** Players take fall, fire, drowning and other environmental damage. */
+    ENV_DAMAGE("env-damage"),
+    /** Players can ender pearl in from outside the region. */
+    PEARL_IN("pearl-in"),
+    /** Players can empty water buckets. */
+    BUCKET("bucket"),
+    /** Players can be pushed around by other players. */
+    PUSH("push"),
+    /** Players can break the region's whitelisted blocks even without {@link #BREAK}. */
+    WHITELIST("whitelist");
+
+    private static final int ALL = (1 << values().length) - 1;
+
+    private final String key;
+    private final int mask;
+
+    RegionFlag(String key) {
+        this.key = key;
+        this.mask = 1 << ordinal();
+    }
+
+    /**
+     * Get the name of this flag in regions.yml and commands.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Get the bit of this flag in a region's flag mask.
+     */
+    public int mask() {
+        return mask;
+    }
+
+    /**
+     * Find a flag by its key, ignoring case.
+     *
+     * @return The flag, or null if there is none with this key
+     */
+    public static RegionFlag fromKey(String key) {
+        for (RegionFlag flag : values()) {
+            if (flag.key.equalsIgnoreCase(key)) {
+                return flag;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the flags a new region of a type starts with.
+     */
+    public static int defaultsFor(RegionType type) {
+        return switch (type) {
+            case SPAWN -> WHITELIST.mask;
+            case PVP -> ALL;
+            case PROTECTED -> PVP.mask | ENV_DAMAGE.mask | PEARL_IN.mask | PUSH.mask;
+            case BOUNDARY -> IGNITE.mask | PVP.mask | ENV_DAMAGE.mask | PEARL_IN.mask | BUCKET.mask | PUSH.mask;
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package com.boxserver.models;
+
+/**
+ * Non-cuboid outline of a region. Shapes are immutable and precompute everything containment
+ * tests need when they are created, so they can be read from any thread.
+ *
+ * A shaped region's min and max coordinates are the bounding box of its shape; indexes work
+ * on that box and ask the shape only for blocks inside it.
+ */
+public interface RegionShape {
+
+    /**
+     * Get the name of this kind of shape in regions.yml and commands.
+     */
+    String getKey();
+
+    int getMinX();
+
+    int getMinY();
+
+    int getMinZ();
+
+    int getMaxX();
+
+    int getMaxY();
+
+    int getMaxZ();
+
+    /**
+     * Check if a block is inside this shape.
+     */
+    boolean contains(int x, int y, int z);
+
+    /**
+     * Check if any block of a box is inside this shape.
+     */
+    boolean intersects(int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+
+    /**
+     * Check if every block of a box is inside this shape. May return false for boxes that
+     * are covered, but never true for boxes that are not.
+     */
+    boolean covers(int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+
+    /**
+     * Write the Y ranges this shape covers in one block column as inclusive (min, max) pairs.
+     *
+     * @param spans Receives the pairs; must hold at least {@link #getMaxColumnSpans()} pairs
+     * @return The number of pairs written
+     */
+    int getColumnSpans(int x, int z, int[] spans);
+
+    /**
+     * Get the largest number of Y ranges a single block column can have.
+     */
+    int getMaxColumnSpans();
+}
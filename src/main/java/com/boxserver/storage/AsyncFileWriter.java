@@ -0,0 +1,122 @@
+package com.boxserver.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs file writes on a dedicated I/O thread.
+ *
+ * Callers take a consistent snapshot of their data on the server thread and hand the
+ * serialization and write to this class. Tasks run one at a time in submission order.
+ * Writes submitted under the same key coalesce: if an earlier write for that key has not
+ * started yet, it is replaced by the newer one.
+ */
+public class AsyncFileWriter {
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final Map<String, AtomicReference<IoTask>> pendingWrites;
+
+    /**
+     * A unit of file I/O.
+     */
+    @FunctionalInterface
+    public interface IoTask {
+        void run() throws IOException;
+    }
+
+    public AsyncFileWriter(Logger logger) {
+        this.logger = logger;
+        this.pendingWrites = new ConcurrentHashMap<>();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BoxServer-IO");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a task that must run exactly once, in order with all other tasks.
+     */
+    public void execute(String description, IoTask task) {
+        executor.execute(() -> run(description, task));
+    }
+
+    /**
+     * Queue a write that replaces any not-yet-started write with the same key.
+     */
+    public void submit(String key, IoTask task) {
+        AtomicReference<IoTask> slot = pendingWrites.computeIfAbsent(key, k -> new AtomicReference<>());
+        if (slot.getAndSet(task) == null) {
+            executor.execute(() -> {
+                IoTask latest = slot.getAndSet(null);
+                if (latest != null) {
+                    run(key, latest);
+                }
+            });
+        }
+    }
+
+    private void run(String description, IoTask task) {
+        try {
+            task.run();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to write " + description, e);
+        }
+    }
+
+    /**
+     * Wait until every task queued so far has finished.
+     *
+     * @return true if the queue drained within the timeout
+     */
+    public boolean awaitPending(long timeout, TimeUnit unit) {
+        try {
+            executor.submit(() -> { }).get(timeout, unit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stop accepting tasks and wait, up to the timeout, for queued writes to finish.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout, unit)) {
+                logger.warning("Timed out waiting for pending file writes to finish.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Replace a file's contents atomically, syncing the data to disk before the rename.
+     */
+    public static void writeAtomically(File target, byte[] data) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        File tempFile = new File(parent, target.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(data);
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
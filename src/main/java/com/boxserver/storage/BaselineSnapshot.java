@@ -0,0 +1,248 @@
+package com.boxserver.storage;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block states of a region's volume captured at one point in time, used to restore the region later.
+ *
+ * The volume is split into 16x16x16 chunk sections. Each section is stored as a palette of
+ * block state strings plus one palette index per block (Y, Z, X order, -1 outside the region),
+ * deflated on its own. Sections stay compressed in memory and are only inflated while they are
+ * compared against the world, so a baseline costs little more than its file size.
+ * The bounds are those of the region when it was captured, so a baseline can be checked against
+ * the region's current bounds; only sections inside the world's height are stored.
+ *
+ * Instances are immutable and may be shared with other threads.
+ */
+public class BaselineSnapshot {
+    private static final int MAGIC = 0x4258424C; // "BXBL"
+    private static final int VERSION = 1;
+    private static final int SECTION_BLOCKS = 16 * 16 * 16;
+
+    private final String worldName;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final List<Section> sections;
+
+    public BaselineSnapshot(String worldName, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                            List<Section> sections) {
+        this.worldName = worldName;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.sections = Collections.unmodifiableList(new ArrayList<>(sections));
+    }
+
+    /**
+     * One compressed chunk section of the baseline.
+     */
+    public record Section(int chunkX, int sectionY, int chunkZ, byte[] data) {
+    }
+
+    /**
+     * An inflated section.
+     *
+     * @param palette Block state strings
+     * @param indices Palette index per block in Y, Z, X order, or -1 for blocks outside the region
+     */
+    public record DecodedSection(String[] palette, short[] indices) {
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getMaxZ() {
+        return maxZ;
+    }
+
+    /**
+     * Get all sections, ordered by chunk and then by height.
+     */
+    public List<Section> getSections() {
+        return sections;
+    }
+
+    /**
+     * Check if the baseline covers any part of a chunk.
+     */
+    public boolean coversChunk(int chunkX, int chunkZ) {
+        return chunkX >= minX >> 4 && chunkX <= maxX >> 4 && chunkZ >= minZ >> 4 && chunkZ <= maxZ >> 4;
+    }
+
+    /**
+     * Get the size of the compressed section data, in bytes.
+     */
+    public long getCompressedBytes() {
+        long bytes = 0;
+        for (Section section : sections) {
+            bytes += section.data().length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Compress one section.
+     *
+     * @param palette Block state strings, of which the first paletteSize are used
+     * @param indices Palette index per block in Y, Z, X order, or -1 for blocks outside the region
+     */
+    public static byte[] encodeSection(String[] palette, int paletteSize, short[] indices) {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(SECTION_BLOCKS * 2 + 256);
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            out.writeShort(paletteSize);
+            for (int i = 0; i < paletteSize; i++) {
+                out.writeUTF(palette[i]);
+            }
+            for (short index : indices) {
+                out.writeShort(index);
+            }
+        } catch (IOException e) {
+            // Writing to an in-memory stream cannot fail
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] input = raw.toByteArray();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(256);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflate one section.
+     */
+    public static DecodedSection decodeSection(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(SECTION_BLOCKS * 2 + 256);
+        try {
+            inflater.setInput(data);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated baseline section");
+                }
+                raw.write(buffer, 0, length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt baseline section", e);
+        } finally {
+            inflater.end();
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw.toByteArray()))) {
+            String[] palette = new String[in.readUnsignedShort()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = in.readUTF();
+            }
+            short[] indices = new short[SECTION_BLOCKS];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = in.readShort();
+            }
+            return new DecodedSection(palette, indices);
+        }
+    }
+
+    /**
+     * Encode the baseline into a file image.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (int) getCompressedBytes() + 16 * sections.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(worldName);
+            out.writeInt(minX);
+            out.writeInt(minY);
+            out.writeInt(minZ);
+            out.writeInt(maxX);
+            out.writeInt(maxY);
+            out.writeInt(maxZ);
+            out.writeInt(sections.size());
+            for (Section section : sections) {
+                out.writeInt(section.chunkX());
+                out.writeInt(section.sectionY());
+                out.writeInt(section.chunkZ());
+                out.writeInt(section.data().length);
+                out.write(section.data());
+            }
+        } catch (IOException e) {
+            // Writing to an in-memory stream cannot fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read a baseline written by {@link #toBytes()}.
+     */
+    public static BaselineSnapshot read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown baseline format: " + file.getName());
+            }
+            String worldName = in.readUTF();
+            int minX = in.readInt();
+            int minY = in.readInt();
+            int minZ = in.readInt();
+            int maxX = in.readInt();
+            int maxY = in.readInt();
+            int maxZ = in.readInt();
+
+            int count = in.readInt();
+            List<Section> sections = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int chunkX = in.readInt();
+                int sectionY = in.readInt();
+                int chunkZ = in.readInt();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                sections.add(new Section(chunkX, sectionY, chunkZ, data));
+            }
+            return new BaselineSnapshot(worldName, minX, minY, minZ, maxX, maxY, maxZ, sections);
+        }
+    }
+}
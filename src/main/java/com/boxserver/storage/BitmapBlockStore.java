@@ -0,0 +1,254 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2ObjectHashMap;
+
+/**
+ * Bitmap-based storage for tracked blocks, suited to densely built areas.
+ *
+ * Each 16x16x16 chunk section with at least one tracked block gets a 4096-bit bitmap,
+ * keyed by packed section coordinates. Placement timestamps are optional and kept in a
+ * per-section side array as unsigned seconds, which last until 2106; without them every
+ * block reports 0.
+ * A per-chunk mask of occupied sections lets chunk queries skip empty sections.
+ *
+ * Snapshots share the section bitmaps. Each section remembers the store version it was created
+ * in, and a section older than the last snapshot is replaced with a copy before its first change.
+ */
+public class BitmapBlockStore implements BlockStore {
+    private static final int SECTION_BITS = 4096;
+    private static final int WORDS_PER_SECTION = SECTION_BITS / 64;
+
+    private final boolean keepTimestamps;
+    private final Long2ObjectHashMap<Section> sections;
+    // Chunk key -> 256-bit mask of occupied section Y indices
+    private final Long2ObjectHashMap<long[]> chunkSections;
+    private int size;
+    // Incremented by every snapshot
+    private int version;
+
+    private static final class Section {
+        final long[] bits;
+        final int[] timestamps;
+        final int version;
+        int count;
+
+        Section(boolean keepTimestamps, int version) {
+            this.bits = new long[WORDS_PER_SECTION];
+            this.timestamps = keepTimestamps ? new int[SECTION_BITS] : null;
+            this.version = version;
+        }
+
+        private Section(Section other, int version) {
+            this.bits = other.bits.clone();
+            this.timestamps = other.timestamps != null ? other.timestamps.clone() : null;
+            this.version = version;
+            this.count = other.count;
+        }
+    }
+
+    public BitmapBlockStore(boolean keepTimestamps) {
+        this.keepTimestamps = keepTimestamps;
+        this.sections = new Long2ObjectHashMap<>();
+        this.chunkSections = new Long2ObjectHashMap<>();
+    }
+
+    /**
+     * Get the section key of a packed block key: chunk key plus the section Y index.
+     */
+    private static long sectionKey(long chunkKey, int sectionIndex) {
+        return (chunkKey << 8) | sectionIndex;
+    }
+
+    /**
+     * Get the 0..255 section Y index of a packed block key.
+     */
+    private static int sectionIndex(long key) {
+        return (BlockKey.y(key) >> 4) & 0xFF;
+    }
+
+    /**
+     * Get the position of a block inside its section bitmap.
+     */
+    private static int bitIndex(long key) {
+        return BlockKey.localIndex(key) & 0xFFF;
+    }
+
+    /**
+     * Get a section for changing it, replacing it with a copy first if a snapshot may share it.
+     */
+    private Section writable(long sectionKey, Section section) {
+        if (section.version == version) {
+            return section;
+        }
+        Section copy = new Section(section, version);
+        sections.put(sectionKey, copy);
+        return copy;
+    }
+
+    @Override
+    public boolean add(long key, long timestamp) {
+        long chunkKey = BlockKey.chunkKeyOf(key);
+        int sectionIndex = sectionIndex(key);
+        long sectionKey = sectionKey(chunkKey, sectionIndex);
+
+        Section section = sections.get(sectionKey);
+        if (section == null) {
+            section = new Section(keepTimestamps, version);
+            sections.put(sectionKey, section);
+            long[] mask = chunkSections.computeIfAbsent(chunkKey, k -> new long[4]);
+            mask[sectionIndex >>> 6] |= 1L << sectionIndex;
+        } else {
+            section = writable(sectionKey, section);
+        }
+
+        int bit = bitIndex(key);
+        if (section.timestamps != null) {
+            section.timestamps[bit] = (int) (timestamp / 1000);
+        }
+        long word = section.bits[bit >>> 6];
+        long flag = 1L << bit;
+        if ((word & flag) != 0) {
+            return false;
+        }
+        section.bits[bit >>> 6] = word | flag;
+        section.count++;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(long key) {
+        long chunkKey = BlockKey.chunkKeyOf(key);
+        int sectionIndex = sectionIndex(key);
+        long sectionKey = sectionKey(chunkKey, sectionIndex);
+
+        Section section = sections.get(sectionKey);
+        if (section == null) {
+            return false;
+        }
+        int bit = bitIndex(key);
+        long flag = 1L << bit;
+        if ((section.bits[bit >>> 6] & flag) == 0) {
+            return false;
+        }
+        size--;
+
+        if (section.count == 1) {
+            // Dropping the section leaves a shared one untouched
+            sections.remove(sectionKey);
+            long[] mask = chunkSections.get(chunkKey);
+            mask[sectionIndex >>> 6] &= ~(1L << sectionIndex);
+            if ((mask[0] | mask[1] | mask[2] | mask[3]) == 0) {
+                chunkSections.remove(chunkKey);
+            }
+        } else {
+            section = writable(sectionKey, section);
+            section.bits[bit >>> 6] &= ~flag;
+            section.count--;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(long key) {
+        Section section = sections.get(sectionKey(BlockKey.chunkKeyOf(key), sectionIndex(key)));
+        if (section == null) {
+            return false;
+        }
+        int bit = bitIndex(key);
+        return (section.bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    @Override
+    public void forEachInChunk(long chunkKey, BlockConsumer consumer) {
+        long[] mask = chunkSections.get(chunkKey);
+        if (mask != null) {
+            forEachInChunk(chunkKey, mask, consumer);
+        }
+    }
+
+    private void forEachInChunk(long chunkKey, long[] mask, BlockConsumer consumer) {
+        for (int m = 0; m < mask.length; m++) {
+            long occupied = mask[m];
+            while (occupied != 0) {
+                int sectionIndex = (m << 6) | Long.numberOfTrailingZeros(occupied);
+                occupied &= occupied - 1;
+                forEachInSection(chunkKey, sectionIndex, sections.get(sectionKey(chunkKey, sectionIndex)), consumer);
+            }
+        }
+    }
+
+    private static void forEachInSection(long chunkKey, int sectionIndex, Section section, BlockConsumer consumer) {
+        // Section Y index is stored unsigned; restore the signed section Y, then the packed 12-bit block Y
+        int baseY = ((byte) sectionIndex) << 4;
+        for (int w = 0; w < WORDS_PER_SECTION; w++) {
+            long word = section.bits[w];
+            while (word != 0) {
+                int bit = (w << 6) | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                int y = baseY + (bit >>> 8);
+                int localIndex = ((y & 0xFFF) << 8) | (bit & 0xFF);
+                long timestamp = section.timestamps != null ? Integer.toUnsignedLong(section.timestamps[bit]) * 1000L : 0;
+                consumer.accept(BlockKey.fromChunk(chunkKey, localIndex), timestamp);
+            }
+        }
+    }
+
+    @Override
+    public void forEach(BlockConsumer consumer) {
+        chunkSections.forEach((chunkKey, mask) -> forEachInChunk(chunkKey, mask, consumer));
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        long[] chunkKeys = new long[sections.size()];
+        int[] sectionIndices = new int[sections.size()];
+        Section[] shared = new Section[sections.size()];
+        int[] index = new int[1];
+        chunkSections.forEach((chunkKey, mask) -> {
+            for (int m = 0; m < mask.length; m++) {
+                long occupied = mask[m];
+                while (occupied != 0) {
+                    int sectionIndex = (m << 6) | Long.numberOfTrailingZeros(occupied);
+                    occupied &= occupied - 1;
+                    chunkKeys[index[0]] = chunkKey;
+                    sectionIndices[index[0]] = sectionIndex;
+                    shared[index[0]++] = sections.get(sectionKey(chunkKey, sectionIndex));
+                }
+            }
+        });
+        version++;
+        return new SectionSnapshot(chunkKeys, sectionIndices, shared, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        long perSection = 32 + 8L * WORDS_PER_SECTION + (keepTimestamps ? 16 + 4L * SECTION_BITS : 0);
+        return sections.size() * perSection
+                + chunkSections.size() * 48L
+                + 12L * (sections.capacity() + chunkSections.capacity());
+    }
+
+    @Override
+    public void clear() {
+        sections.clear();
+        chunkSections.clear();
+        size = 0;
+    }
+
+    private record SectionSnapshot(long[] chunkKeys, int[] sectionIndices, Section[] sections, int size)
+            implements Snapshot {
+        @Override
+        public void forEach(BlockConsumer consumer) {
+            for (int i = 0; i < sections.length; i++) {
+                forEachInSection(chunkKeys[i], sectionIndices[i], sections[i], consumer);
+            }
+        }
+    }
+}
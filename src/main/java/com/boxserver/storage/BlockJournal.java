@@ -0,0 +1,432 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2ObjectHashMap;
+import com.boxserver.utils.WorldRegistry;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only binary journal for tracked blocks.
+ *
+ * Track and untrack records are buffered in memory and appended to the current journal
+ * file on {@link #flush()}. Once enough records accumulate, {@link #compact} writes the
+ * full store to a {@link MappedBlockSnapshot} and starts a new journal generation. Startup maps
+ * the newest snapshot and replays every journal of the same or a newer generation in order,
+ * faulting in only the snapshot chunks that journal records touch.
+ *
+ * Flushing only copies the buffered records and compaction only takes a copy-on-write
+ * {@link BlockStore#snapshot()} on the calling thread; the actual writes run on
+ * the {@link AsyncFileWriter}. Loading is synchronous and expects pending writes to be drained.
+ *
+ * Resets deferred for unloaded chunks are journaled as well, and carried into the journal of
+ * each new generation on compaction so the snapshot format does not need to know about them.
+ *
+ * World ids are only stable within one server process, so each file carries its own
+ * world name table and ids are remapped through {@link WorldRegistry} on load.
+ */
+public class BlockJournal {
+    private static final int JOURNAL_MAGIC = 0x42584A4C; // "BXJL"
+    private static final int VERSION = 1;
+
+    private static final byte RECORD_WORLD = 0;
+    private static final byte RECORD_TRACK = 1;
+    private static final byte RECORD_UNTRACK = 2;
+    private static final byte RECORD_CLEAR = 3;
+    private static final byte RECORD_RESET_PENDING = 4;
+    private static final byte RECORD_RESET_DONE = 5;
+
+    private static final Pattern JOURNAL_NAME = Pattern.compile("placed-blocks\\.(\\d+)\\.journal");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("placed-blocks\\.(\\d+)\\.snapshot");
+
+    private final File dataFolder;
+    private final Logger logger;
+    private final AsyncFileWriter writer;
+    private final ByteArrayOutputStream pendingBytes;
+    private final DataOutputStream pending;
+    private final boolean[] worldsWritten;
+    private long generation;
+    private long recordsSinceCompaction;
+
+    // Only touched on the I/O thread
+    private long lastSnapshotGeneration;
+
+    public BlockJournal(File dataFolder, Logger logger, AsyncFileWriter writer) {
+        this.dataFolder = dataFolder;
+        this.logger = logger;
+        this.writer = writer;
+        this.pendingBytes = new ByteArrayOutputStream(64 * 1024);
+        this.pending = new DataOutputStream(pendingBytes);
+        this.worldsWritten = new boolean[BlockKey.MAX_WORLDS];
+    }
+
+    /**
+     * Check if any snapshot or journal file exists.
+     */
+    public boolean exists() {
+        return !listFiles(SNAPSHOT_NAME).isEmpty()
+                || !listFiles(JOURNAL_NAME).isEmpty();
+    }
+
+    /**
+     * Map the newest snapshot and replay all newer journals into the store.
+     *
+     * @param pendingResets Receives the deferred resets, keyed by chunk key
+     * @return The mapped snapshot holding blocks not yet faulted into the store, or null if there is none
+     */
+    public MappedBlockSnapshot load(BlockStore store, Long2ObjectHashMap<long[]> pendingResets) throws IOException {
+        store.clear();
+        pendingResets.clear();
+        discardPending();
+
+        long snapshotGeneration = 0;
+        MappedBlockSnapshot snapshot = null;
+        List<GenerationFile> snapshots = listFiles(SNAPSHOT_NAME);
+        for (int i = snapshots.size() - 1; i >= 0 && snapshot == null; i--) {
+            // Fall back to an older snapshot if the newest one is unreadable
+            GenerationFile candidate = snapshots.get(i);
+            if (MappedBlockSnapshot.readGeneration(candidate.file) == candidate.generation) {
+                snapshot = MappedBlockSnapshot.open(candidate.file);
+                snapshotGeneration = candidate.generation;
+            }
+        }
+
+        long lastGeneration = snapshotGeneration;
+        for (GenerationFile journal : listFiles(JOURNAL_NAME)) {
+            if (journal.generation < snapshotGeneration) {
+                continue;
+            }
+            recordsSinceCompaction += replay(journal.file, store, snapshot, pendingResets);
+            lastGeneration = Math.max(lastGeneration, journal.generation);
+        }
+
+        // Start a fresh generation so new records never follow a truncated tail
+        generation = lastGeneration + 1;
+        lastSnapshotGeneration = snapshotGeneration;
+        Arrays.fill(worldsWritten, false);
+        return snapshot;
+    }
+
+    /**
+     * Record that a block is now tracked.
+     */
+    public void recordTrack(long key, long timestamp) {
+        try {
+            writeWorld(BlockKey.worldId(key));
+            pending.writeByte(RECORD_TRACK);
+            pending.writeLong(key);
+            pending.writeLong(timestamp);
+            recordsSinceCompaction++;
+        } catch (IOException ignored) {
+            // Writing to an in-memory stream cannot fail
+        }
+    }
+
+    /**
+     * Record that a block is no longer tracked.
+     */
+    public void recordUntrack(long key) {
+        try {
+            writeWorld(BlockKey.worldId(key));
+            pending.writeByte(RECORD_UNTRACK);
+            pending.writeLong(key);
+            recordsSinceCompaction++;
+        } catch (IOException ignored) {
+            // Writing to an in-memory stream cannot fail
+        }
+    }
+
+    /**
+     * Record that all tracked blocks were removed.
+     */
+    public void recordClear() {
+        try {
+            pending.writeByte(RECORD_CLEAR);
+            recordsSinceCompaction++;
+        } catch (IOException ignored) {
+            // Writing to an in-memory stream cannot fail
+        }
+    }
+
+    /**
+     * Record that the removal of tracked blocks in an unloaded chunk has been deferred.
+     *
+     * @param keys Packed keys of the blocks to remove, all in the given chunk
+     */
+    public void recordPendingReset(long chunkKey, long[] keys) {
+        try {
+            writeWorld(BlockKey.chunkWorldId(chunkKey));
+            pending.writeByte(RECORD_RESET_PENDING);
+            pending.writeLong(chunkKey);
+            pending.writeInt(keys.length);
+            for (long key : keys) {
+                pending.writeInt(BlockKey.localIndex(key));
+            }
+            recordsSinceCompaction++;
+        } catch (IOException ignored) {
+            // Writing to an in-memory stream cannot fail
+        }
+    }
+
+    /**
+     * Record that a deferred reset has been applied.
+     */
+    public void recordResetDone(long chunkKey) {
+        try {
+            writeWorld(BlockKey.chunkWorldId(chunkKey));
+            pending.writeByte(RECORD_RESET_DONE);
+            pending.writeLong(chunkKey);
+            recordsSinceCompaction++;
+        } catch (IOException ignored) {
+            // Writing to an in-memory stream cannot fail
+        }
+    }
+
+    private void writeWorld(int worldId) throws IOException {
+        if (worldsWritten[worldId]) {
+            return;
+        }
+        worldsWritten[worldId] = true;
+        pending.writeByte(RECORD_WORLD);
+        pending.writeByte(worldId);
+        pending.writeUTF(WorldRegistry.nameOf(worldId));
+    }
+
+    /**
+     * Hand all buffered records to the I/O thread for appending to the current journal.
+     */
+    public void flush() {
+        if (pendingBytes.size() == 0) {
+            return;
+        }
+        byte[] bytes = pendingBytes.toByteArray();
+        pendingBytes.reset();
+        long journalGeneration = generation;
+        writer.execute("placed-blocks journal", () -> append(journalGeneration, bytes));
+    }
+
+    /**
+     * Check if the journal has grown enough to be folded into a new snapshot.
+     */
+    public boolean needsCompaction(long threshold) {
+        return recordsSinceCompaction >= threshold;
+    }
+
+    /**
+     * Snapshot the store and write it in the background, then drop the files it supersedes.
+     * Chunks still held only by the mapped snapshot are copied over without decoding.
+     * Back-to-back compactions coalesce into one write of the newest snapshot.
+     *
+     * @param mapped The currently mapped snapshot, or null
+     * @param pendingResets Deferred resets to carry into the new generation
+     * @param compress Whether to deflate newly encoded chunk data
+     */
+    public void compact(BlockStore store, MappedBlockSnapshot mapped, Long2ObjectHashMap<long[]> pendingResets,
+                        boolean compress) {
+        flush();
+
+        // New records go to the next generation, which the snapshot does not cover
+        long newGeneration = ++generation;
+        recordsSinceCompaction = 0;
+        Arrays.fill(worldsWritten, false);
+        pendingResets.forEach(this::recordPendingReset);
+        flush();
+
+        // Copy-on-write, so this only costs a reference per chunk or section on the calling thread
+        BlockStore.Snapshot snapshot = store.snapshot();
+        List<MappedBlockSnapshot.RawChunk> carried = mapped != null ? mapped.unfaultedChunks() : List.of();
+        // Every known world goes in the table, so the keys do not have to be scanned here
+        String[] worldNames = new String[BlockKey.MAX_WORLDS];
+        for (int worldId = 0; worldId < worldNames.length; worldId++) {
+            worldNames[worldId] = WorldRegistry.nameOf(worldId);
+        }
+
+        writer.submit("placed-blocks snapshot", () -> {
+            if (!dataFolder.exists() && !dataFolder.mkdirs()) {
+                throw new IOException("Could not create " + dataFolder);
+            }
+            File target = getSnapshotFile(newGeneration);
+            File tempFile = new File(dataFolder, target.getName() + ".tmp");
+            MappedBlockSnapshot.write(tempFile, snapshot, carried, worldNames, newGeneration, compress);
+            Files.move(tempFile.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshotGeneration = newGeneration;
+
+            for (GenerationFile journal : listFiles(JOURNAL_NAME)) {
+                if (journal.generation < newGeneration && !journal.file.delete()) {
+                    logger.warning("Failed to delete old journal " + journal.file.getName());
+                }
+            }
+            // Older snapshots may still be mapped on platforms that lock mapped files; retry next time
+            for (GenerationFile old : listFiles(SNAPSHOT_NAME)) {
+                if (old.generation < newGeneration) {
+                    old.file.delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Append records to a journal file, creating it with a header if needed. Runs on the I/O thread.
+     */
+    private void append(long journalGeneration, byte[] bytes) throws IOException {
+        if (journalGeneration < lastSnapshotGeneration) {
+            // A coalesced snapshot that already includes these records has been written
+            return;
+        }
+        if (!dataFolder.exists() && !dataFolder.mkdirs()) {
+            throw new IOException("Could not create " + dataFolder);
+        }
+        File file = getJournalFile(journalGeneration);
+        boolean isNew = !file.exists() || file.length() == 0;
+        try (FileOutputStream fileOut = new FileOutputStream(file, true);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            if (isNew) {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeInt(VERSION);
+            }
+            out.write(bytes);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    private void discardPending() {
+        pendingBytes.reset();
+        recordsSinceCompaction = 0;
+        Arrays.fill(worldsWritten, false);
+    }
+
+    /**
+     * Apply a journal file to the store.
+     *
+     * @return The number of records replayed
+     */
+    private long replay(File file, BlockStore store, MappedBlockSnapshot snapshot,
+                        Long2ObjectHashMap<long[]> pendingResets) throws IOException {
+        int[] worldMap = newWorldMap();
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readInt() != VERSION) {
+                logger.warning("Skipping journal with unknown format: " + file.getName());
+                return 0;
+            }
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                switch (type) {
+                    case RECORD_WORLD -> worldMap[in.readUnsignedByte()] = WorldRegistry.idOf(in.readUTF());
+                    case RECORD_TRACK -> {
+                        long key = remap(in.readLong(), worldMap);
+                        long timestamp = in.readLong();
+                        if (key != BlockKey.INVALID) {
+                            faultIn(snapshot, key, store);
+                            store.add(key, timestamp);
+                        }
+                    }
+                    case RECORD_UNTRACK -> {
+                        long key = remap(in.readLong(), worldMap);
+                        if (key != BlockKey.INVALID) {
+                            faultIn(snapshot, key, store);
+                            store.remove(key);
+                        }
+                    }
+                    case RECORD_CLEAR -> {
+                        store.clear();
+                        pendingResets.clear();
+                        if (snapshot != null) {
+                            snapshot.dropAll();
+                        }
+                    }
+                    case RECORD_RESET_PENDING -> {
+                        long chunkKey = remapChunk(in.readLong(), worldMap);
+                        long[] keys = new long[in.readInt()];
+                        for (int i = 0; i < keys.length; i++) {
+                            keys[i] = BlockKey.fromChunk(chunkKey, in.readInt());
+                        }
+                        if (chunkKey != BlockKey.INVALID) {
+                            pendingResets.put(chunkKey, keys);
+                        }
+                    }
+                    case RECORD_RESET_DONE -> {
+                        long chunkKey = remapChunk(in.readLong(), worldMap);
+                        if (chunkKey != BlockKey.INVALID) {
+                            pendingResets.remove(chunkKey);
+                        }
+                    }
+                    default -> {
+                        logger.warning("Journal " + file.getName() + " has a corrupt record, ignoring the rest of it.");
+                        return records;
+                    }
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            // A crash can leave a partially written record at the tail; everything before it is valid
+            logger.warning("Journal " + file.getName() + " ends with a truncated record, ignoring it.");
+        }
+        return records;
+    }
+
+    private static void faultIn(MappedBlockSnapshot snapshot, long key, BlockStore store) {
+        if (snapshot != null) {
+            snapshot.faultIn(BlockKey.chunkKeyOf(key), store);
+        }
+    }
+
+    private static int[] newWorldMap() {
+        int[] worldMap = new int[BlockKey.MAX_WORLDS];
+        Arrays.fill(worldMap, -1);
+        return worldMap;
+    }
+
+    private static long remap(long key, int[] worldMap) {
+        int worldId = worldMap[BlockKey.worldId(key)];
+        return worldId < 0 ? BlockKey.INVALID : BlockKey.withWorldId(key, worldId);
+    }
+
+    private static long remapChunk(long chunkKey, int[] worldMap) {
+        int worldId = worldMap[BlockKey.chunkWorldId(chunkKey)];
+        return worldId < 0 ? BlockKey.INVALID : BlockKey.chunkKey(worldId, BlockKey.chunkX(chunkKey), BlockKey.chunkZ(chunkKey));
+    }
+
+    private File getSnapshotFile(long snapshotGeneration) {
+        return new File(dataFolder, "placed-blocks." + snapshotGeneration + ".snapshot");
+    }
+
+    private File getJournalFile(long journalGeneration) {
+        return new File(dataFolder, "placed-blocks." + journalGeneration + ".journal");
+    }
+
+    /**
+     * List generation-numbered files matching a pattern, oldest first.
+     */
+    private List<GenerationFile> listFiles(Pattern pattern) {
+        List<GenerationFile> result = new ArrayList<>();
+        File[] files = dataFolder.listFiles();
+        if (files == null) {
+            return result;
+        }
+        for (File file : files) {
+            Matcher matcher = pattern.matcher(file.getName());
+            if (matcher.matches()) {
+                result.add(new GenerationFile(file, Long.parseLong(matcher.group(1))));
+            }
+        }
+        result.sort((a, b) -> Long.compare(a.generation, b.generation));
+        return result;
+    }
+
+    private record GenerationFile(File file, long generation) {
+    }
+}
@@ -0,0 +1,79 @@
+package com.boxserver.storage;
+
+/**
+ * In-memory storage backend for tracked blocks, addressed by packed block keys.
+ * Implementations are not thread-safe; all access happens on the server thread.
+ */
+public interface BlockStore {
+
+    /**
+     * Callback for iterating over tracked blocks.
+     */
+    @FunctionalInterface
+    interface BlockConsumer {
+        void accept(long key, long timestamp);
+    }
+
+    /**
+     * Point-in-time view of a store that can be read from another thread while the store keeps
+     * changing. Stores share their tables with the snapshot and copy a table on its first change
+     * after the snapshot, so taking one only costs a reference per chunk or section.
+     */
+    interface Snapshot {
+        /**
+         * Get the number of blocks in the snapshot.
+         */
+        int size();
+
+        /**
+         * Visit every block in the snapshot, one chunk at a time.
+         */
+        void forEach(BlockConsumer consumer);
+    }
+
+    /**
+     * Add or refresh a tracked block.
+     *
+     * @return true if the block was not tracked before
+     */
+    boolean add(long key, long timestamp);
+
+    /**
+     * Remove a tracked block.
+     *
+     * @return true if the block was tracked
+     */
+    boolean remove(long key);
+
+    /**
+     * Check if a block is tracked.
+     */
+    boolean contains(long key);
+
+    /**
+     * Visit every tracked block in a chunk.
+     */
+    void forEachInChunk(long chunkKey, BlockConsumer consumer);
+
+    /**
+     * Visit every tracked block, one chunk at a time.
+     */
+    void forEach(BlockConsumer consumer);
+
+    /**
+     * Take a copy-on-write snapshot of every tracked block.
+     */
+    Snapshot snapshot();
+
+    /**
+     * Get the total number of tracked blocks.
+     */
+    int size();
+
+    /**
+     * Get a rough estimate of the heap used by the backing tables, in bytes.
+     */
+    long estimateMemoryBytes();
+
+    void clear();
+}
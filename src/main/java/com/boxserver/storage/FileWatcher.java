@@ -0,0 +1,121 @@
+package com.boxserver.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches one file for changes on a daemon thread, using a {@link WatchService} on its folder.
+ *
+ * Editors and atomic saves usually produce several events per change, so events are collected
+ * until the file has been quiet for a short while and then reported once. The callback runs on
+ * the watcher thread and must hand any real work to another thread.
+ */
+public class FileWatcher {
+    private final Path folder;
+    private final Path fileName;
+    private final long quietMillis;
+    private final Runnable onChange;
+    private final Logger logger;
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * @param quietMillis How long the file must go without events before a change is reported
+     * @param onChange Called on the watcher thread after each change
+     */
+    public FileWatcher(File file, long quietMillis, Runnable onChange, Logger logger) {
+        this.folder = file.getAbsoluteFile().getParentFile().toPath();
+        this.fileName = file.toPath().getFileName();
+        this.quietMillis = quietMillis;
+        this.onChange = onChange;
+        this.logger = logger;
+    }
+
+    /**
+     * Start watching. Failures are logged and leave the watcher stopped.
+     */
+    public void start() {
+        try {
+            folder.toFile().mkdirs();
+            watchService = FileSystems.getDefault().newWatchService();
+            folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not watch " + folder.resolve(fileName), e);
+            return;
+        }
+
+        thread = new Thread(this::run, "BoxServer-Watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching and end the watcher thread.
+     */
+    public void stop() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close file watcher", e);
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!isRelevant(watchService.take())) {
+                    continue;
+                }
+
+                // Wait for the burst of events from one save to end
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quietMillis);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key != null && isRelevant(key)) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quietMillis);
+                    }
+                }
+
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Failed to handle change of " + fileName, e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Drain a key's events and check if any of them concern the watched file.
+     */
+    private boolean isRelevant(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+}
@@ -0,0 +1,141 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2LongHashMap;
+import com.boxserver.utils.Long2ObjectHashMap;
+
+/**
+ * Hash-based storage for tracked blocks, grouped by chunk.
+ * Each chunk holds an open-addressing map from packed block key to placement timestamp,
+ * so tracking, untracking and lookups do not allocate once a chunk's table is sized.
+ *
+ * Snapshots share the chunk tables. Each table remembers the store version it was created in,
+ * and a table older than the last snapshot is copied before its first change.
+ * Not thread-safe; all access happens on the server thread.
+ */
+public class HashBlockStore implements BlockStore {
+    private final Long2ObjectHashMap<Chunk> chunks;
+    private int size;
+    // Incremented by every snapshot
+    private int version;
+
+    private static final class Chunk {
+        Long2LongHashMap blocks;
+        int version;
+
+        Chunk(Long2LongHashMap blocks, int version) {
+            this.blocks = blocks;
+            this.version = version;
+        }
+    }
+
+    public HashBlockStore() {
+        this.chunks = new Long2ObjectHashMap<>();
+    }
+
+    /**
+     * Get a chunk's table for changing it, copying it first if a snapshot may share it.
+     */
+    private Long2LongHashMap writable(Chunk chunk) {
+        if (chunk.version != version) {
+            chunk.blocks = chunk.blocks.copy();
+            chunk.version = version;
+        }
+        return chunk.blocks;
+    }
+
+    @Override
+    public boolean add(long key, long timestamp) {
+        long chunkKey = BlockKey.chunkKeyOf(key);
+        Chunk chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            // Not computeIfAbsent: a factory reading the version would allocate a lambda per call
+            chunk = new Chunk(new Long2LongHashMap(), version);
+            chunks.put(chunkKey, chunk);
+        }
+        if (writable(chunk).put(key, timestamp)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(long key) {
+        long chunkKey = BlockKey.chunkKeyOf(key);
+        Chunk chunk = chunks.get(chunkKey);
+        if (chunk == null || !chunk.blocks.containsKey(key)) {
+            return false;
+        }
+        size--;
+        if (chunk.blocks.size() == 1) {
+            // Dropping the table leaves a shared one untouched
+            chunks.remove(chunkKey);
+        } else {
+            writable(chunk).remove(key);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(long key) {
+        Chunk chunk = chunks.get(BlockKey.chunkKeyOf(key));
+        return chunk != null && chunk.blocks.containsKey(key);
+    }
+
+    @Override
+    public void forEachInChunk(long chunkKey, BlockConsumer consumer) {
+        Chunk chunk = chunks.get(chunkKey);
+        if (chunk != null) {
+            chunk.blocks.forEach(consumer::accept);
+        }
+    }
+
+    @Override
+    public void forEach(BlockConsumer consumer) {
+        chunks.forEach((chunkKey, chunk) -> chunk.blocks.forEach(consumer::accept));
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        Long2LongHashMap[] tables = new Long2LongHashMap[chunks.size()];
+        int[] index = new int[1];
+        chunks.forEach((chunkKey, chunk) -> tables[index[0]++] = chunk.blocks);
+        version++;
+        return new TableSnapshot(tables, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of chunks with at least one tracked block.
+     */
+    public int chunkCount() {
+        return chunks.size();
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        long[] bytes = new long[1];
+        chunks.forEach((chunkKey, chunk) -> bytes[0] += 80 + 16L * chunk.blocks.capacity());
+        return bytes[0] + 12L * chunks.capacity();
+    }
+
+    @Override
+    public void clear() {
+        chunks.clear();
+        size = 0;
+    }
+
+    private record TableSnapshot(Long2LongHashMap[] tables, int size) implements Snapshot {
+        @Override
+        public void forEach(BlockConsumer consumer) {
+            for (Long2LongHashMap table : tables) {
+                table.forEach(consumer::accept);
+            }
+        }
+    }
+}
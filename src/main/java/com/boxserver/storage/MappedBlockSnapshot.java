@@ -0,0 +1,418 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2LongHashMap;
+import com.boxserver.utils.WorldRegistry;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only, memory-mapped snapshot of tracked blocks.
+ *
+ * File layout:
+ * <pre>
+ * header      magic, version, flags, generation, total blocks, chunk count, world table length
+ * world table [id u8][name length u16][UTF-8 name] per world
+ * chunk table [chunk key i64][data offset i64][block count i32][data length i32][raw length i32][flags i32] per chunk
+ * chunk data  sorted in-chunk indices as delta varints, then timestamps as zigzag delta varints
+ * </pre>
+ * Opening a snapshot only reads the header and chunk table. Chunk data stays in the mapped
+ * file until a chunk is faulted into a {@link BlockStore} or streamed by a query.
+ * A snapshot is mapped as one buffer, so files are limited to 2 GB.
+ */
+public class MappedBlockSnapshot {
+    private static final int MAGIC = 0x4258534D; // "BXSM"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 40;
+    private static final int CHUNK_ENTRY_SIZE = 32;
+    private static final int FLAG_DEFLATE = 1;
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private final ByteBuffer buffer;
+    private final long generation;
+    private final long[] chunkKeys;
+    private final long[] dataOffsets;
+    private final int[] blockCounts;
+    private final int[] dataLengths;
+    private final int[] rawLengths;
+    private final int[] chunkFlags;
+    // Live chunk key -> chunk table index, for chunks not yet faulted in
+    private final Long2LongHashMap unfaulted;
+    private long unfaultedBlocks;
+
+    private MappedBlockSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unknown snapshot format");
+        }
+        this.generation = buffer.getLong(16);
+        int chunkCount = buffer.getInt(32);
+        int worldTableLength = buffer.getInt(36);
+
+        int[] worldMap = new int[BlockKey.MAX_WORLDS];
+        Arrays.fill(worldMap, -1);
+        int position = HEADER_SIZE;
+        int worldTableEnd = HEADER_SIZE + worldTableLength;
+        while (position < worldTableEnd) {
+            int fileWorldId = buffer.get(position) & 0xFF;
+            int nameLength = buffer.getShort(position + 1) & 0xFFFF;
+            byte[] name = new byte[nameLength];
+            buffer.get(position + 3, name);
+            worldMap[fileWorldId] = WorldRegistry.idOf(new String(name, StandardCharsets.UTF_8));
+            position += 3 + nameLength;
+        }
+
+        this.chunkKeys = new long[chunkCount];
+        this.dataOffsets = new long[chunkCount];
+        this.blockCounts = new int[chunkCount];
+        this.dataLengths = new int[chunkCount];
+        this.rawLengths = new int[chunkCount];
+        this.chunkFlags = new int[chunkCount];
+        this.unfaulted = new Long2LongHashMap(chunkCount);
+
+        position = worldTableEnd;
+        for (int i = 0; i < chunkCount; i++, position += CHUNK_ENTRY_SIZE) {
+            long fileChunkKey = buffer.getLong(position);
+            int worldId = worldMap[BlockKey.chunkWorldId(fileChunkKey)];
+            dataOffsets[i] = buffer.getLong(position + 8);
+            blockCounts[i] = buffer.getInt(position + 16);
+            dataLengths[i] = buffer.getInt(position + 20);
+            rawLengths[i] = buffer.getInt(position + 24);
+            chunkFlags[i] = buffer.getInt(position + 28);
+            if (dataOffsets[i] < 0 || dataLengths[i] < 0 || dataOffsets[i] + dataLengths[i] > buffer.capacity()) {
+                throw new IOException("Chunk data outside of the snapshot file");
+            }
+            if (worldId < 0) {
+                chunkKeys[i] = BlockKey.INVALID;
+                continue;
+            }
+            chunkKeys[i] = BlockKey.chunkKey(worldId, BlockKey.chunkX(fileChunkKey), BlockKey.chunkZ(fileChunkKey));
+            unfaulted.put(chunkKeys[i], i);
+            unfaultedBlocks += blockCounts[i];
+        }
+    }
+
+    /**
+     * Map a snapshot file into memory and read its chunk table.
+     */
+    public static MappedBlockSnapshot open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > MAX_FILE_SIZE) {
+                throw new IOException("Snapshot " + file.getName() + " is larger than 2 GB");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedBlockSnapshot(mapped);
+        }
+    }
+
+    /**
+     * Read the journal generation stored in a snapshot header without mapping the file.
+     *
+     * @return The generation, or -1 if the file is not a valid snapshot
+     */
+    public static long readGeneration(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return -1;
+            }
+            in.readLong();
+            return in.readLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Get the number of blocks still held only by the mapped file.
+     */
+    public long getUnfaultedBlockCount() {
+        return unfaultedBlocks;
+    }
+
+    /**
+     * Move a chunk's blocks from the mapped file into the store, if not done already.
+     */
+    public void faultIn(long chunkKey, BlockStore store) {
+        if (unfaulted.isEmpty()) {
+            return;
+        }
+        int index = (int) unfaulted.get(chunkKey, -1);
+        if (index < 0) {
+            return;
+        }
+        unfaulted.remove(chunkKey);
+        unfaultedBlocks -= blockCounts[index];
+        decode(index, store::add);
+    }
+
+    /**
+     * Forget every block still held by the mapped file, e.g. after all tracked blocks were cleared.
+     */
+    public void dropAll() {
+        unfaulted.clear();
+        unfaultedBlocks = 0;
+    }
+
+    /**
+     * Visit the blocks of a chunk that has not been faulted in, reading straight from the mapped file.
+     */
+    public void forEachInChunk(long chunkKey, BlockStore.BlockConsumer consumer) {
+        if (unfaulted.isEmpty()) {
+            return;
+        }
+        int index = (int) unfaulted.get(chunkKey, -1);
+        if (index >= 0) {
+            decode(index, consumer);
+        }
+    }
+
+    private void decode(int index, BlockStore.BlockConsumer consumer) {
+        ByteBuffer data = chunkData(index);
+        if ((chunkFlags[index] & FLAG_DEFLATE) != 0) {
+            data = inflate(data, rawLengths[index]);
+        }
+
+        int count = blockCounts[index];
+        int[] localIndices = new int[count];
+        int local = 0;
+        for (int i = 0; i < count; i++) {
+            local += readVarInt(data);
+            localIndices[i] = local;
+        }
+        long timestamp = 0;
+        long chunkKey = chunkKeys[index];
+        for (int i = 0; i < count; i++) {
+            timestamp += zigzagDecode(readVarLong(data));
+            consumer.accept(BlockKey.fromChunk(chunkKey, localIndices[i]), timestamp);
+        }
+    }
+
+    private ByteBuffer chunkData(int index) {
+        // Offsets fit in an int, since open() rejects files over 2 GB
+        return buffer.slice((int) dataOffsets[index], dataLengths[index]);
+    }
+
+    /**
+     * Get the still-unfaulted chunks as raw encoded data, so a new snapshot can copy them without decoding.
+     */
+    public List<RawChunk> unfaultedChunks() {
+        List<RawChunk> chunks = new ArrayList<>(unfaulted.size());
+        unfaulted.forEach((chunkKey, index) -> {
+            int i = (int) index;
+            chunks.add(new RawChunk(chunkKey, chunkData(i).asReadOnlyBuffer(), blockCounts[i], rawLengths[i], chunkFlags[i]));
+        });
+        return chunks;
+    }
+
+    /**
+     * Encoded data of one chunk in a mapped snapshot.
+     */
+    public record RawChunk(long chunkKey, ByteBuffer data, int blockCount, int rawLength, int flags) {
+    }
+
+    /**
+     * Write a snapshot file from a store snapshot plus raw chunks carried over from an older snapshot.
+     * Store entries must be grouped by chunk, as produced by {@link BlockStore#snapshot()}.
+     */
+    public static void write(File file, BlockStore.Snapshot snapshot, List<RawChunk> carriedChunks,
+                             String[] worldNames, long generation, boolean compress) throws IOException {
+        List<EncodedChunk> chunks = new ArrayList<>();
+        long totalBlocks = 0;
+
+        long[] keys = new long[snapshot.size()];
+        long[] timestamps = new long[snapshot.size()];
+        int[] index = new int[1];
+        snapshot.forEach((key, timestamp) -> {
+            keys[index[0]] = key;
+            timestamps[index[0]] = timestamp;
+            index[0]++;
+        });
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            int start = 0;
+            while (start < keys.length) {
+                long chunkKey = BlockKey.chunkKeyOf(keys[start]);
+                int end = start + 1;
+                while (end < keys.length && BlockKey.chunkKeyOf(keys[end]) == chunkKey) {
+                    end++;
+                }
+                chunks.add(encode(chunkKey, keys, timestamps, start, end, deflater));
+                totalBlocks += end - start;
+                start = end;
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        for (RawChunk raw : carriedChunks) {
+            byte[] data = new byte[raw.data().remaining()];
+            raw.data().duplicate().get(data);
+            chunks.add(new EncodedChunk(raw.chunkKey(), data, raw.blockCount(), raw.rawLength(), raw.flags()));
+            totalBlocks += raw.blockCount();
+        }
+        chunks.sort(Comparator.comparingLong(EncodedChunk::chunkKey));
+
+        ByteArrayOutputStream worldTable = new ByteArrayOutputStream();
+        for (int worldId = 0; worldId < worldNames.length; worldId++) {
+            if (worldNames[worldId] != null) {
+                byte[] name = worldNames[worldId].getBytes(StandardCharsets.UTF_8);
+                worldTable.write(worldId);
+                worldTable.write(name.length >>> 8);
+                worldTable.write(name.length);
+                worldTable.write(name);
+            }
+        }
+
+        try (FileOutputStream fileOut = new FileOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(compress ? FLAG_DEFLATE : 0);
+            out.writeInt(0);
+            out.writeLong(generation);
+            out.writeLong(totalBlocks);
+            out.writeInt(chunks.size());
+            out.writeInt(worldTable.size());
+            worldTable.writeTo(out);
+
+            long offset = HEADER_SIZE + worldTable.size() + (long) chunks.size() * CHUNK_ENTRY_SIZE;
+            long fileSize = offset;
+            for (EncodedChunk chunk : chunks) {
+                fileSize += chunk.data().length;
+            }
+            if (fileSize > MAX_FILE_SIZE) {
+                throw new IOException("Snapshot of " + totalBlocks + " blocks would be larger than 2 GB");
+            }
+            for (EncodedChunk chunk : chunks) {
+                out.writeLong(chunk.chunkKey());
+                out.writeLong(offset);
+                out.writeInt(chunk.blockCount());
+                out.writeInt(chunk.data().length);
+                out.writeInt(chunk.rawLength());
+                out.writeInt(chunk.flags());
+                offset += chunk.data().length;
+            }
+            for (EncodedChunk chunk : chunks) {
+                out.write(chunk.data());
+            }
+
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    private record EncodedChunk(long chunkKey, byte[] data, int blockCount, int rawLength, int flags) {
+    }
+
+    private static EncodedChunk encode(long chunkKey, long[] keys, long[] timestamps, int start, int end,
+                                       Deflater deflater) {
+        // Sort by in-chunk index, carrying the timestamp in the low 44 bits (valid until the year 2527).
+        // The index fills the top 20 bits, where negative Y sets the sign bit, so entries are sorted
+        // unsigned by flipping the sign bit around a signed sort; the index deltas are then never negative.
+        long[] entries = new long[end - start];
+        for (int i = start; i < end; i++) {
+            entries[i - start] = (((long) BlockKey.localIndex(keys[i]) << 44) | (timestamps[i] & ((1L << 44) - 1)))
+                    ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(entries);
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] ^= Long.MIN_VALUE;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(entries.length * 4);
+        int previousLocal = 0;
+        for (long entry : entries) {
+            int local = (int) (entry >>> 44);
+            writeVarLong(out, local - previousLocal);
+            previousLocal = local;
+        }
+        long previousTimestamp = 0;
+        for (long entry : entries) {
+            long timestamp = entry & ((1L << 44) - 1);
+            writeVarLong(out, zigzagEncode(timestamp - previousTimestamp));
+            previousTimestamp = timestamp;
+        }
+
+        byte[] raw = out.toByteArray();
+        if (deflater == null) {
+            return new EncodedChunk(chunkKey, raw, entries.length, raw.length, 0);
+        }
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] buf = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buf);
+            compressed.write(buf, 0, n);
+        }
+        return new EncodedChunk(chunkKey, compressed.toByteArray(), entries.length, raw.length, FLAG_DEFLATE);
+    }
+
+    private static ByteBuffer inflate(ByteBuffer data, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteBuffer raw = ByteBuffer.allocate(rawLength);
+            while (raw.hasRemaining() && !inflater.finished()) {
+                inflater.inflate(raw);
+            }
+            raw.flip();
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed chunk in block snapshot", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,422 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2ObjectHashMap;
+import com.boxserver.utils.LongArrayList;
+import com.boxserver.utils.WorldRegistry;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Log of the block states that existed before players first changed a block, grouped by chunk.
+ *
+ * Each chunk keeps a small palette of block state strings and a sorted array of packed entries,
+ * where an entry holds the in-chunk index in its upper 20 bits and the palette index in its
+ * lower 12 bits. An arena is mostly made of a handful of materials, so a logged block costs
+ * about four bytes. State strings are shared between chunks.
+ *
+ * Not thread-safe; all access happens on the server thread. Persistence is incremental:
+ * {@link #drainChanges()} copies only the chunks changed since the last call, and a
+ * {@link FileImage} owned by the I/O thread encodes them and writes the file from there.
+ */
+public class OriginalStateLog {
+    private static final int MAGIC = 0x4258534C; // "BXSL"
+    private static final int VERSION = 1;
+    private static final int PALETTE_BITS = 12;
+    private static final int MAX_PALETTE_SIZE = 1 << PALETTE_BITS;
+    private static final int PALETTE_MASK = MAX_PALETTE_SIZE - 1;
+
+    private final Long2ObjectHashMap<ChunkLog> chunks;
+    private final Map<String, String> stateNames;
+    // Chunks changed since the last drain; may hold duplicates and keys of removed chunks
+    private final LongArrayList changedChunks;
+    private int size;
+    // Set after a load or clear, when the next drain must replace the whole file image
+    private boolean resync;
+    private boolean cleared;
+
+    public OriginalStateLog() {
+        this.chunks = new Long2ObjectHashMap<>();
+        this.stateNames = new HashMap<>();
+        this.changedChunks = new LongArrayList();
+    }
+
+    /**
+     * Record the original state of a block, unless one is already recorded.
+     *
+     * @param state The block state string, as from {@code BlockData.getAsString()}
+     * @return true if the state was recorded
+     */
+    public boolean record(long key, String state) {
+        long chunkKey = BlockKey.chunkKeyOf(key);
+        ChunkLog chunk = chunks.get(chunkKey);
+        boolean created = chunk == null;
+        if (created) {
+            chunk = new ChunkLog();
+        }
+        int local = BlockKey.localIndex(key);
+        int slot = chunk.find(local);
+        if (slot >= 0) {
+            return false;
+        }
+
+        int paletteIndex = chunk.paletteIndex(stateNames.computeIfAbsent(state, s -> s));
+        if (paletteIndex < 0) {
+            // A chunk with thousands of distinct states is not an arena; leave it alone
+            return false;
+        }
+
+        chunk.insert(-slot - 1, (local << PALETTE_BITS) | paletteIndex);
+        if (created) {
+            chunks.put(chunkKey, chunk);
+        }
+        size++;
+        markChanged(chunkKey, chunk);
+        return true;
+    }
+
+    /**
+     * Check if a block has a recorded original state.
+     */
+    public boolean contains(long key) {
+        ChunkLog chunk = chunks.get(BlockKey.chunkKeyOf(key));
+        return chunk != null && chunk.find(BlockKey.localIndex(key)) >= 0;
+    }
+
+    /**
+     * Remove the recorded original state of a block.
+     *
+     * @return The recorded state string, or null if none was recorded
+     */
+    public String remove(long key) {
+        long chunkKey = BlockKey.chunkKeyOf(key);
+        ChunkLog chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            return null;
+        }
+
+        int slot = chunk.find(BlockKey.localIndex(key));
+        if (slot < 0) {
+            return null;
+        }
+
+        String state = chunk.palette[chunk.entries[slot] & PALETTE_MASK];
+        chunk.delete(slot);
+        size--;
+        markChanged(chunkKey, chunk);
+        if (chunk.size == 0) {
+            chunks.remove(chunkKey);
+        }
+        return state;
+    }
+
+    private void markChanged(long chunkKey, ChunkLog chunk) {
+        if (!chunk.changed) {
+            chunk.changed = true;
+            changedChunks.add(chunkKey);
+        }
+    }
+
+    /**
+     * Call the consumer with the packed key of every logged block in a chunk.
+     */
+    public void forEachInChunk(long chunkKey, LongConsumer consumer) {
+        ChunkLog chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            return;
+        }
+        for (int i = 0; i < chunk.size; i++) {
+            consumer.accept(BlockKey.fromChunk(chunkKey, chunk.entries[i] >>> PALETTE_BITS));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a rough estimate of the heap used by the log, in bytes.
+     */
+    public long estimateMemoryBytes() {
+        long[] bytes = new long[1];
+        chunks.forEach((chunkKey, chunk) -> bytes[0] += 48 + 4L * chunk.entries.length + 4L * chunk.palette.length);
+        return bytes[0] + 12L * chunks.capacity();
+    }
+
+    /**
+     * Check if the log changed since it was last loaded or drained.
+     */
+    public boolean isDirty() {
+        return cleared || !changedChunks.isEmpty();
+    }
+
+    public void clear() {
+        chunks.clear();
+        stateNames.clear();
+        changedChunks.clear();
+        size = 0;
+        resync = true;
+        cleared = true;
+    }
+
+    /**
+     * Copy the chunks changed since the last call, for a {@link FileImage} to apply on the I/O
+     * thread. Costs time in the number and size of changed chunks only, except for the first
+     * call after a load or clear, which copies every chunk.
+     */
+    public Changes drainChanges() {
+        boolean full = resync;
+        List<ChunkCopy> copies = new ArrayList<>();
+        LongArrayList removed = new LongArrayList();
+        if (full) {
+            chunks.forEach((chunkKey, chunk) -> {
+                chunk.changed = false;
+                copies.add(copyOf(chunkKey, chunk));
+            });
+        } else {
+            for (int i = 0; i < changedChunks.size(); i++) {
+                long chunkKey = changedChunks.get(i);
+                ChunkLog chunk = chunks.get(chunkKey);
+                if (chunk == null) {
+                    removed.add(chunkKey);
+                } else if (chunk.changed) {
+                    chunk.changed = false;
+                    copies.add(copyOf(chunkKey, chunk));
+                }
+            }
+        }
+        changedChunks.clear();
+        resync = false;
+        cleared = false;
+        return new Changes(full, copies, removed.toArray());
+    }
+
+    private static ChunkCopy copyOf(long chunkKey, ChunkLog chunk) {
+        return new ChunkCopy(chunkKey, WorldRegistry.nameOf(BlockKey.chunkWorldId(chunkKey)),
+                Arrays.copyOf(chunk.palette, chunk.paletteSize), Arrays.copyOf(chunk.entries, chunk.size));
+    }
+
+    /**
+     * Replace the contents of the log with a file written by a {@link FileImage}.
+     * Does nothing if the file does not exist.
+     */
+    public void load(File file) throws IOException {
+        chunks.clear();
+        stateNames.clear();
+        changedChunks.clear();
+        size = 0;
+        // The I/O thread's image does not know the loaded chunks yet
+        resync = true;
+        cleared = false;
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown original state log format: " + file.getName());
+            }
+
+            int[] worldMap = new int[BlockKey.MAX_WORLDS];
+            Arrays.fill(worldMap, -1);
+            int worldCount = in.readUnsignedByte();
+            for (int i = 0; i < worldCount; i++) {
+                worldMap[in.readUnsignedByte()] = WorldRegistry.idOf(in.readUTF());
+            }
+
+            int chunkCount = in.readInt();
+            for (int c = 0; c < chunkCount; c++) {
+                long storedKey = in.readLong();
+                ChunkLog chunk = new ChunkLog();
+                int paletteSize = in.readUnsignedShort();
+                for (int i = 0; i < paletteSize; i++) {
+                    chunk.paletteIndex(stateNames.computeIfAbsent(in.readUTF(), s -> s));
+                }
+                chunk.size = in.readInt();
+                chunk.entries = new int[Math.max(4, chunk.size)];
+                for (int i = 0; i < chunk.size; i++) {
+                    chunk.entries[i] = in.readInt();
+                }
+
+                int worldId = worldMap[BlockKey.chunkWorldId(storedKey)];
+                if (worldId >= 0 && chunk.size > 0) {
+                    chunks.put(BlockKey.chunkKey(worldId, BlockKey.chunkX(storedKey), BlockKey.chunkZ(storedKey)), chunk);
+                    size += chunk.size;
+                }
+            }
+        }
+    }
+
+    /**
+     * Chunks changed since the previous drain.
+     *
+     * @param full Whether the copies replace the whole log rather than update it
+     * @param removed Keys of chunks that no longer have any entries
+     */
+    public record Changes(boolean full, List<ChunkCopy> chunks, long[] removed) {
+    }
+
+    /**
+     * Copy of one chunk's palette and entries, safe to hand to another thread.
+     */
+    public record ChunkCopy(long chunkKey, String worldName, String[] palette, int[] entries) {
+    }
+
+    /**
+     * The encoded contents of the log file, kept by the I/O thread between writes so that only
+     * changed chunks are encoded again. Only used from one thread at a time.
+     */
+    public static final class FileImage {
+        private final Long2ObjectHashMap<EncodedChunk> chunks = new Long2ObjectHashMap<>();
+
+        /**
+         * Encode the chunks in a set of changes and drop the removed ones.
+         */
+        public void apply(Changes changes) {
+            if (changes.full()) {
+                chunks.clear();
+            }
+            for (long chunkKey : changes.removed()) {
+                chunks.remove(chunkKey);
+            }
+            for (ChunkCopy copy : changes.chunks()) {
+                chunks.put(copy.chunkKey(), new EncodedChunk(copy.worldName(), encode(copy)));
+            }
+        }
+
+        private static byte[] encode(ChunkCopy copy) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + copy.entries().length * 4);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeLong(copy.chunkKey());
+                out.writeShort(copy.palette().length);
+                for (String state : copy.palette()) {
+                    out.writeUTF(state);
+                }
+                out.writeInt(copy.entries().length);
+                for (int entry : copy.entries()) {
+                    out.writeInt(entry);
+                }
+            } catch (IOException e) {
+                // Writing to an in-memory stream cannot fail
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Assemble the file from the encoded chunks.
+         */
+        public byte[] toBytes() {
+            int[] length = {64};
+            chunks.forEach((chunkKey, chunk) -> length[0] += chunk.bytes().length);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(length[0]);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                // World ids are only stable within one server process, so store the names
+                String[] worlds = new String[BlockKey.MAX_WORLDS];
+                chunks.forEach((chunkKey, chunk) -> worlds[BlockKey.chunkWorldId(chunkKey)] = chunk.worldName());
+                int worldCount = 0;
+                for (String name : worlds) {
+                    worldCount += name != null ? 1 : 0;
+                }
+                out.writeByte(worldCount);
+                for (int worldId = 0; worldId < worlds.length; worldId++) {
+                    if (worlds[worldId] != null) {
+                        out.writeByte(worldId);
+                        out.writeUTF(worlds[worldId]);
+                    }
+                }
+
+                out.writeInt(chunks.size());
+                for (long chunkKey : chunks.keysToArray()) {
+                    out.write(chunks.get(chunkKey).bytes());
+                }
+            } catch (IOException e) {
+                // Writing to an in-memory stream cannot fail
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private record EncodedChunk(String worldName, byte[] bytes) {
+        }
+    }
+
+    /**
+     * Palette and sorted entries of one chunk.
+     */
+    private static final class ChunkLog {
+        private String[] palette = new String[4];
+        private int paletteSize;
+        private int[] entries = new int[16];
+        private int size;
+        // Whether the chunk is in changedChunks since the last drain
+        private boolean changed;
+
+        /**
+         * Binary search for an in-chunk index.
+         *
+         * @return The slot of the entry, or (-(insertion point) - 1) if absent
+         */
+        private int find(int local) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midLocal = entries[mid] >>> PALETTE_BITS;
+                if (midLocal < local) {
+                    low = mid + 1;
+                } else if (midLocal > local) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Get the palette index of a state, adding it if needed.
+         *
+         * @return The palette index, or -1 if the palette is full
+         */
+        private int paletteIndex(String state) {
+            for (int i = 0; i < paletteSize; i++) {
+                // States are interned, so identity is enough
+                if (palette[i] == state) {
+                    return i;
+                }
+            }
+            if (paletteSize == MAX_PALETTE_SIZE) {
+                return -1;
+            }
+            if (paletteSize == palette.length) {
+                palette = Arrays.copyOf(palette, palette.length * 2);
+            }
+            palette[paletteSize] = state;
+            return paletteSize++;
+        }
+
+        private void insert(int slot, int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            System.arraycopy(entries, slot, entries, slot + 1, size - slot);
+            entries[slot] = entry;
+            size++;
+        }
+
+        private void delete(int slot) {
+            System.arraycopy(entries, slot + 1, entries, slot, size - slot - 1);
+            size--;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.boxserver.utils;
+
+/**
+ * Packs a world id and block coordinates into a single long.
+ *
+ * Layout (high to low bits): world id (6), chunk X (19), chunk Z (19), Y (12), local Z (4), local X (4).
+ * Keys sort by world, then chunk, then position inside the chunk, and the chunk key is a plain shift.
+ * This covers block X/Z within +/-4,194,304 and Y within -2048..2047.
+ * World id 63 is reserved so that {@link #INVALID} never collides with a real key.
+ */
+public final class BlockKey {
+    public static final long INVALID = -1L;
+    public static final int MAX_WORLDS = (1 << 6) - 1;
+    public static final int MIN_COORD = -(1 << 22);
+    public static final int MAX_COORD = (1 << 22) - 1;
+    public static final int MIN_Y = -(1 << 11);
+    public static final int MAX_Y = (1 << 11) - 1;
+
+    private static final int CHUNK_SHIFT = 20;
+    private static final long CHUNK_COORD_MASK = (1L << 19) - 1;
+
+    private BlockKey() {
+    }
+
+    /**
+     * Check if coordinates can be represented in a packed key.
+     */
+    public static boolean isPackable(int worldId, int x, int y, int z) {
+        return worldId >= 0 && worldId < MAX_WORLDS
+                && x >= MIN_COORD && x <= MAX_COORD
+                && z >= MIN_COORD && z <= MAX_COORD
+                && y >= MIN_Y && y <= MAX_Y;
+    }
+
+    /**
+     * Pack block coordinates into a key. Callers must check {@link #isPackable} first.
+     */
+    public static long pack(int worldId, int x, int y, int z) {
+        return (chunkKey(worldId, x >> 4, z >> 4) << CHUNK_SHIFT)
+                | ((long) (y & 0xFFF) << 8)
+                | ((z & 0xF) << 4)
+                | (x & 0xF);
+    }
+
+    /**
+     * Pack chunk coordinates into a chunk key.
+     */
+    public static long chunkKey(int worldId, int chunkX, int chunkZ) {
+        return ((long) worldId << 38)
+                | ((chunkX & CHUNK_COORD_MASK) << 19)
+                | (chunkZ & CHUNK_COORD_MASK);
+    }
+
+    /**
+     * Get the chunk key of a packed block key.
+     */
+    public static long chunkKeyOf(long key) {
+        return key >>> CHUNK_SHIFT;
+    }
+
+    /**
+     * Get a key identifying the 16x16x16 chunk section of a packed block key.
+     * Keys of the same section sort next to each other.
+     */
+    public static long sectionKeyOf(long key) {
+        return key >>> 12;
+    }
+
+    /**
+     * Get the position of a packed block inside its chunk (Y, local Z, local X).
+     */
+    public static int localIndex(long key) {
+        return (int) (key & ((1L << CHUNK_SHIFT) - 1));
+    }
+
+    /**
+     * Rebuild a block key from a chunk key and an in-chunk index.
+     */
+    public static long fromChunk(long chunkKey, int localIndex) {
+        return (chunkKey << CHUNK_SHIFT) | localIndex;
+    }
+
+    /**
+     * Replace the world id of a packed block key.
+     */
+    public static long withWorldId(long key, int worldId) {
+        return (key & ~(0x3FL << 58)) | ((long) worldId << 58);
+    }
+
+    public static int worldId(long key) {
+        return (int) (key >>> 58);
+    }
+
+    public static int x(long key) {
+        return (chunkX(chunkKeyOf(key)) << 4) | (int) (key & 0xF);
+    }
+
+    public static int y(long key) {
+        return ((int) (key >>> 8) << 20) >> 20;
+    }
+
+    public static int z(long key) {
+        return (chunkZ(chunkKeyOf(key)) << 4) | (int) ((key >>> 4) & 0xF);
+    }
+
+    public static int chunkWorldId(long chunkKey) {
+        return (int) (chunkKey >>> 38);
+    }
+
+    public static int chunkX(long chunkKey) {
+        return ((int) (chunkKey >>> 19) << 13) >> 13;
+    }
+
+    public static int chunkZ(long chunkKey) {
+        return ((int) chunkKey << 13) >> 13;
+    }
+}
@@ -0,0 +1,44 @@
+package com.boxserver.utils;
+
+/**
+ * Messages sent to a player when an action is denied, which can repeat many times a second
+ * while a button is held. Each has a key under messages: and message-limits.windows: in config.yml.
+ */
+public enum DenialMessage {
+    NO_BREAK("no-break"),
+    NO_PLACE("no-place"),
+    NO_WATER("no-water"),
+    NO_PVP("no-pvp"),
+    NO_WINDCHARGE("no-windcharge"),
+    TOO_HIGH("too-high"),
+    NO_PEARL("no-pearl");
+
+    private static final DenialMessage[] VALUES = values();
+
+    private final String key;
+
+    DenialMessage(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Get the config key of this message.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Get the number of denial messages, for arrays indexed by ordinal.
+     */
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /**
+     * Get all denial messages without copying the values array.
+     */
+    public static DenialMessage[] all() {
+        return VALUES;
+    }
+}
@@ -0,0 +1,39 @@
+package com.boxserver.utils;
+
+/**
+ * Shared helpers for the primitive hash collections.
+ */
+public final class HashUtil {
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private HashUtil() {
+    }
+
+    /**
+     * Spread the bits of a long key so that packed coordinates distribute evenly.
+     */
+    public static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+
+    /**
+     * Spread the bits of an int key.
+     */
+    public static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Get a power-of-two table size able to hold the expected number of entries.
+     */
+    public static int tableSizeFor(int expectedSize, float loadFactor) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 2) / loadFactor);
+        if (needed >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Math.max(4, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+}
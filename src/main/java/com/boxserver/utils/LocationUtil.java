@@ -32,6 +32,30 @@ public class LocationUtil {
         return locationToKey(block.getLocation());
     }
 
+    /**
+     * Pack a block into a primitive key for tracker storage.
+     *
+     * @return The packed key, or {@link BlockKey#INVALID} if the block cannot be packed
+     */
+    public static long packBlock(Block block) {
+        if (block == null) {
+            return BlockKey.INVALID;
+        }
+        return packBlock(WorldRegistry.idOf(block.getWorld()), block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Pack block coordinates in a {@link WorldRegistry} world into a primitive key.
+     *
+     * @return The packed key, or {@link BlockKey#INVALID} if the coordinates cannot be packed
+     */
+    public static long packBlock(int worldId, int x, int y, int z) {
+        if (!BlockKey.isPackable(worldId, x, y, z)) {
+            return BlockKey.INVALID;
+        }
+        return BlockKey.pack(worldId, x, y, z);
+    }
+
     /**
      * Get a formatted string representation of a location.
      */
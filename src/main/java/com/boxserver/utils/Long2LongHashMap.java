@@ -0,0 +1,256 @@
+package com.boxserver.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to primitive long values.
+ * Uses linear probing with backward-shift deletion, so lookups and updates never box.
+ * Not thread-safe.
+ */
+public class Long2LongHashMap {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    // Key 0 is the empty-slot marker, so it is stored out of band
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * Callback for iterating over map entries.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    public Long2LongHashMap() {
+        this(16);
+    }
+
+    public Long2LongHashMap(int expectedSize) {
+        int capacity = HashUtil.tableSizeFor(expectedSize, LOAD_FACTOR);
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Check if the map contains a key.
+     */
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        int slot = HashUtil.mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Get the value for a key, or the given default if absent.
+     */
+    public long get(long key, long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = HashUtil.mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Insert or replace a mapping.
+     *
+     * @return true if the key was not present before
+     */
+    public boolean put(long key, long value) {
+        if (key == 0) {
+            boolean added = !hasZeroKey;
+            if (added) {
+                size++;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            return added;
+        }
+        int slot = HashUtil.mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                values[slot] = value;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return true;
+        }
+        int slot = HashUtil.mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                shiftKeys(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Close the gap left by a removed slot so probe chains stay intact.
+     */
+    private void shiftKeys(int slot) {
+        int last;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & mask;
+            long current;
+            while (true) {
+                if ((current = keys[slot]) == 0) {
+                    keys[last] = 0;
+                    values[last] = 0;
+                    return;
+                }
+                int home = HashUtil.mix(current) & mask;
+                if (last <= slot ? last >= home || home > slot : last >= home && home > slot) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[last] = current;
+            values[last] = values[slot];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = HashUtil.mix(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Visit every entry. The map must not be modified during iteration.
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroValue);
+        }
+        long[] k = keys;
+        long[] v = values;
+        for (int i = 0; i < k.length; i++) {
+            if (k[i] != 0) {
+                consumer.accept(k[i], v[i]);
+            }
+        }
+    }
+
+    /**
+     * Copy all keys into a new array.
+     */
+    public long[] keysToArray() {
+        long[] result = new long[size];
+        int index = 0;
+        if (hasZeroKey) {
+            result[index++] = 0;
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                result[index++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create an independent copy of this map.
+     */
+    public Long2LongHashMap copy() {
+        Long2LongHashMap copy = new Long2LongHashMap();
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.mask = mask;
+        copy.size = size;
+        copy.resizeThreshold = resizeThreshold;
+        copy.hasZeroKey = hasZeroKey;
+        copy.zeroValue = zeroValue;
+        return copy;
+    }
+
+    /**
+     * Get the number of slots in the backing table.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        hasZeroKey = false;
+        zeroValue = 0;
+        size = 0;
+    }
+}
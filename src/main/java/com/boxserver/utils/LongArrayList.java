@@ -0,0 +1,68 @@
+package com.boxserver.utils;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive longs.
+ * Not thread-safe.
+ */
+public class LongArrayList {
+    private long[] elements;
+    private int size;
+
+    public LongArrayList() {
+        this(16);
+    }
+
+    public LongArrayList(int initialCapacity) {
+        this.elements = new long[Math.max(1, initialCapacity)];
+    }
+
+    public void add(long value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length << 1);
+        }
+        elements[size++] = value;
+    }
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copy the elements into a new array.
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Copy the elements into a new array, sorted ascending with duplicates removed.
+     */
+    public long[] toSortedUniqueArray() {
+        long[] sorted = toArray();
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[unique - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+    }
+}
@@ -0,0 +1,51 @@
+package com.boxserver.utils;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextReplacementConfig;
+import org.bukkit.command.CommandSender;
+
+/**
+ * A message parsed once from its & color code form, with placeholders such as %time% that
+ * are filled in when it is sent. Filling a placeholder keeps the formatting around it.
+ * An empty message renders as null, which {@link MessageUtil#send(CommandSender, Component)} skips.
+ */
+public final class MessageTemplate {
+    private final Component component;
+
+    private MessageTemplate(Component component) {
+        this.component = component;
+    }
+
+    /**
+     * Parse a message with & color codes.
+     */
+    public static MessageTemplate parse(String message) {
+        return new MessageTemplate(message == null || message.isEmpty() ? null : MessageUtil.colorize(message));
+    }
+
+    /**
+     * Get the message with its placeholders left as they are.
+     */
+    public Component getComponent() {
+        return component;
+    }
+
+    /**
+     * Get the message with placeholders replaced.
+     *
+     * @param replacements Alternating placeholders and their values
+     */
+    public Component render(String... replacements) {
+        Component result = component;
+        if (result == null) {
+            return null;
+        }
+        for (int i = 0; i + 1 < replacements.length; i += 2) {
+            result = result.replaceText(TextReplacementConfig.builder()
+                    .matchLiteral(replacements[i])
+                    .replacement(replacements[i + 1])
+                    .build());
+        }
+        return result;
+    }
+}
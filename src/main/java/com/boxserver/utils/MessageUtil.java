@@ -22,6 +22,16 @@ public class MessageUtil {
         sender.sendMessage(component);
     }
 
+    /**
+     * Send an already parsed message to a command sender. Null messages are skipped.
+     */
+    public static void send(CommandSender sender, Component message) {
+        if (sender == null || message == null) {
+            return;
+        }
+        sender.sendMessage(message);
+    }
+
     /**
      * Convert a message with & color codes to a Component.
      */
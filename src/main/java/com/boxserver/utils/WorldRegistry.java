@@ -0,0 +1,119 @@
+package com.boxserver.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns world names to small integer ids for packed block keys.
+ * Ids are stable for the lifetime of the server process, and double as cheap world handles
+ * for the int-coordinate query methods on regions, the region manager and the block tracker.
+ */
+public final class WorldRegistry {
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final Map<UUID, Integer> uuidIds = new ConcurrentHashMap<>();
+    private static final String[] names = new String[BlockKey.MAX_WORLDS];
+    private static final UUID[] uuids = new UUID[BlockKey.MAX_WORLDS];
+    private static int nextId = 0;
+
+    private WorldRegistry() {
+    }
+
+    /**
+     * Get the id of a world, interning it if needed.
+     *
+     * @return The world id, or -1 if the world is null or no ids are left
+     */
+    public static int idOf(World world) {
+        if (world == null) {
+            return -1;
+        }
+        int id = idOf(world.getName());
+        if (id >= 0 && uuids[id] == null) {
+            uuids[id] = world.getUID();
+            uuidIds.put(world.getUID(), id);
+        }
+        return id;
+    }
+
+    /**
+     * Get the id of a world by its UUID, interning it if the world is loaded.
+     *
+     * @return The world id, or -1 if the world has not been seen and is not loaded
+     */
+    public static int idOf(UUID worldUid) {
+        Integer id = uuidIds.get(worldUid);
+        if (id != null) {
+            return id;
+        }
+        return idOf(Bukkit.getWorld(worldUid));
+    }
+
+    /**
+     * Get the id of a world name, interning it if needed.
+     *
+     * @return The world id, or -1 if no ids are left
+     */
+    public static int idOf(String worldName) {
+        Integer id = ids.get(worldName);
+        if (id != null) {
+            return id;
+        }
+        return intern(worldName);
+    }
+
+    private static synchronized int intern(String worldName) {
+        Integer id = ids.get(worldName);
+        if (id != null) {
+            return id;
+        }
+        if (nextId >= names.length) {
+            return -1;
+        }
+        int newId = nextId++;
+        names[newId] = worldName;
+        ids.put(worldName, newId);
+        return newId;
+    }
+
+    /**
+     * Get the world name for an id.
+     */
+    public static String nameOf(int id) {
+        if (id < 0 || id >= names.length) {
+            return null;
+        }
+        return names[id];
+    }
+
+    /**
+     * Get the UUID of the world for an id.
+     *
+     * @return The UUID, or null if the world has never been loaded under this id
+     */
+    public static UUID uuidOf(int id) {
+        if (id < 0 || id >= uuids.length) {
+            return null;
+        }
+        UUID uid = uuids[id];
+        if (uid == null) {
+            World world = worldOf(id);
+            if (world != null) {
+                idOf(world);
+                uid = world.getUID();
+            }
+        }
+        return uid;
+    }
+
+    /**
+     * Get the loaded world for an id.
+     */
+    public static World worldOf(int id) {
+        String name = nameOf(id);
+        return name != null ? Bukkit.getWorld(name) : null;
+    }
+}
@@ -0,0 +1,130 @@
+package com.boxserver.managers;
+
+import com.boxserver.models.CuboidUnionShape;
+import com.boxserver.models.PolygonShape;
+import com.boxserver.models.Region;
+import com.boxserver.models.RegionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledRegionTableTest {
+    private static final UUID WORLD = new UUID(1, 1);
+
+    @Test
+    void resolvesStackedRegionsByPriority() {
+        Region floor = region("floor", -20, -64, -20, 20, 0, 20, 0);
+        Region tower = region("tower", -5, -30, -5, 5, 300, 5, 3);
+        CompiledRegionTable table = compile(List.of(floor, tower));
+        assertSame(floor, table.getRegionAt(-20, -64, -20));
+        assertSame(tower, table.getRegionAt(0, -30, 0));
+        assertSame(floor, table.getRegionAt(0, -31, 0));
+        assertSame(tower, table.getRegionAt(5, 300, 5));
+        assertNull(table.getRegionAt(10, 1, 10));
+        assertTrue(table.covers(20, 300, 20));
+        assertFalse(table.covers(21, 0, 0));
+        assertEquals(41 * 41, table.getColumnCount());
+    }
+
+    @Test
+    void randomRegionsMatchReference() {
+        Random random = new Random(31);
+        for (int n = 0; n < 30; n++) {
+            List<Region> regions = new ArrayList<>();
+            int count = 1 + random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                regions.add(randomRegion(random, "r" + i));
+            }
+            CompiledRegionTable table = compile(regions);
+
+            List<Region> sorted = new ArrayList<>(regions);
+            sorted.sort((a, b) -> a.getPriority() != b.getPriority()
+                    ? Integer.compare(b.getPriority(), a.getPriority())
+                    : String.CASE_INSENSITIVE_ORDER.compare(a.getName(), b.getName()));
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            for (Region region : regions) {
+                minX = Math.min(minX, region.getMinX());
+                minY = Math.min(minY, region.getMinY());
+                minZ = Math.min(minZ, region.getMinZ());
+                maxX = Math.max(maxX, region.getMaxX());
+                maxY = Math.max(maxY, region.getMaxY());
+                maxZ = Math.max(maxZ, region.getMaxZ());
+            }
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        Region expected = null;
+                        for (Region region : sorted) {
+                            if (region.contains(x, y, z)) {
+                                expected = region;
+                                break;
+                            }
+                        }
+                        assertSame(expected, table.getRegionAt(x, y, z), "block " + x + ", " + y + ", " + z);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void refusesEmptyAndOversizedInput() {
+        assertNull(CompiledRegionTable.prepare(List.of(), 1_000_000));
+        Region big = region("big", 0, 0, 0, 999, 10, 999, 0);
+        assertNull(CompiledRegionTable.prepare(List.of(big), 999_999));
+        assertEquals(1_000_000, CompiledRegionTable.prepare(List.of(big), 1_000_000).compile().getColumnCount());
+        Region tall = region("tall", 0, -20_000, 0, 0, 20_000, 0, 0);
+        assertNull(CompiledRegionTable.prepare(List.of(tall), 1_000_000));
+    }
+
+    private static Region randomRegion(Random random, String name) {
+        int x = random.nextInt(40) - 20;
+        int y = random.nextInt(40) - 70;
+        int z = random.nextInt(40) - 20;
+        Region region;
+        switch (random.nextInt(3)) {
+            case 0 -> {
+                int[] xs = new int[3 + random.nextInt(4)];
+                int[] zs = new int[xs.length];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = x + random.nextInt(24);
+                    zs[i] = z + random.nextInt(24);
+                }
+                region = new Region(name, WORLD, RegionType.PVP, new PolygonShape(xs, zs, y, y + random.nextInt(30)));
+            }
+            case 1 -> {
+                List<int[]> cuboids = new ArrayList<>();
+                for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                    int cx = x + random.nextInt(20), cy = y + random.nextInt(20), cz = z + random.nextInt(20);
+                    cuboids.add(new int[]{cx, cy, cz, cx + random.nextInt(8), cy + random.nextInt(8), cz + random.nextInt(8)});
+                }
+                region = new Region(name, WORLD, RegionType.PVP, new CuboidUnionShape(cuboids));
+            }
+            default -> region = new Region(name, WORLD, RegionType.PVP, x, y, z,
+                    x + random.nextInt(24), y + random.nextInt(30), z + random.nextInt(24));
+        }
+        region.setPriority(random.nextInt(3));
+        return region;
+    }
+
+    private static CompiledRegionTable compile(List<Region> regions) {
+        return CompiledRegionTable.prepare(regions, 1_000_000).compile();
+    }
+
+    private static Region region(String name, int x1, int y1, int z1, int x2, int y2, int z2, int priority) {
+        Region region = new Region(name, WORLD, RegionType.PVP, x1, y1, z1, x2, y2, z2);
+        region.setPriority(priority);
+        return region;
+    }
+}
@@ -0,0 +1,149 @@
+package com.boxserver.managers;
+
+import com.boxserver.models.PolygonShape;
+import com.boxserver.models.Region;
+import com.boxserver.models.RegionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionIndexTest {
+    private static final UUID WORLD = new UUID(1, 1);
+    private static final UUID OTHER_WORLD = new UUID(2, 2);
+    private static final Comparator<Region> PRIORITY_ORDER = Comparator.comparingInt(Region::getPriority).reversed()
+            .thenComparing(Region::getName, String.CASE_INSENSITIVE_ORDER);
+
+    @Test
+    void highestPriorityWins() {
+        Region outer = region("outer", WORLD, 0, -64, 0, 100, 320, 100, 0);
+        Region inner = region("inner", WORLD, 40, 0, 40, 60, 100, 60, 5);
+        RegionIndex index = RegionIndex.build(List.of(outer, inner));
+        assertSame(inner, index.getRegionAt(WORLD, 50, 50, 50));
+        assertSame(outer, index.getRegionAt(WORLD, 50, -10, 50));
+        assertSame(outer, index.getRegionAt(WORLD, 0, 0, 0));
+        assertNull(index.getRegionAt(WORLD, -1, 0, 0));
+        assertNull(index.getRegionAt(OTHER_WORLD, 50, 50, 50));
+        assertEquals(List.of(inner, outer), index.getRegionsAt(WORLD, 50, 50, 50));
+    }
+
+    @Test
+    void namesBreakPriorityTies() {
+        Region b = region("B", WORLD, 0, 0, 0, 10, 10, 10, 1);
+        Region a = region("a", WORLD, 0, 0, 0, 10, 10, 10, 1);
+        assertSame(a, RegionIndex.build(List.of(b, a)).getRegionAt(WORLD, 5, 5, 5));
+        assertSame(a, RegionIndex.build(List.of(a, b)).getRegionAt(WORLD, 5, 5, 5));
+    }
+
+    @Test
+    void largeRegionsOutrankIndexedOnesByPriority() {
+        // Over 65536 chunk columns, so it is kept out of the cells
+        Region huge = region("huge", WORLD, -3000, -64, -3000, 3000, 320, 3000, 10);
+        Region small = region("small", WORLD, 0, 0, 0, 20, 20, 20, 1);
+        Region top = region("top", WORLD, 5, 5, 5, 6, 6, 6, 20);
+        RegionIndex index = RegionIndex.build(List.of(huge, small, top));
+        assertSame(huge, index.getRegionAt(WORLD, 10, 10, 10));
+        assertSame(top, index.getRegionAt(WORLD, 5, 5, 5));
+        assertSame(huge, index.getRegionAt(WORLD, -2999, 0, 2999));
+        assertEquals(List.of(top, huge, small), index.getRegionsAt(WORLD, 5, 5, 5));
+    }
+
+    @Test
+    void randomRegionsMatchReference() {
+        Random random = new Random(21);
+        for (int n = 0; n < 20; n++) {
+            List<Region> regions = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                UUID world = random.nextInt(4) == 0 ? OTHER_WORLD : WORLD;
+                int x = random.nextInt(200) - 100;
+                int y = random.nextInt(100) - 64;
+                int z = random.nextInt(200) - 100;
+                if (random.nextInt(3) == 0) {
+                    // A thin diagonal polygon that misses most chunk columns of its bounding box
+                    int length = 20 + random.nextInt(60);
+                    PolygonShape shape = new PolygonShape(new int[]{x, x + 2, x + length + 2, x + length},
+                            new int[]{z, z, z + length, z + length}, y, y + random.nextInt(50));
+                    Region region = new Region("r" + i, world, RegionType.PVP, shape);
+                    region.setPriority(random.nextInt(4));
+                    regions.add(region);
+                } else {
+                    regions.add(region("r" + i, world, x, y, z, x + random.nextInt(60), y + random.nextInt(60),
+                            z + random.nextInt(60), random.nextInt(4)));
+                }
+            }
+            RegionIndex index = RegionIndex.build(regions);
+
+            for (int i = 0; i < 5000; i++) {
+                UUID world = random.nextInt(4) == 0 ? OTHER_WORLD : WORLD;
+                int x = random.nextInt(260) - 120;
+                int y = random.nextInt(180) - 70;
+                int z = random.nextInt(260) - 120;
+                List<Region> expected = containing(regions, world, x, y, z);
+                assertEquals(expected, index.getRegionsAt(world, x, y, z));
+                assertSame(expected.isEmpty() ? null : expected.get(0), index.getRegionAt(world, x, y, z));
+            }
+
+            for (int i = 0; i < 500; i++) {
+                int minX = random.nextInt(260) - 120, minY = random.nextInt(180) - 70, minZ = random.nextInt(260) - 120;
+                int maxX = minX + random.nextInt(random.nextBoolean() ? 8 : 200);
+                int maxY = minY + random.nextInt(40);
+                int maxZ = minZ + random.nextInt(random.nextBoolean() ? 8 : 200);
+                List<Region> expected = new ArrayList<>();
+                for (Region region : regions) {
+                    if (region.getWorldId().equals(WORLD) && region.intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+                        expected.add(region);
+                    }
+                }
+                expected.sort(PRIORITY_ORDER);
+                List<Region> actual = index.getRegionsIntersecting(WORLD, minX, minY, minZ, maxX, maxY, maxZ);
+                actual.sort(PRIORITY_ORDER);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    void uniformBoxesResolveToOneRegion() {
+        Region outer = region("outer", WORLD, 0, 0, 0, 100, 100, 100, 0);
+        Region inner = region("inner", WORLD, 40, 40, 40, 60, 60, 60, 5);
+        List<Region> candidates = List.of(inner, outer);
+        assertSame(inner, RegionIndex.topRegionIfUniform(candidates, 41, 41, 41, 59, 59, 59));
+        assertSame(outer, RegionIndex.topRegionIfUniform(candidates, 0, 0, 0, 10, 10, 10));
+        assertSame(RegionIndex.MIXED, RegionIndex.topRegionIfUniform(candidates, 30, 30, 30, 50, 50, 50));
+        assertSame(RegionIndex.MIXED, RegionIndex.topRegionIfUniform(candidates, 90, 90, 90, 110, 110, 110));
+        assertNull(RegionIndex.topRegionIfUniform(candidates, 200, 200, 200, 210, 210, 210));
+    }
+
+    @Test
+    void emptyIndexFindsNothing() {
+        RegionIndex index = RegionIndex.build(List.of());
+        assertNull(index.getRegionAt(WORLD, 0, 0, 0));
+        assertTrue(index.getRegionsAt(WORLD, 0, 0, 0).isEmpty());
+        assertTrue(index.getRegionsIntersecting(WORLD, 0, 0, 0, 100, 100, 100).isEmpty());
+    }
+
+    private static List<Region> containing(List<Region> regions, UUID world, int x, int y, int z) {
+        List<Region> result = new ArrayList<>();
+        for (Region region : regions) {
+            if (region.getWorldId().equals(world) && region.contains(x, y, z)) {
+                result.add(region);
+            }
+        }
+        result.sort(PRIORITY_ORDER);
+        return result;
+    }
+
+    private static Region region(String name, UUID world, int x1, int y1, int z1, int x2, int y2, int z2, int priority) {
+        Region region = new Region(name, world, RegionType.PVP, x1, y1, z1, x2, y2, z2);
+        region.setPriority(priority);
+        return region;
+    }
+}
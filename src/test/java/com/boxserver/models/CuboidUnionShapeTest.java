@@ -0,0 +1,103 @@
+package com.boxserver.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CuboidUnionShapeTest {
+
+    @Test
+    void normalizesCornersAndBounds() {
+        CuboidUnionShape shape = new CuboidUnionShape(List.of(
+                new int[]{10, 5, 10, 0, -5, 0},
+                new int[]{20, 0, 20, 30, 50, 25}));
+        assertEquals(0, shape.getMinX());
+        assertEquals(-5, shape.getMinY());
+        assertEquals(0, shape.getMinZ());
+        assertEquals(30, shape.getMaxX());
+        assertEquals(50, shape.getMaxY());
+        assertEquals(25, shape.getMaxZ());
+        assertTrue(shape.contains(0, -5, 0));
+        assertTrue(shape.contains(10, 5, 10));
+        assertFalse(shape.contains(15, 0, 15));
+        assertTrue(shape.contains(30, 50, 25));
+    }
+
+    @Test
+    void randomUnionsMatchTheirCuboids() {
+        Random random = new Random(11);
+        for (int n = 0; n < 100; n++) {
+            List<int[]> cuboids = new ArrayList<>();
+            for (int i = 1 + random.nextInt(5); i > 0; i--) {
+                cuboids.add(new int[]{random.nextInt(30) - 15, random.nextInt(30) - 15, random.nextInt(30) - 15,
+                        random.nextInt(30) - 15, random.nextInt(30) - 15, random.nextInt(30) - 15});
+            }
+            CuboidUnionShape shape = new CuboidUnionShape(cuboids);
+
+            int[] spans = new int[2 * shape.getMaxColumnSpans()];
+            for (int x = -17; x <= 17; x++) {
+                for (int z = -17; z <= 17; z++) {
+                    int spanCount = shape.getColumnSpans(x, z, spans);
+                    for (int y = -17; y <= 17; y++) {
+                        boolean expected = reference(cuboids, x, y, z);
+                        assertEquals(expected, shape.contains(x, y, z), "block " + x + ", " + y + ", " + z);
+                        assertEquals(expected, inSpans(spans, spanCount, y), "spans at " + x + ", " + y + ", " + z);
+                    }
+                }
+            }
+
+            for (int i = 0; i < 200; i++) {
+                int minX = random.nextInt(34) - 17, minY = random.nextInt(34) - 17, minZ = random.nextInt(34) - 17;
+                int maxX = minX + random.nextInt(6), maxY = minY + random.nextInt(6), maxZ = minZ + random.nextInt(6);
+                boolean any = false;
+                boolean all = true;
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        for (int z = minZ; z <= maxZ; z++) {
+                            boolean inside = reference(cuboids, x, y, z);
+                            any |= inside;
+                            all &= inside;
+                        }
+                    }
+                }
+                assertEquals(any, shape.intersects(minX, minY, minZ, maxX, maxY, maxZ));
+                // Covering may be under-reported for boxes spanning several cuboids, never over-reported
+                if (shape.covers(minX, minY, minZ, maxX, maxY, maxZ)) {
+                    assertTrue(all, "box reported as covered but is not");
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyUnion() {
+        assertThrows(IllegalArgumentException.class, () -> new CuboidUnionShape(List.of()));
+    }
+
+    private static boolean inSpans(int[] spans, int spanCount, int y) {
+        for (int i = 0; i < spanCount; i++) {
+            if (y >= spans[i * 2] && y <= spans[i * 2 + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean reference(List<int[]> cuboids, int x, int y, int z) {
+        for (int[] c : cuboids) {
+            if (x >= Math.min(c[0], c[3]) && x <= Math.max(c[0], c[3])
+                    && y >= Math.min(c[1], c[4]) && y <= Math.max(c[1], c[4])
+                    && z >= Math.min(c[2], c[5]) && z <= Math.max(c[2], c[5])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
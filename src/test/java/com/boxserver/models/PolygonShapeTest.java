@@ -0,0 +1,137 @@
+package com.boxserver.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolygonShapeTest {
+
+    @Test
+    void squareContainsItsEdges() {
+        PolygonShape shape = new PolygonShape(new int[]{0, 10, 10, 0}, new int[]{0, 0, 10, 10}, 0, 20);
+        assertTrue(shape.contains(0, 0, 0));
+        assertTrue(shape.contains(10, 20, 10));
+        assertTrue(shape.contains(5, 10, 5));
+        assertFalse(shape.contains(11, 10, 5));
+        assertFalse(shape.contains(5, 21, 5));
+        assertFalse(shape.contains(5, -1, 5));
+    }
+
+    @Test
+    void concavePolygonMatchesReference() {
+        // A U shape: the notch between the arms is outside
+        int[] xs = {0, 30, 30, 20, 20, 10, 10, 0};
+        int[] zs = {0, 0, 30, 30, 10, 10, 30, 30};
+        PolygonShape shape = new PolygonShape(xs, zs, -64, 320);
+        assertFalse(shape.contains(15, 0, 20));
+        assertTrue(shape.contains(5, 0, 20));
+        assertTrue(shape.contains(25, 0, 20));
+        assertMatchesReference(shape, xs, zs);
+    }
+
+    @Test
+    void starPolygonMatchesReference() {
+        int[] xs = {0, 6, 20, 9, 14, 0, -14, -9, -20, -6};
+        int[] zs = {-20, -7, -6, 3, 17, 8, 17, 3, -6, -7};
+        assertMatchesReference(new PolygonShape(xs, zs, 0, 0), xs, zs);
+    }
+
+    @Test
+    void collinearPointsFormALine() {
+        int[] xs = {0, 5, 10};
+        int[] zs = {0, 5, 10};
+        PolygonShape shape = new PolygonShape(xs, zs, 0, 0);
+        assertTrue(shape.contains(0, 0, 0));
+        assertTrue(shape.contains(5, 0, 5));
+        assertTrue(shape.contains(10, 0, 10));
+        assertFalse(shape.contains(6, 0, 5));
+        assertMatchesReference(shape, xs, zs);
+    }
+
+    @Test
+    void repeatedPointsAndThinSpikesMatchReference() {
+        int[] xs = {0, 0, 40, 40, 41, 0};
+        int[] zs = {0, 0, 1, 1, 30, 2};
+        assertMatchesReference(new PolygonShape(xs, zs, 0, 0), xs, zs);
+    }
+
+    @Test
+    void randomPolygonsMatchReference() {
+        Random random = new Random(99);
+        for (int n = 0; n < 200; n++) {
+            int points = 3 + random.nextInt(8);
+            int[] xs = new int[points];
+            int[] zs = new int[points];
+            for (int i = 0; i < points; i++) {
+                xs[i] = random.nextInt(41) - 20;
+                zs[i] = random.nextInt(41) - 20;
+            }
+            assertMatchesReference(new PolygonShape(xs, zs, 0, 0), xs, zs);
+        }
+    }
+
+    @Test
+    void intersectsAndCoversFollowTheSpans() {
+        int[] xs = {0, 30, 30, 20, 20, 10, 10, 0};
+        int[] zs = {0, 0, 30, 30, 10, 10, 30, 30};
+        PolygonShape shape = new PolygonShape(xs, zs, 0, 100);
+        assertTrue(shape.covers(0, 0, 0, 30, 100, 10));
+        assertFalse(shape.covers(0, 0, 0, 30, 100, 11));
+        assertFalse(shape.intersects(12, 0, 12, 18, 100, 30));
+        assertTrue(shape.intersects(12, 0, 12, 20, 100, 30));
+        assertFalse(shape.intersects(0, 101, 0, 30, 200, 30));
+    }
+
+    @Test
+    void columnSpansUseTheHeightRange() {
+        PolygonShape shape = new PolygonShape(new int[]{0, 4, 0}, new int[]{0, 0, 4}, -10, 5);
+        int[] spans = new int[2 * shape.getMaxColumnSpans()];
+        assertEquals(1, shape.getColumnSpans(1, 1, spans));
+        assertEquals(-10, spans[0]);
+        assertEquals(5, spans[1]);
+        assertEquals(0, shape.getColumnSpans(4, 4, spans));
+    }
+
+    @Test
+    void rejectsInvalidPolygons() {
+        assertThrows(IllegalArgumentException.class, () -> new PolygonShape(new int[]{0, 1}, new int[]{0, 1}, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PolygonShape(new int[]{0, 1, 2}, new int[]{0, 1}, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PolygonShape(new int[]{0, 1, 0}, new int[]{0, 0, 1 << 20}, 0, 0));
+    }
+
+    private static void assertMatchesReference(PolygonShape shape, int[] xs, int[] zs) {
+        for (int z = shape.getMinZ() - 2; z <= shape.getMaxZ() + 2; z++) {
+            for (int x = shape.getMinX() - 2; x <= shape.getMaxX() + 2; x++) {
+                assertEquals(reference(xs, zs, x, z), shape.contains(x, shape.getMinY(), z), "point " + x + ", " + z);
+            }
+        }
+    }
+
+    /**
+     * Even-odd point in polygon test, counting points on an edge as inside.
+     */
+    private static boolean reference(int[] xs, int[] zs, int x, int z) {
+        boolean inside = false;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            long x1 = xs[j], z1 = zs[j], x2 = xs[i], z2 = zs[i];
+            long cross = (x2 - x1) * (z - z1) - (z2 - z1) * (x - x1);
+            if (cross == 0 && x >= Math.min(x1, x2) && x <= Math.max(x1, x2)
+                    && z >= Math.min(z1, z2) && z <= Math.max(z1, z2)) {
+                return true;
+            }
+            if ((z1 > z) != (z2 > z)) {
+                double crossingX = x1 + (double) (z - z1) * (x2 - x1) / (z2 - z1);
+                if (x < crossingX) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+}
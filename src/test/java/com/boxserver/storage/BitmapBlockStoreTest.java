@@ -0,0 +1,137 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitmapBlockStoreTest {
+
+    @Test
+    void addRemoveAndContains() {
+        BitmapBlockStore store = new BitmapBlockStore(true);
+        long key = BlockKey.pack(0, -1, -64, -1);
+        assertTrue(store.add(key, 5000));
+        assertFalse(store.add(key, 6000));
+        assertTrue(store.contains(key));
+        assertEquals(1, store.size());
+        assertTrue(store.remove(key));
+        assertFalse(store.remove(key));
+        assertFalse(store.contains(key));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void refreshesTimestampsWithSecondPrecision() {
+        BitmapBlockStore store = new BitmapBlockStore(true);
+        long key = BlockKey.pack(0, 3, 3, 3);
+        store.add(key, 1_700_000_000_123L);
+        store.add(key, 1_700_000_005_999L);
+        assertEquals(Map.of(key, 1_700_000_005_000L), contents(store));
+    }
+
+    @Test
+    void keepsTimestampsPast2038() {
+        BitmapBlockStore store = new BitmapBlockStore(true);
+        long key = BlockKey.pack(0, 0, 0, 0);
+        // 2040-01-01, past the signed 32-bit seconds limit
+        long timestamp = 2_208_988_800_000L;
+        store.add(key, timestamp);
+        assertEquals(Map.of(key, timestamp), contents(store));
+    }
+
+    @Test
+    void reportsZeroWithoutTimestamps() {
+        BitmapBlockStore store = new BitmapBlockStore(false);
+        long key = BlockKey.pack(0, 0, 0, 0);
+        store.add(key, 1_700_000_000_000L);
+        assertEquals(Map.of(key, 0L), contents(store));
+    }
+
+    @Test
+    void iteratesChunksAcrossTheWholeYRange() {
+        BitmapBlockStore store = new BitmapBlockStore(true);
+        Map<Long, Long> expected = new HashMap<>();
+        int[] ys = {BlockKey.MIN_Y, -65, -64, -1, 0, 15, 16, 319, BlockKey.MAX_Y};
+        for (int y : ys) {
+            long key = BlockKey.pack(2, 17, y, -33);
+            store.add(key, 1000L * (y - BlockKey.MIN_Y));
+            expected.put(key, 1000L * (y - BlockKey.MIN_Y));
+        }
+        // A block in a neighbouring chunk must not show up
+        store.add(BlockKey.pack(2, 0, 0, 0), 0);
+
+        Map<Long, Long> chunk = new HashMap<>();
+        store.forEachInChunk(BlockKey.chunkKeyOf(BlockKey.pack(2, 17, 0, -33)), chunk::put);
+        assertEquals(expected, chunk);
+    }
+
+    @Test
+    void matchesHashStoreUnderRandomOperations() {
+        Random random = new Random(5);
+        BitmapBlockStore store = new BitmapBlockStore(true);
+        HashBlockStore reference = new HashBlockStore();
+        for (int i = 0; i < 100_000; i++) {
+            long key = BlockKey.pack(random.nextInt(2), random.nextInt(64) - 32, random.nextInt(128) - 64, random.nextInt(64) - 32);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), store.remove(key));
+            } else {
+                long timestamp = 1000L * random.nextInt(Integer.MAX_VALUE);
+                assertEquals(reference.add(key, timestamp), store.add(key, timestamp));
+            }
+        }
+        assertEquals(reference.size(), store.size());
+        assertEquals(contents(reference), contents(store));
+
+        // The snapshot groups entries by chunk, which the snapshot writer relies on
+        BlockStore.Snapshot snapshot = store.snapshot();
+        assertEquals(reference.size(), snapshot.size());
+        Map<Long, Integer> lastIndex = new HashMap<>();
+        int[] index = new int[1];
+        snapshot.forEach((key, timestamp) -> {
+            Integer previous = lastIndex.put(BlockKey.chunkKeyOf(key), index[0]);
+            assertTrue(previous == null || previous == index[0] - 1, "chunk entries are not contiguous");
+            index[0]++;
+        });
+
+        reference.forEach((key, timestamp) -> store.remove(key));
+        assertEquals(0, store.size());
+        assertEquals(Map.of(), contents(store));
+    }
+
+    @Test
+    void snapshotIsUnaffectedByLaterChanges() {
+        for (BlockStore store : new BlockStore[]{new BitmapBlockStore(true), new HashBlockStore()}) {
+            long kept = BlockKey.pack(0, 1, 64, 1);
+            long removed = BlockKey.pack(0, 2, 64, 2);
+            long alone = BlockKey.pack(0, 40, 64, 40);
+            store.add(kept, 1000);
+            store.add(removed, 2000);
+            store.add(alone, 3000);
+
+            BlockStore.Snapshot snapshot = store.snapshot();
+            store.add(kept, 9000);
+            store.remove(removed);
+            store.remove(alone);
+            store.add(BlockKey.pack(0, 3, 64, 3), 4000);
+
+            Map<Long, Long> frozen = new HashMap<>();
+            snapshot.forEach(frozen::put);
+            assertEquals(Map.of(kept, 1000L, removed, 2000L, alone, 3000L), frozen);
+            assertEquals(3, snapshot.size());
+            assertEquals(Map.of(kept, 9000L, BlockKey.pack(0, 3, 64, 3), 4000L), contents(store));
+        }
+    }
+
+    private static Map<Long, Long> contents(BlockStore store) {
+        Map<Long, Long> blocks = new HashMap<>();
+        store.forEach(blocks::put);
+        return blocks;
+    }
+}
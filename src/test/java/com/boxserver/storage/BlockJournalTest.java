@@ -0,0 +1,189 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.Long2ObjectHashMap;
+import com.boxserver.utils.WorldRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockJournalTest {
+    private static final Logger LOGGER = Logger.getLogger("BlockJournalTest");
+
+    @TempDir
+    Path folder;
+
+    private final int worldId = WorldRegistry.idOf("journal-world");
+    private AsyncFileWriter writer;
+
+    @BeforeEach
+    void startWriter() {
+        writer = new AsyncFileWriter(LOGGER);
+    }
+
+    @AfterEach
+    void stopWriter() {
+        writer.shutdown(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void replaysTrackAndUntrack() throws IOException {
+        BlockJournal journal = open(new HashBlockStore(), new Long2ObjectHashMap<>());
+        long kept = BlockKey.pack(worldId, 10, -64, -10);
+        long removed = BlockKey.pack(worldId, 11, 70, -10);
+        journal.recordTrack(kept, 100);
+        journal.recordTrack(removed, 200);
+        journal.recordUntrack(removed);
+        journal.recordTrack(kept, 300);
+        flush(journal);
+
+        HashBlockStore store = new HashBlockStore();
+        assertNull(new BlockJournal(folder.toFile(), LOGGER, writer).load(store, new Long2ObjectHashMap<>()));
+        assertEquals(Map.of(kept, 300L), contents(store, null));
+    }
+
+    @Test
+    void replaysClear() throws IOException {
+        BlockJournal journal = open(new HashBlockStore(), new Long2ObjectHashMap<>());
+        journal.recordTrack(BlockKey.pack(worldId, 0, 0, 0), 1);
+        journal.recordClear();
+        long after = BlockKey.pack(worldId, 1, 1, 1);
+        journal.recordTrack(after, 2);
+        flush(journal);
+
+        HashBlockStore store = new HashBlockStore();
+        open(store, new Long2ObjectHashMap<>());
+        assertEquals(Map.of(after, 2L), contents(store, null));
+    }
+
+    @Test
+    void replaysPendingResets() throws IOException {
+        BlockJournal journal = open(new HashBlockStore(), new Long2ObjectHashMap<>());
+        long first = BlockKey.pack(worldId, 16, -1, 16);
+        long second = BlockKey.pack(worldId, 17, 2, 18);
+        long chunkKey = BlockKey.chunkKeyOf(first);
+        long doneChunkKey = BlockKey.chunkKey(worldId, 5, 5);
+        journal.recordPendingReset(chunkKey, new long[]{first, second});
+        journal.recordPendingReset(doneChunkKey, new long[]{BlockKey.fromChunk(doneChunkKey, 0)});
+        journal.recordResetDone(doneChunkKey);
+        flush(journal);
+
+        Long2ObjectHashMap<long[]> pendingResets = new Long2ObjectHashMap<>();
+        open(new HashBlockStore(), pendingResets);
+        assertEquals(1, pendingResets.size());
+        assertArrayEquals(new long[]{first, second}, pendingResets.get(chunkKey));
+        assertNull(pendingResets.get(doneChunkKey));
+    }
+
+    @Test
+    void compactionKeepsEveryBlock() throws IOException {
+        HashBlockStore store = new HashBlockStore();
+        Long2ObjectHashMap<long[]> pendingResets = new Long2ObjectHashMap<>();
+        BlockJournal journal = open(store, pendingResets);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(3);
+        MappedBlockSnapshot mapped = null;
+
+        for (int round = 0; round < 6; round++) {
+            for (int i = 0; i < 2000; i++) {
+                long key = BlockKey.pack(worldId, random.nextInt(128) - 64, random.nextInt(384) - 64, random.nextInt(128) - 64);
+                if (random.nextInt(3) == 0) {
+                    // Changes to a chunk still in the mapped snapshot need it faulted in first
+                    if (mapped != null) {
+                        mapped.faultIn(BlockKey.chunkKeyOf(key), store);
+                    }
+                    if (store.remove(key)) {
+                        journal.recordUntrack(key);
+                    }
+                    expected.remove(key);
+                } else {
+                    if (mapped != null) {
+                        mapped.faultIn(BlockKey.chunkKeyOf(key), store);
+                    }
+                    long timestamp = 1000L * round + i;
+                    store.add(key, timestamp);
+                    journal.recordTrack(key, timestamp);
+                    expected.put(key, timestamp);
+                }
+            }
+            if (round % 2 == 1) {
+                journal.compact(store, mapped, pendingResets, round % 4 == 1);
+            }
+            flush(journal);
+
+            // Reload from disk as after a restart and continue from there
+            store = new HashBlockStore();
+            journal = new BlockJournal(folder.toFile(), LOGGER, writer);
+            mapped = journal.load(store, pendingResets);
+            assertEquals(expected, contents(store, mapped), "round " + round);
+        }
+        assertNotNull(mapped);
+        assertTrue(mapped.getUnfaultedBlockCount() > 0);
+    }
+
+    @Test
+    void compactionRemovesOldJournals() throws IOException {
+        HashBlockStore store = new HashBlockStore();
+        Long2ObjectHashMap<long[]> pendingResets = new Long2ObjectHashMap<>();
+        BlockJournal journal = open(store, pendingResets);
+        long key = BlockKey.pack(worldId, 0, 0, 0);
+        store.add(key, 1);
+        journal.recordTrack(key, 1);
+        long pendingChunk = BlockKey.chunkKey(worldId, 9, 9);
+        pendingResets.put(pendingChunk, new long[]{BlockKey.fromChunk(pendingChunk, 3)});
+        journal.compact(store, null, pendingResets, false);
+        flush(journal);
+
+        File[] files = folder.toFile().listFiles((dir, name) -> name.startsWith("placed-blocks"));
+        assertNotNull(files);
+        for (File file : files) {
+            assertFalse(file.getName().equals("placed-blocks.1.journal"), "old journal left behind");
+        }
+
+        HashBlockStore loaded = new HashBlockStore();
+        Long2ObjectHashMap<long[]> loadedResets = new Long2ObjectHashMap<>();
+        MappedBlockSnapshot mapped = new BlockJournal(folder.toFile(), LOGGER, writer).load(loaded, loadedResets);
+        assertEquals(Map.of(key, 1L), contents(loaded, mapped));
+        // Deferred resets are carried into the new generation's journal
+        assertArrayEquals(pendingResets.get(pendingChunk), loadedResets.get(pendingChunk));
+    }
+
+    private BlockJournal open(HashBlockStore store, Long2ObjectHashMap<long[]> pendingResets) throws IOException {
+        BlockJournal journal = new BlockJournal(folder.toFile(), LOGGER, writer);
+        journal.load(store, pendingResets);
+        return journal;
+    }
+
+    private void flush(BlockJournal journal) {
+        journal.flush();
+        assertTrue(writer.awaitPending(10, TimeUnit.SECONDS));
+    }
+
+    private static Map<Long, Long> contents(HashBlockStore store, MappedBlockSnapshot mapped) {
+        Map<Long, Long> blocks = new HashMap<>();
+        store.forEach(blocks::put);
+        if (mapped != null) {
+            for (MappedBlockSnapshot.RawChunk chunk : mapped.unfaultedChunks()) {
+                mapped.forEachInChunk(chunk.chunkKey(), blocks::put);
+            }
+        }
+        return blocks;
+    }
+}
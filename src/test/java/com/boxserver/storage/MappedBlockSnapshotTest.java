@@ -0,0 +1,160 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.WorldRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedBlockSnapshotTest {
+    @TempDir
+    Path folder;
+    private int files;
+
+    @Test
+    void roundTripsUncompressed() throws IOException {
+        roundTrip(false);
+    }
+
+    @Test
+    void roundTripsCompressed() throws IOException {
+        roundTrip(true);
+    }
+
+    private void roundTrip(boolean compress) throws IOException {
+        int worldId = WorldRegistry.idOf("snapshot-world");
+        Map<Long, Long> expected = new HashMap<>();
+        HashBlockStore store = new HashBlockStore();
+        Random random = new Random(compress ? 1 : 2);
+        for (int i = 0; i < 5000; i++) {
+            int x = random.nextInt(200) - 100;
+            int y = random.nextInt(BlockKey.MAX_Y - BlockKey.MIN_Y + 1) + BlockKey.MIN_Y;
+            int z = random.nextInt(200) - 100;
+            long key = BlockKey.pack(worldId, x, y, z);
+            long timestamp = 1_700_000_000_000L + random.nextInt(1_000_000);
+            store.add(key, timestamp);
+            expected.put(key, timestamp);
+        }
+
+        File file = write(store, List.of(), compress);
+        MappedBlockSnapshot snapshot = MappedBlockSnapshot.open(file);
+        assertEquals(7, snapshot.getGeneration());
+        assertEquals(7, MappedBlockSnapshot.readGeneration(file));
+        assertEquals(expected.size(), snapshot.getUnfaultedBlockCount());
+        assertEquals(expected, contents(snapshot));
+
+        // Faulting in moves every block to the store and leaves nothing in the file
+        HashBlockStore loaded = new HashBlockStore();
+        for (MappedBlockSnapshot.RawChunk chunk : snapshot.unfaultedChunks()) {
+            snapshot.faultIn(chunk.chunkKey(), loaded);
+        }
+        assertEquals(0, snapshot.getUnfaultedBlockCount());
+        Map<Long, Long> faulted = new HashMap<>();
+        loaded.forEach(faulted::put);
+        assertEquals(expected, faulted);
+    }
+
+    @Test
+    void negativeYEncodesAsCompactlyAsPositiveY() throws IOException {
+        // The same column once crossing Y=0, where local indices wrap around the sign bit, and once above it
+        int crossing = encodedColumnLength(-64);
+        int positive = encodedColumnLength(0);
+        // Only the first index may take longer to encode; a negative delta would cost a 10 byte varint
+        assertTrue(crossing <= positive + 2, "crossing " + crossing + " bytes, positive " + positive + " bytes");
+    }
+
+    private int encodedColumnLength(int fromY) throws IOException {
+        int worldId = WorldRegistry.idOf("snapshot-world");
+        HashBlockStore store = new HashBlockStore();
+        for (int y = fromY; y < fromY + 128; y++) {
+            store.add(BlockKey.pack(worldId, 3, y, -5), 1000 + y - fromY);
+        }
+
+        MappedBlockSnapshot snapshot = MappedBlockSnapshot.open(write(store, List.of(), false));
+        List<MappedBlockSnapshot.RawChunk> chunks = snapshot.unfaultedChunks();
+        assertEquals(1, chunks.size());
+        Map<Long, Long> expected = new HashMap<>();
+        store.forEach(expected::put);
+        assertEquals(expected, contents(snapshot));
+        return chunks.get(0).rawLength();
+    }
+
+    @Test
+    void remapsWorldIdsByName() throws IOException {
+        // Write keys with the highest world id, which the reader maps to its own id for the name
+        String[] worldNames = new String[BlockKey.MAX_WORLDS];
+        worldNames[BlockKey.MAX_WORLDS - 1] = "snapshot-far-world";
+        HashBlockStore store = new HashBlockStore();
+        store.add(BlockKey.pack(BlockKey.MAX_WORLDS - 1, -1, -2048, -1), 5);
+        store.add(BlockKey.pack(BlockKey.MAX_WORLDS - 1, 4000, 2047, 17), 6);
+
+        File file = folder.resolve("far.snapshot").toFile();
+        MappedBlockSnapshot.write(file, store.snapshot(), List.of(), worldNames, 1, false);
+        MappedBlockSnapshot snapshot = MappedBlockSnapshot.open(file);
+
+        int worldId = WorldRegistry.idOf("snapshot-far-world");
+        Map<Long, Long> expected = Map.of(
+                BlockKey.pack(worldId, -1, -2048, -1), 5L,
+                BlockKey.pack(worldId, 4000, 2047, 17), 6L);
+        assertEquals(expected, contents(snapshot));
+    }
+
+    @Test
+    void carriesRawChunksIntoANewSnapshot() throws IOException {
+        int worldId = WorldRegistry.idOf("snapshot-world");
+        HashBlockStore first = new HashBlockStore();
+        first.add(BlockKey.pack(worldId, 0, -10, 0), 1);
+        first.add(BlockKey.pack(worldId, 100, 10, 100), 2);
+        MappedBlockSnapshot old = MappedBlockSnapshot.open(write(first, List.of(), true));
+
+        // Fault one chunk in and change it, carry the other one over as it is
+        HashBlockStore store = new HashBlockStore();
+        old.faultIn(BlockKey.chunkKeyOf(BlockKey.pack(worldId, 0, -10, 0)), store);
+        store.add(BlockKey.pack(worldId, 1, 1, 1), 3);
+
+        File file = folder.resolve("carried.snapshot").toFile();
+        MappedBlockSnapshot.write(file, store.snapshot(), old.unfaultedChunks(), worldNames(worldId), 8, false);
+        Map<Long, Long> expected = Map.of(
+                BlockKey.pack(worldId, 0, -10, 0), 1L,
+                BlockKey.pack(worldId, 100, 10, 100), 2L,
+                BlockKey.pack(worldId, 1, 1, 1), 3L);
+        assertEquals(expected, contents(MappedBlockSnapshot.open(file)));
+    }
+
+    @Test
+    void rejectsUnknownFiles() throws IOException {
+        File file = folder.resolve("garbage.snapshot").toFile();
+        AsyncFileWriter.writeAtomically(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertEquals(-1, MappedBlockSnapshot.readGeneration(file));
+    }
+
+    private File write(HashBlockStore store, List<MappedBlockSnapshot.RawChunk> carried, boolean compress) throws IOException {
+        File file = folder.resolve("test-" + files++ + ".snapshot").toFile();
+        MappedBlockSnapshot.write(file, store.snapshot(), carried, worldNames(WorldRegistry.idOf("snapshot-world")), 7, compress);
+        return file;
+    }
+
+    private static String[] worldNames(int worldId) {
+        String[] names = new String[BlockKey.MAX_WORLDS];
+        names[worldId] = WorldRegistry.nameOf(worldId);
+        return names;
+    }
+
+    private static Map<Long, Long> contents(MappedBlockSnapshot snapshot) {
+        Map<Long, Long> blocks = new HashMap<>();
+        for (MappedBlockSnapshot.RawChunk chunk : snapshot.unfaultedChunks()) {
+            snapshot.forEachInChunk(chunk.chunkKey(), blocks::put);
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,141 @@
+package com.boxserver.storage;
+
+import com.boxserver.utils.BlockKey;
+import com.boxserver.utils.WorldRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OriginalStateLogTest {
+    @TempDir
+    Path folder;
+
+    private final int worldId = WorldRegistry.idOf("states-world");
+
+    @Test
+    void keepsTheFirstRecordedState() {
+        OriginalStateLog log = new OriginalStateLog();
+        long key = BlockKey.pack(worldId, 1, -60, 1);
+        assertTrue(log.record(key, "minecraft:stone"));
+        assertFalse(log.record(key, "minecraft:dirt"));
+        assertTrue(log.contains(key));
+        assertEquals(1, log.size());
+        assertEquals("minecraft:stone", log.remove(key));
+        assertNull(log.remove(key));
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    void drainsOnlyChangedChunks() {
+        OriginalStateLog log = new OriginalStateLog();
+        long first = BlockKey.pack(worldId, 0, 0, 0);
+        long second = BlockKey.pack(worldId, 100, 0, 100);
+        log.record(first, "minecraft:stone");
+        log.record(second, "minecraft:stone");
+        assertEquals(2, log.drainChanges().chunks().size());
+        assertFalse(log.isDirty());
+
+        log.record(BlockKey.pack(worldId, 1, 0, 0), "minecraft:dirt");
+        OriginalStateLog.Changes changes = log.drainChanges();
+        assertFalse(changes.full());
+        assertEquals(1, changes.chunks().size());
+        assertEquals(BlockKey.chunkKeyOf(first), changes.chunks().get(0).chunkKey());
+
+        log.remove(second);
+        changes = log.drainChanges();
+        assertEquals(0, changes.chunks().size());
+        assertArrayEquals(new long[]{BlockKey.chunkKeyOf(second)}, changes.removed());
+    }
+
+    @Test
+    void clearForcesAFullDrain() {
+        OriginalStateLog log = new OriginalStateLog();
+        log.record(BlockKey.pack(worldId, 0, 0, 0), "minecraft:stone");
+        log.drainChanges();
+        log.clear();
+        assertTrue(log.isDirty());
+        OriginalStateLog.Changes changes = log.drainChanges();
+        assertTrue(changes.full());
+        assertEquals(0, changes.chunks().size());
+    }
+
+    @Test
+    void rejectsStatesOnceThePaletteIsFull() {
+        OriginalStateLog log = new OriginalStateLog();
+        int recorded = 0;
+        for (int i = 0; i < 5000; i++) {
+            long key = BlockKey.pack(worldId, i & 15, i >> 4, 0);
+            if (log.record(key, "minecraft:state" + i)) {
+                recorded++;
+            }
+        }
+        assertEquals(4096, recorded);
+        assertEquals(4096, log.size());
+
+        OriginalStateLog.Changes changes = log.drainChanges();
+        assertEquals(1, changes.chunks().size());
+        assertEquals(4096, changes.chunks().get(0).palette().length);
+        assertEquals(4096, changes.chunks().get(0).entries().length);
+    }
+
+    @Test
+    void roundTripsThroughTheFileImage() throws IOException {
+        OriginalStateLog log = new OriginalStateLog();
+        OriginalStateLog.FileImage image = new OriginalStateLog.FileImage();
+        File file = folder.resolve("original-states.dat").toFile();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 300; i++) {
+                long key = BlockKey.pack(worldId, random.nextInt(64) - 32, random.nextInt(384) - 64, random.nextInt(64) - 32);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key), log.remove(key));
+                } else {
+                    String state = "minecraft:block" + random.nextInt(20);
+                    assertEquals(!expected.containsKey(key), log.record(key, state));
+                    expected.putIfAbsent(key, state);
+                }
+            }
+            image.apply(log.drainChanges());
+            AsyncFileWriter.writeAtomically(file, image.toBytes());
+
+            if (round % 5 == 4) {
+                log.load(file);
+                // The reloaded log starts over with a full image
+                OriginalStateLog.Changes changes = log.drainChanges();
+                assertTrue(changes.full());
+                image.apply(changes);
+            }
+            assertEquals(expected.size(), log.size());
+        }
+
+        OriginalStateLog loaded = new OriginalStateLog();
+        loaded.load(file);
+        assertEquals(expected.size(), loaded.size());
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), loaded.remove(entry.getKey()));
+        }
+        assertEquals(0, loaded.size());
+    }
+
+    @Test
+    void loadingAMissingFileLeavesTheLogEmpty() throws IOException {
+        OriginalStateLog log = new OriginalStateLog();
+        log.record(BlockKey.pack(worldId, 0, 0, 0), "minecraft:stone");
+        log.load(folder.resolve("missing.dat").toFile());
+        assertEquals(0, log.size());
+    }
+}
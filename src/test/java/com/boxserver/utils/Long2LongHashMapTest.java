@@ -0,0 +1,139 @@
+package com.boxserver.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Long2LongHashMapTest {
+
+    @Test
+    void putGetAndRemove() {
+        Long2LongHashMap map = new Long2LongHashMap();
+        assertTrue(map.put(42, 1));
+        assertFalse(map.put(42, 2));
+        assertEquals(2, map.get(42, -1));
+        assertEquals(-1, map.get(43, -1));
+        assertTrue(map.remove(42));
+        assertFalse(map.remove(42));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void zeroKeyIsStoredOutOfBand() {
+        Long2LongHashMap map = new Long2LongHashMap();
+        assertTrue(map.put(0, 7));
+        assertTrue(map.containsKey(0));
+        assertEquals(7, map.get(0, -1));
+        assertEquals(1, map.size());
+        assertTrue(map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void removalKeepsCollidingKeysReachable() {
+        Long2LongHashMap map = new Long2LongHashMap(16);
+        int capacity = map.capacity();
+        int mask = capacity - 1;
+
+        // Keys sharing one home slot, plus keys homed just after it that get pushed along the chain
+        int home = HashUtil.mix(1L) & mask;
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < 4; key++) {
+            if ((HashUtil.mix(key) & mask) == home) {
+                keys.add(key);
+            }
+        }
+        for (long key = 2; keys.size() < 8; key++) {
+            if ((HashUtil.mix(key) & mask) == ((home + 1) & mask) && !keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        for (long key : keys) {
+            map.put(key, key * 10);
+        }
+        assertEquals(capacity, map.capacity(), "the test keys must not cause a resize");
+
+        // Remove from the front of the chain so every later key has to shift back
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(map.remove(keys.get(i)));
+            for (int j = i + 1; j < keys.size(); j++) {
+                assertEquals(keys.get(j) * 10, map.get(keys.get(j), -1), "key " + keys.get(j) + " after removing " + keys.get(i));
+            }
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void removalWrapsAroundTheTableEnd() {
+        Long2LongHashMap map = new Long2LongHashMap(16);
+        int mask = map.capacity() - 1;
+
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < 4; key++) {
+            if ((HashUtil.mix(key) & mask) == mask) {
+                keys.add(key);
+            }
+        }
+        for (long key : keys) {
+            map.put(key, -key);
+        }
+        assertTrue(map.remove(keys.get(0)));
+        for (int i = 1; i < keys.size(); i++) {
+            assertEquals(-keys.get(i), map.get(keys.get(i), 0));
+        }
+    }
+
+    @Test
+    void copyIsIndependent() {
+        Long2LongHashMap map = new Long2LongHashMap();
+        map.put(0, 1);
+        map.put(5, 2);
+        Long2LongHashMap copy = map.copy();
+        copy.remove(0);
+        copy.put(5, 3);
+        copy.put(6, 4);
+        assertEquals(1, map.get(0, -1));
+        assertEquals(2, map.get(5, -1));
+        assertFalse(map.containsKey(6));
+        assertEquals(2, map.size());
+        assertFalse(copy.containsKey(0));
+        assertEquals(3, copy.get(5, -1));
+        assertEquals(2, copy.size());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(1234);
+        Long2LongHashMap map = new Long2LongHashMap(4);
+        Map<Long, Long> reference = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // A small key range keeps chains long and removals frequent
+            long key = random.nextInt(512) - 64;
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key) != null, map.remove(key));
+            } else {
+                long value = random.nextLong();
+                assertEquals(reference.put(key, value) == null, map.put(key, value));
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        for (long key = -64; key < 448; key++) {
+            assertEquals(reference.containsKey(key), map.containsKey(key));
+            if (reference.containsKey(key)) {
+                assertEquals((long) reference.get(key), map.get(key, 0));
+            }
+        }
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(reference, visited);
+    }
+}